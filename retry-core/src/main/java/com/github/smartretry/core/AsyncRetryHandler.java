@@ -0,0 +1,24 @@
+package com.github.smartretry.core;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 异步的RetryHandler。handle方法发起调用之后立即返回CompletionStage，不占用执行重试的线程
+ * <p>
+ * CompletionStage正常完成则任务执行成功，异常完成则任务执行失败，和同步的handle方法抛出异常的处理方式一样。
+ * 带有@RetryFunction注解的方法，返回值是CompletionStage（比如CompletableFuture）时也按照异步的方式处理
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+@FunctionalInterface
+public interface AsyncRetryHandler<T, R> extends RetryHandler<T, CompletionStage<R>> {
+
+    /**
+     * 发起异步的任务处理
+     *
+     * @param arg 参数，参数类型的要求和 {@link RetryHandler#handle(Object)} 一样
+     * @return 任务处理的结果，不能返回null
+     */
+    @Override
+    CompletionStage<R> handle(T arg);
+}
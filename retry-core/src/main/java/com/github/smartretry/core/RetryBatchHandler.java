@@ -0,0 +1,36 @@
+package com.github.smartretry.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量重试的RetryHandler。定时重试的时候，一页的任务只调用一次handleBatch方法，适合下游提供了批量接口的场景
+ * <p>
+ * 首次执行（被Spring代理的handle方法）仍然是一个一个执行的，默认转调handleBatch方法
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+@FunctionalInterface
+public interface RetryBatchHandler<T> extends RetryHandler<T, Object> {
+
+    /**
+     * 批量处理任务
+     *
+     * @param args 一页任务的参数，参数类型的要求和 {@link RetryHandler#handle(Object)} 一样
+     * @return 每个任务的处理结果，顺序和数量都需要和args一致。整个方法抛出异常，则这一批任务都当作失败处理
+     */
+    List<RetryOutcome> handleBatch(List<T> args);
+
+    @Override
+    default Object handle(T arg) {
+        List<RetryOutcome> outcomes = handleBatch(Collections.singletonList(arg));
+        if (outcomes == null || outcomes.size() != 1) {
+            throw new IllegalStateException(this.getClass().getName() + ".handleBatch方法返回的结果数量和参数数量不一致");
+        }
+        RetryOutcome outcome = outcomes.get(0);
+        if (!outcome.isSuccess()) {
+            throw outcome.getException();
+        }
+        return outcome.getResult();
+    }
+}
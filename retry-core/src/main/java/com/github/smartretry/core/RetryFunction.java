@@ -1,5 +1,7 @@
 package com.github.smartretry.core;
 
+import com.github.smartretry.core.backoff.BackoffType;
+
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -68,6 +70,13 @@ public @interface RetryFunction {
      */
     int interval() default RetryHandler.DEFAULT_RETRY_INTERVAL;
 
+    /**
+     * 重试间隔时长。单位：毫秒。大于0时代替interval()，用于需要不足1秒的重试间隔。使用时间轮注册器时精度为retry.wheel.tickDuration
+     *
+     * @return
+     */
+    long intervalMillis() default 0;
+
     /**
      * 最多重试次数
      *
@@ -83,6 +92,109 @@ public @interface RetryFunction {
      */
     int initialDelay() default RetryHandler.DEFAULT_INITIALDELAY;
 
+    /**
+     * 退避策略。任务重试失败之后，需要等待多久才能再次重试
+     *
+     * @return
+     */
+    BackoffType backoff() default BackoffType.FIXED;
+
+    /**
+     * 退避的等待时长。单位：秒
+     * FIXED为每次等待的时长（默认0，即下一次定时任务触发的时候就重试），EXPONENTIAL为第一次等待的时长，DECORRELATED_JITTER为最少等待的时长
+     * EXPONENTIAL、DECORRELATED_JITTER必须大于0
+     *
+     * @return
+     */
+    int backoffDelay() default 0;
+
+    /**
+     * 退避的最长等待时长。单位：秒
+     *
+     * @return
+     */
+    int backoffMaxDelay() default RetryHandler.DEFAULT_BACKOFF_MAX_DELAY;
+
+    /**
+     * 指数退避的倍数，只对EXPONENTIAL有效
+     *
+     * @return
+     */
+    double backoffMultiplier() default RetryHandler.DEFAULT_BACKOFF_MULTIPLIER;
+
+    /**
+     * 定时重试的时候，最多同时重试多少个任务
+     *
+     * @return
+     */
+    int parallelism() default RetryHandler.DEFAULT_PARALLELISM;
+
+    /**
+     * 定时重试的时候，最多同时重试多少个任务。小于等于0表示不限制
+     * 超过限制的任务推迟到下一次定时重试
+     *
+     * @return
+     */
+    int maxConcurrentAttempts() default RetryHandler.DEFAULT_MAX_CONCURRENT_ATTEMPTS;
+
+    /**
+     * 定时重试的时候，每秒最多重试多少个任务。小于等于0表示不限制
+     * 超过限制的任务推迟到下一次定时重试
+     *
+     * @return
+     */
+    int maxAttemptsPerSecond() default RetryHandler.DEFAULT_MAX_ATTEMPTS_PER_SECOND;
+
+    /**
+     * 熔断的失败率（百分比）。最近circuitBreakerWindowSize次重试的失败率达到这个值之后熔断，小于等于0表示不熔断
+     *
+     * @return
+     */
+    int circuitBreakerFailureRate() default RetryHandler.DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE;
+
+    /**
+     * 统计最近多少次重试的失败率
+     *
+     * @return
+     */
+    int circuitBreakerWindowSize() default RetryHandler.DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE;
+
+    /**
+     * 熔断时长。单位：秒
+     *
+     * @return
+     */
+    int circuitBreakerOpenSeconds() default RetryHandler.DEFAULT_CIRCUIT_BREAKER_OPEN_SECONDS;
+
+    /**
+     * 定时重试的时候，每个任务最多执行多久。单位：毫秒，小于等于0表示不限制
+     * 超时的任务当作一次失败的重试
+     *
+     * @return
+     */
+    int timeout() default RetryHandler.DEFAULT_TIMEOUT;
+
+    /**
+     * 首次执行失败之后，在调用线程上快速重试的次数。都失败之后才保存任务
+     *
+     * @return
+     */
+    int quickRetries() default RetryHandler.DEFAULT_QUICK_RETRIES;
+
+    /**
+     * 每次快速重试之前等待的时长。单位：毫秒
+     *
+     * @return
+     */
+    int quickBackoffMillis() default RetryHandler.DEFAULT_QUICK_BACKOFF_MILLIS;
+
+    /**
+     * 分片总数。只有使用ElasticJobRegistry时有效
+     *
+     * @return
+     */
+    int shardingTotalCount() default RetryHandler.DEFAULT_SHARDING_TOTAL_COUNT;
+
     /**
      * 定时重试是否自动启动
      *
@@ -1,5 +1,6 @@
 package com.github.smartretry.core;
 
+import com.github.smartretry.core.backoff.BackoffPolicy;
 import com.github.smartretry.core.listener.RetryListener;
 
 /**
@@ -27,6 +28,51 @@ public interface RetryHandler<T, R> {
 
     boolean DEFAULT_AUTO_STARTUP = true;
 
+    /**
+     * 默认退避的最长等待时长1天
+     */
+    int DEFAULT_BACKOFF_MAX_DELAY = 86400;
+
+    double DEFAULT_BACKOFF_MULTIPLIER = 2.0;
+
+    /**
+     * 默认一个一个的重试
+     */
+    int DEFAULT_PARALLELISM = 1;
+
+    /**
+     * 默认不限流
+     */
+    int DEFAULT_MAX_CONCURRENT_ATTEMPTS = 0;
+
+    int DEFAULT_MAX_ATTEMPTS_PER_SECOND = 0;
+
+    /**
+     * 默认不熔断
+     */
+    int DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE = 0;
+
+    int DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE = 20;
+
+    int DEFAULT_CIRCUIT_BREAKER_OPEN_SECONDS = 60;
+
+    /**
+     * 默认不限制重试的执行时间
+     */
+    int DEFAULT_TIMEOUT = 0;
+
+    /**
+     * 默认首次执行失败之后不快速重试
+     */
+    int DEFAULT_QUICK_RETRIES = 0;
+
+    int DEFAULT_QUICK_BACKOFF_MILLIS = 50;
+
+    /**
+     * 默认不分片
+     */
+    int DEFAULT_SHARDING_TOTAL_COUNT = 1;
+
     /**
      * 任务名称
      *
@@ -81,6 +127,15 @@ public interface RetryHandler<T, R> {
         return DEFAULT_RETRY_INTERVAL;
     }
 
+    /**
+     * 重试间隔时长。单位：毫秒。大于0时代替interval()，用于需要不足1秒的重试间隔。使用时间轮注册器时精度为retry.wheel.tickDuration
+     *
+     * @return
+     */
+    default long intervalMillis() {
+        return 0;
+    }
+
     /**
      * 最多重试次数
      *
@@ -100,6 +155,114 @@ public interface RetryHandler<T, R> {
         return DEFAULT_INITIALDELAY;
     }
 
+    /**
+     * 退避策略。任务重试失败之后，需要等待多久才能再次重试
+     * 默认不等待，下一次定时任务触发的时候就重试
+     *
+     * @return
+     */
+    default BackoffPolicy backoffPolicy() {
+        return BackoffPolicy.NONE;
+    }
+
+    /**
+     * 定时重试的时候，最多同时重试多少个任务
+     * 大于1则使用一个有界的线程池并发重试，一页的任务全部重试完成之后才会查询下一页
+     *
+     * @return
+     */
+    default int parallelism() {
+        return DEFAULT_PARALLELISM;
+    }
+
+    /**
+     * 定时重试的时候，最多同时重试多少个任务（包括多次定时重试同时执行的情况）。小于等于0表示不限制
+     * 超过限制的任务推迟到下一次定时重试，不会被当作失败，也不会增加重试次数
+     *
+     * @return
+     */
+    default int maxConcurrentAttempts() {
+        return DEFAULT_MAX_CONCURRENT_ATTEMPTS;
+    }
+
+    /**
+     * 定时重试的时候，每秒最多重试多少个任务。小于等于0表示不限制
+     * 超过限制的任务推迟到下一次定时重试，不会被当作失败，也不会增加重试次数
+     *
+     * @return
+     */
+    default int maxAttemptsPerSecond() {
+        return DEFAULT_MAX_ATTEMPTS_PER_SECOND;
+    }
+
+    /**
+     * 熔断的失败率（百分比）。最近circuitBreakerWindowSize()次重试的失败率达到这个值之后熔断，小于等于0表示不熔断
+     * 熔断期间定时重试直接跳过，任务不会被更新，也不会增加重试次数
+     *
+     * @return
+     */
+    default int circuitBreakerFailureRate() {
+        return DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE;
+    }
+
+    /**
+     * 统计最近多少次重试的失败率
+     *
+     * @return
+     */
+    default int circuitBreakerWindowSize() {
+        return DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE;
+    }
+
+    /**
+     * 熔断时长。单位：秒
+     * 熔断之后，多久再放行一个任务试探下游是否恢复
+     *
+     * @return
+     */
+    default int circuitBreakerOpenSeconds() {
+        return DEFAULT_CIRCUIT_BREAKER_OPEN_SECONDS;
+    }
+
+    /**
+     * 定时重试的时候，每个任务最多执行多久。单位：毫秒，小于等于0表示不限制
+     * 超时的任务当作一次失败的重试，会被中断，然后继续重试下一个任务
+     *
+     * @return
+     */
+    default int timeout() {
+        return DEFAULT_TIMEOUT;
+    }
+
+    /**
+     * 首次执行失败之后，在调用线程上快速重试的次数。都失败之后才保存任务，等待定时重试
+     * 快速重试不计入retryCount，抛出NoRetryException时不快速重试
+     *
+     * @return
+     */
+    default int quickRetries() {
+        return DEFAULT_QUICK_RETRIES;
+    }
+
+    /**
+     * 每次快速重试之前等待的时长。单位：毫秒
+     *
+     * @return
+     */
+    default int quickBackoffMillis() {
+        return DEFAULT_QUICK_BACKOFF_MILLIS;
+    }
+
+    /**
+     * 分片总数。使用ElasticJobRegistry时，每个分片只重试taskId % shardingTotalCount = 分片项的任务，多个节点可以同时重试同一个identity
+     * 其他注册器不支持分片，此配置无效
+     *
+     * @return
+     */
+    default int shardingTotalCount() {
+        return DEFAULT_SHARDING_TOTAL_COUNT;
+    }
+
     /**
      * 重试的时候，是否忽略错误继续执行
      *
@@ -0,0 +1,49 @@
+package com.github.smartretry.core;
+
+import lombok.Getter;
+
+/**
+ * 批量重试中一个任务的处理结果
+ *
+ * @author yuni[mn960mn@163.com]
+ * @see RetryBatchHandler
+ */
+@Getter
+public final class RetryOutcome {
+
+    private static final RetryOutcome SUCCESS = new RetryOutcome(null, null);
+
+    private final Object result;
+
+    /**
+     * 任务失败的原因，成功时为null
+     */
+    private final RuntimeException exception;
+
+    private RetryOutcome(Object result, RuntimeException exception) {
+        this.result = result;
+        this.exception = exception;
+    }
+
+    public static RetryOutcome success() {
+        return SUCCESS;
+    }
+
+    public static RetryOutcome success(Object result) {
+        return new RetryOutcome(result, null);
+    }
+
+    /**
+     * 任务失败，等待下一次重试。exception是NoRetryException时不再重试，直接当失败处理
+     */
+    public static RetryOutcome failure(RuntimeException exception) {
+        if (exception == null) {
+            throw new IllegalArgumentException("exception不能为null");
+        }
+        return new RetryOutcome(null, exception);
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+}
@@ -9,4 +9,16 @@ public interface RetryProcessor {
      * 执行定时重试
      */
     void doRetry();
+
+    /**
+     * 执行一个分片的定时重试，只重试taskId % shardingTotalCount = shardingItem的任务
+     * <p>
+     * 默认不支持分片，直接重试全部的任务
+     *
+     * @param shardingTotalCount 分片总数
+     * @param shardingItem       分片项，从0开始
+     */
+    default void doRetry(int shardingTotalCount, int shardingItem) {
+        doRetry();
+    }
 }
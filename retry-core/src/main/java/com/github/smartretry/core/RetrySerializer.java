@@ -2,8 +2,12 @@ package com.github.smartretry.core;
 
 import com.github.smartretry.core.impl.DefaultRetryTaskFactory;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * 用于序列化、反序列化handle的请求参数
+ * <p>
+ * byte[]的方法默认都是通过String转换的，具体的实现可以重写这些方法，直接读写字节，避免参数比较大时中间String的拷贝
  *
  * @see DefaultRetryTaskFactory
  *
@@ -27,4 +31,18 @@ public interface RetrySerializer {
      * @return
      */
     Object deserialize(String value, Class<?> clazz);
+
+    /**
+     * 序列化为字节，默认使用UTF-8编码
+     */
+    default byte[] serializeToBytes(Object object) {
+        return serialize(object).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 从字节反序列化，默认使用UTF-8编码
+     */
+    default Object deserialize(byte[] value, Class<?> clazz) {
+        return deserialize(new String(value, StandardCharsets.UTF_8), clazz);
+    }
 }
@@ -35,6 +35,12 @@ public class RetryTask {
 
     private String params;
 
+    /**
+     * 二进制形式的参数，retry.params.binary=true时使用，和params只会有一个有值
+     */
+    @ToString.Exclude
+    private byte[] paramsBytes;
+
     private int status;
 
     private int retryCount;
@@ -44,4 +50,9 @@ public class RetryTask {
     private LocalDateTime createDate;
 
     private LocalDateTime editDate;
+
+    /**
+     * 最早可以重试的时间
+     */
+    private LocalDateTime nextRetryDate;
 }
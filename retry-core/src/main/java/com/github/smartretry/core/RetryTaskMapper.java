@@ -1,6 +1,8 @@
 package com.github.smartretry.core;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * @author yuni[mn960mn@163.com]
@@ -11,5 +13,129 @@ public interface RetryTaskMapper {
 
     int update(RetryTask retryTask);
 
+    /**
+     * 查询需要重试的任务：状态为处理中、重试次数小于retryCount、并且nextRetryDate不晚于当前时间
+     *
+     * @param identity
+     * @param retryCount
+     * @param initialDelay 创建任务的时候已经计入了nextRetryDate。没有保存nextRetryDate的实现者（比如旧的表结构）用来过滤创建时间：创建时间不晚于当前时间减去initialDelay的任务才需要重试
+     * @return
+     */
     List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay);
+
+    /**
+     * 分页查询需要重试的任务，按照taskId升序排列，只返回taskId大于lastTaskId的任务
+     * <p>
+     * 默认不分页：第一页（lastTaskId=0）直接返回{@link #queryNeedRetryTaskList(String, int, int)}的全部结果，之后的页返回空，
+     * 每次定时重试只执行一次不分页的查询。实现者应该在存储层进行分页，避免任务过多时占用大量内存
+     *
+     * @param identity
+     * @param retryCount
+     * @param initialDelay
+     * @param lastTaskId   上一页最后一个任务的taskId，第一页传0
+     * @param pageSize     每页最多返回多少个任务
+     * @return
+     */
+    default List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize) {
+        if (lastTaskId > 0) {
+            //第一页已经返回了全部任务
+            return Collections.emptyList();
+        }
+        List<RetryTask> tasks = queryNeedRetryTaskList(identity, retryCount, initialDelay);
+        return tasks == null ? Collections.emptyList() : tasks;
+    }
+
+    /**
+     * 分页查询一个分片中需要重试的任务：taskId % shardingTotalCount = shardingItem，按照taskId升序排列，只返回taskId大于lastTaskId的任务
+     * <p>
+     * 默认不分页：第一页（lastTaskId=0）执行一次{@link #queryNeedRetryTaskList(String, int, int)}，返回其中属于这个分片的全部任务，之后的页返回空。
+     * 实现者应该在存储层进行分片和分页
+     *
+     * @param identity
+     * @param retryCount
+     * @param initialDelay
+     * @param lastTaskId         上一页最后一个任务的taskId，第一页传0
+     * @param pageSize           每页最多返回多少个任务
+     * @param shardingTotalCount 分片总数
+     * @param shardingItem       分片项，从0开始
+     * @return
+     */
+    default List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize, int shardingTotalCount, int shardingItem) {
+        if (lastTaskId > 0) {
+            //第一页已经返回了这个分片的全部任务
+            return Collections.emptyList();
+        }
+        List<RetryTask> tasks = queryNeedRetryTaskList(identity, retryCount, initialDelay);
+        if (tasks == null) {
+            return Collections.emptyList();
+        }
+        return tasks.stream()
+                .filter(task -> task.getTaskId() % shardingTotalCount == shardingItem)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 抢占需要重试的任务：分页查询没有被其他节点占用（或者占用已经过期）的任务，并把这些任务标记为被owner占用leaseSeconds秒
+     * <p>
+     * 多个节点同时重试同一个identity的时候，每个节点抢占到的任务互不相同。节点宕机之后，占用过期的任务可以被其他节点重新抢占
+     * <p>
+     * 默认不支持抢占，直接返回分页查询的结果
+     *
+     * @param identity
+     * @param retryCount
+     * @param initialDelay
+     * @param lastTaskId   上一页最后一个任务的taskId，第一页传0
+     * @param pageSize     每页最多返回多少个任务
+     * @param owner        抢占任务的节点标识
+     * @param leaseSeconds 占用时长，单位：秒
+     * @return
+     */
+    default List<RetryTask> claimNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize, String owner, int leaseSeconds) {
+        return queryNeedRetryTaskList(identity, retryCount, initialDelay, lastTaskId, pageSize);
+    }
+
+    /**
+     * 释放抢占到但是没有开始重试的任务（被限流、熔断，或者前面的任务报错之后跳过的任务），其他节点不需要等占用过期就可以抢占
+     * <p>
+     * 只释放仍然被owner占用的任务。默认不支持抢占，什么都不做
+     *
+     * @param taskIds
+     * @param owner   抢占任务的节点标识
+     * @return 释放的任务数量
+     */
+    default int releaseClaim(List<Long> taskIds, String owner) {
+        return 0;
+    }
+
+    /**
+     * 批量插入，插入成功之后会回填每个任务的taskId
+     * <p>
+     * 默认逐条插入，实现者可以根据存储的特性进行批量优化
+     *
+     * @param retryTasks
+     * @return 插入的行数
+     */
+    default int insertBatch(List<RetryTask> retryTasks) {
+        int rows = 0;
+        for (RetryTask retryTask : retryTasks) {
+            rows += insert(retryTask);
+        }
+        return rows;
+    }
+
+    /**
+     * 批量更新任务的状态、重试次数、备注
+     * <p>
+     * 默认逐条更新，实现者可以根据存储的特性进行批量优化
+     *
+     * @param retryTasks
+     * @return 更新的行数
+     */
+    default int updateBatch(List<RetryTask> retryTasks) {
+        int rows = 0;
+        for (RetryTask retryTask : retryTasks) {
+            rows += update(retryTask);
+        }
+        return rows;
+    }
 }
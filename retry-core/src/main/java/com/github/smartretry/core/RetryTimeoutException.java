@@ -0,0 +1,13 @@
+package com.github.smartretry.core;
+
+/**
+ * 重试执行的时间超过了 {@link RetryHandler#timeout()}，当作一次失败的重试处理
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+public class RetryTimeoutException extends RuntimeException {
+
+    public RetryTimeoutException(String message) {
+        super(message);
+    }
+}
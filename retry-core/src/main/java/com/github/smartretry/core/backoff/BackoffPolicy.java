@@ -0,0 +1,26 @@
+package com.github.smartretry.core.backoff;
+
+/**
+ * 退避策略。任务重试失败之后，根据重试次数计算下一次重试之前需要等待的时长
+ * <p>
+ * 计算出来的是最早可以重试的时间，实际的重试时间还取决于定时任务的interval()或者cron()
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+@FunctionalInterface
+public interface BackoffPolicy {
+
+    /**
+     * 不等待，下一次定时任务触发的时候就重试
+     */
+    BackoffPolicy NONE = (retryCount, previousDelay) -> 0;
+
+    /**
+     * 计算下一次重试之前需要等待的时长
+     *
+     * @param retryCount    已经重试的次数，从1开始
+     * @param previousDelay 上一次等待的时长（首次重试之前为initialDelay），单位：秒
+     * @return 需要等待的时长，单位：秒
+     */
+    long delay(int retryCount, long previousDelay);
+}
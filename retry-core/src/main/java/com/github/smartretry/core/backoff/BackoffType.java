@@ -0,0 +1,41 @@
+package com.github.smartretry.core.backoff;
+
+/**
+ * {@link com.github.smartretry.core.RetryFunction} 可以选择的退避策略
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+public enum BackoffType {
+
+    /**
+     * 固定时长，见 {@link FixedBackoffPolicy}
+     */
+    FIXED,
+
+    /**
+     * 指数退避，见 {@link ExponentialBackoffPolicy}
+     */
+    EXPONENTIAL,
+
+    /**
+     * 去相关抖动，见 {@link DecorrelatedJitterBackoffPolicy}
+     */
+    DECORRELATED_JITTER;
+
+    /**
+     * @param delay      单位：秒
+     * @param multiplier 只对EXPONENTIAL有效
+     * @param maxDelay   单位：秒，对FIXED无效
+     * @return
+     */
+    public BackoffPolicy create(long delay, double multiplier, long maxDelay) {
+        switch (this) {
+            case EXPONENTIAL:
+                return new ExponentialBackoffPolicy(delay, multiplier, maxDelay);
+            case DECORRELATED_JITTER:
+                return new DecorrelatedJitterBackoffPolicy(delay, maxDelay);
+            default:
+                return delay == 0 ? BackoffPolicy.NONE : new FixedBackoffPolicy(delay);
+        }
+    }
+}
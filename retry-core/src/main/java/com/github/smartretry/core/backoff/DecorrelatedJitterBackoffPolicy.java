@@ -0,0 +1,38 @@
+package com.github.smartretry.core.backoff;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 去相关抖动（decorrelated jitter）退避策略：每次等待的时长在 [delay, previousDelay * 3] 之间随机取值，最多等待maxDelay
+ * <p>
+ * 同一时间失败的大量任务，下一次重试的时间会被打散，避免下游服务刚恢复就被集中重试压垮
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+public class DecorrelatedJitterBackoffPolicy implements BackoffPolicy {
+
+    private long delay;
+
+    private long maxDelay;
+
+    /**
+     * @param delay    最少等待的时长，单位：秒
+     * @param maxDelay 最多等待的时长，单位：秒
+     */
+    public DecorrelatedJitterBackoffPolicy(long delay, long maxDelay) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay必须大于0");
+        }
+        this.delay = delay;
+        this.maxDelay = Math.max(delay, maxDelay);
+    }
+
+    @Override
+    public long delay(int retryCount, long previousDelay) {
+        long upper = Math.min(maxDelay, Math.max(delay, previousDelay) * 3);
+        if (upper <= delay) {
+            return delay;
+        }
+        return ThreadLocalRandom.current().nextLong(delay, upper + 1);
+    }
+}
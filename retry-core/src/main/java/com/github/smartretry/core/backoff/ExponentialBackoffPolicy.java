@@ -0,0 +1,38 @@
+package com.github.smartretry.core.backoff;
+
+/**
+ * 指数退避策略：第n次重试失败之后等待 delay * multiplier^(n-1)，最多等待maxDelay
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+public class ExponentialBackoffPolicy implements BackoffPolicy {
+
+    private long delay;
+
+    private double multiplier;
+
+    private long maxDelay;
+
+    /**
+     * @param delay      第一次重试失败之后等待的时长，单位：秒
+     * @param multiplier 每次等待的时长是上一次的多少倍
+     * @param maxDelay   最多等待的时长，单位：秒
+     */
+    public ExponentialBackoffPolicy(long delay, double multiplier, long maxDelay) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay必须大于0");
+        }
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier不能小于1");
+        }
+        this.delay = delay;
+        this.multiplier = multiplier;
+        this.maxDelay = Math.max(delay, maxDelay);
+    }
+
+    @Override
+    public long delay(int retryCount, long previousDelay) {
+        double value = delay * Math.pow(multiplier, Math.max(0, retryCount - 1));
+        return value >= maxDelay ? maxDelay : (long) value;
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.smartretry.core.backoff;
+
+/**
+ * 固定时长的退避策略
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+public class FixedBackoffPolicy implements BackoffPolicy {
+
+    private long delay;
+
+    /**
+     * @param delay 每次等待的时长，单位：秒
+     */
+    public FixedBackoffPolicy(long delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("delay不能小于0");
+        }
+        this.delay = delay;
+    }
+
+    @Override
+    public long delay(int retryCount, long previousDelay) {
+        return delay;
+    }
+}
@@ -0,0 +1,365 @@
+package com.github.smartretry.core.impl;
+
+import com.github.smartretry.core.RetryTask;
+import com.github.smartretry.core.RetryTaskMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步批量写入的RetryTaskMapper，用于retry.beforeTask=true时减少业务调用线程上的数据库操作
+ * <p>
+ * insert、update只是放入一个有界队列，由后台线程每隔flushInterval毫秒合并之后批量写入（group commit）：
+ * 1：同一批次里面插入之后又执行成功的任务，不会写入数据库
+ * 2：同一批次里面插入之后又更新了备注的任务，只插入一条带备注的记录
+ * <p>
+ * 队列满的时候，由调用线程直接把队列里面的数据同步写入数据库（反压）。
+ * 放入队列的是调用时RetryTask的快照，调用线程之后对RetryTask的修改不会影响写入的数据；插入之后生成的taskId会回写到原来的RetryTask上。
+ * 注意：任务在写入数据库之前如果系统宕机，这个任务将会丢失，所以只适合允许这种情况的业务
+ *
+ * @author yuni[mn960mn@163.com]
+ * @see ImmediatelyRetryHandler
+ */
+@Slf4j
+public class AsyncRetryTaskMapper implements RetryTaskMapper, Closeable {
+
+    public static final long DEFAULT_FLUSH_INTERVAL = 200;
+
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    /**
+     * 统计信息的打印间隔
+     */
+    private static final long STATISTICS_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private RetryTaskMapper delegate;
+
+    private BlockingQueue<PendingWrite> queue;
+
+    private long flushInterval;
+
+    private final Object flushLock = new Object();
+
+    private Thread writerThread;
+
+    private volatile boolean running = true;
+
+    /**
+     * 调用线程的写操作次数
+     */
+    private LongAdder callerWrites = new LongAdder();
+
+    /**
+     * 调用线程在写操作上面的耗时（包括队列满时同步写入的耗时）
+     */
+    private LongAdder callerNanos = new LongAdder();
+
+    /**
+     * 队列满时由调用线程同步写入的次数
+     */
+    private LongAdder callerRunsFlushes = new LongAdder();
+
+    /**
+     * 合并之后不需要写入数据库的写操作次数
+     */
+    private LongAdder collapsedWrites = new LongAdder();
+
+    /**
+     * 实际写入数据库的写操作次数
+     */
+    private LongAdder flushedWrites = new LongAdder();
+
+    /**
+     * 写入数据库的耗时
+     */
+    private LongAdder flushNanos = new LongAdder();
+
+    private long lastStatisticsTime = System.nanoTime();
+
+    public AsyncRetryTaskMapper(RetryTaskMapper delegate) {
+        this(delegate, DEFAULT_FLUSH_INTERVAL, DEFAULT_QUEUE_SIZE);
+    }
+
+    public AsyncRetryTaskMapper(RetryTaskMapper delegate, long flushInterval, int queueSize) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("flushInterval必须大于0");
+        }
+        this.delegate = delegate;
+        this.flushInterval = flushInterval;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+
+        this.writerThread = new Thread(this::runWriter, "retry-async-task-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public int insert(RetryTask retryTask) {
+        enqueue(new PendingWrite(retryTask, snapshot(retryTask), true));
+        return 1;
+    }
+
+    @Override
+    public int update(RetryTask retryTask) {
+        enqueue(new PendingWrite(retryTask, snapshot(retryTask), false));
+        return 1;
+    }
+
+    @Override
+    public List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay) {
+        return delegate.queryNeedRetryTaskList(identity, retryCount, initialDelay);
+    }
+
+    @Override
+    public List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize) {
+        return delegate.queryNeedRetryTaskList(identity, retryCount, initialDelay, lastTaskId, pageSize);
+    }
+
+    @Override
+    public List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize, int shardingTotalCount, int shardingItem) {
+        return delegate.queryNeedRetryTaskList(identity, retryCount, initialDelay, lastTaskId, pageSize, shardingTotalCount, shardingItem);
+    }
+
+    @Override
+    public List<RetryTask> claimNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize, String owner, int leaseSeconds) {
+        return delegate.claimNeedRetryTaskList(identity, retryCount, initialDelay, lastTaskId, pageSize, owner, leaseSeconds);
+    }
+
+    @Override
+    public int releaseClaim(List<Long> taskIds, String owner) {
+        return delegate.releaseClaim(taskIds, owner);
+    }
+
+    private void enqueue(PendingWrite pendingWrite) {
+        long start = System.nanoTime();
+        try {
+            if (running && queue.offer(pendingWrite)) {
+                return;
+            }
+            //队列满了（或者已经关闭），由调用线程把之前的写操作和当前的写操作一起同步写入
+            callerRunsFlushes.increment();
+            synchronized (flushLock) {
+                List<PendingWrite> writes = new ArrayList<>(queue.size() + 1);
+                queue.drainTo(writes);
+                writes.add(pendingWrite);
+                write(writes);
+            }
+        } finally {
+            callerWrites.increment();
+            callerNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private void runWriter() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        while (running) {
+            LockSupport.parkNanos(this, intervalNanos);
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error(e.getMessage(), e);
+            }
+            logStatisticsIfNecessary();
+        }
+    }
+
+    /**
+     * 把队列里面的写操作全部写入数据库
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<PendingWrite> writes = new ArrayList<>(queue.size());
+            queue.drainTo(writes);
+            if (!writes.isEmpty()) {
+                write(writes);
+            }
+        }
+    }
+
+    /**
+     * 按照原来的RetryTask合并写操作，写入的是最后一次写操作的快照
+     */
+    private void write(List<PendingWrite> writes) {
+        Map<RetryTask, RetryTask> insertTasks = new LinkedHashMap<>();
+        Map<RetryTask, RetryTask> updateTasks = new LinkedHashMap<>();
+        for (PendingWrite pendingWrite : writes) {
+            RetryTask retryTask = pendingWrite.retryTask;
+            RetryTask snapshot = pendingWrite.snapshot;
+            if (pendingWrite.insert) {
+                insertTasks.put(retryTask, snapshot);
+            } else if (insertTasks.containsKey(retryTask) && snapshot.getStatus() == RetryTask.STATUS_SUCCESS) {
+                //插入之后又执行成功了，插入和更新都不需要写入
+                insertTasks.remove(retryTask);
+                collapsedWrites.add(2);
+            } else if (insertTasks.containsKey(retryTask) && snapshot.getStatus() == RetryTask.STATUS_INIT) {
+                //还是待重试的状态，插入更新之后的快照
+                insertTasks.put(retryTask, snapshot);
+                collapsedWrites.increment();
+            } else if (updateTasks.put(retryTask, snapshot) != null) {
+                collapsedWrites.increment();
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            writeBatch(new ArrayList<>(insertTasks.values()), true);
+            insertTasks.forEach(AsyncRetryTaskMapper::copyTaskId);
+            //插入之前的快照没有taskId，从原来的RetryTask上获取
+            updateTasks.forEach((retryTask, snapshot) -> {
+                if (snapshot.getTaskId() == null) {
+                    snapshot.setTaskId(getTaskId(retryTask));
+                }
+            });
+            writeBatch(new ArrayList<>(updateTasks.values()), false);
+        } finally {
+            flushedWrites.add(insertTasks.size() + (long) updateTasks.size());
+            flushNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 调用线程在同一个RetryTask上加锁，保证快照的字段一致，并且能看到写入线程回写的taskId
+     */
+    private static RetryTask snapshot(RetryTask retryTask) {
+        RetryTask snapshot = new RetryTask();
+        synchronized (retryTask) {
+            snapshot.setTaskId(retryTask.getTaskId());
+            snapshot.setIdentity(retryTask.getIdentity());
+            snapshot.setParams(retryTask.getParams());
+            snapshot.setParamsBytes(retryTask.getParamsBytes());
+            snapshot.setStatus(retryTask.getStatus());
+            snapshot.setRetryCount(retryTask.getRetryCount());
+            snapshot.setRemark(retryTask.getRemark());
+            snapshot.setCreateDate(retryTask.getCreateDate());
+            snapshot.setEditDate(retryTask.getEditDate());
+            snapshot.setNextRetryDate(retryTask.getNextRetryDate());
+        }
+        return snapshot;
+    }
+
+    private static void copyTaskId(RetryTask retryTask, RetryTask snapshot) {
+        synchronized (retryTask) {
+            retryTask.setTaskId(snapshot.getTaskId());
+        }
+    }
+
+    private static Long getTaskId(RetryTask retryTask) {
+        synchronized (retryTask) {
+            return retryTask.getTaskId();
+        }
+    }
+
+    private void writeBatch(List<RetryTask> retryTasks, boolean insert) {
+        if (retryTasks.isEmpty()) {
+            return;
+        }
+        try {
+            if (insert) {
+                delegate.insertBatch(retryTasks);
+            } else {
+                delegate.updateBatch(retryTasks);
+            }
+        } catch (RuntimeException e) {
+            log.error("批量写入重试任务失败，改为逐条写入：" + e.getMessage(), e);
+            for (RetryTask retryTask : retryTasks) {
+                try {
+                    if (insert) {
+                        delegate.insert(retryTask);
+                    } else {
+                        delegate.update(retryTask);
+                    }
+                } catch (RuntimeException ex) {
+                    log.error("写入重试任务失败，任务丢失：" + retryTask, ex);
+                }
+            }
+        }
+    }
+
+    private void logStatisticsIfNecessary() {
+        long now = System.nanoTime();
+        if (now - lastStatisticsTime < STATISTICS_INTERVAL_NANOS) {
+            return;
+        }
+        lastStatisticsTime = now;
+        if (log.isInfoEnabled()) {
+            log.info("异步写入重试任务统计：写操作{}次，合并掉{}次，实际写入{}次，队列满时同步写入{}次，调用线程平均耗时{}us，数据库平均每次写入耗时{}us，平均每次调用节省{}us",
+                    callerWrites.sum(), collapsedWrites.sum(), flushedWrites.sum(), callerRunsFlushes.sum(),
+                    getAverageCallerMicros(), getAverageFlushMicros(), getAverageSavedMicros());
+        }
+    }
+
+    /**
+     * @return 调用线程每次写操作的平均耗时，单位：微秒
+     */
+    public long getAverageCallerMicros() {
+        long writes = callerWrites.sum();
+        return writes == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(callerNanos.sum() / writes);
+    }
+
+    /**
+     * @return 每次写入数据库的平均耗时（批量写入时按写入次数平均），单位：微秒
+     */
+    public long getAverageFlushMicros() {
+        long writes = flushedWrites.sum();
+        return writes == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(flushNanos.sum() / writes);
+    }
+
+    /**
+     * 估算的每次写操作节省的调用线程耗时：同步写入需要的耗时（按实际写入的平均耗时估算）减去调用线程实际的耗时
+     *
+     * @return 单位：微秒
+     */
+    public long getAverageSavedMicros() {
+        return Math.max(0, getAverageFlushMicros() - getAverageCallerMicros());
+    }
+
+    public long getCollapsedWrites() {
+        return collapsedWrites.sum();
+    }
+
+    public long getCallerRunsFlushes() {
+        return callerRunsFlushes.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private static class PendingWrite {
+
+        /**
+         * 调用方传入的RetryTask，只用来合并同一个任务的写操作和回写taskId
+         */
+        private final RetryTask retryTask;
+
+        /**
+         * 调用时的快照，写入的是快照的数据
+         */
+        private final RetryTask snapshot;
+
+        private final boolean insert;
+
+        PendingWrite(RetryTask retryTask, RetryTask snapshot, boolean insert) {
+            this.retryTask = retryTask;
+            this.snapshot = snapshot;
+            this.insert = insert;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.smartretry.core.impl;
+
+import com.github.smartretry.core.RetryTask;
+import com.github.smartretry.core.RetryTaskMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 缓存重试过程中产生的任务更新，调用flush的时候通过 {@link RetryTaskMapper#updateBatch(List)} 一次性写入
+ * <p>
+ * 缓存的任务数量达到batchSize时会自动flush，避免一次重试的任务过多时占用过多内存
+ *
+ * @author yuni[mn960mn@163.com]
+ * @see DefaultRetryProcessor
+ */
+class BatchUpdateRetryTaskMapper implements RetryTaskMapper {
+
+    private RetryTaskMapper delegate;
+
+    private int batchSize;
+
+    private List<RetryTask> pendingTasks = new ArrayList<>();
+
+    public BatchUpdateRetryTaskMapper(RetryTaskMapper delegate, int batchSize) {
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public int insert(RetryTask retryTask) {
+        return delegate.insert(retryTask);
+    }
+
+    @Override
+    public int insertBatch(List<RetryTask> retryTasks) {
+        return delegate.insertBatch(retryTasks);
+    }
+
+    @Override
+    public int update(RetryTask retryTask) {
+        List<RetryTask> tasks;
+        synchronized (this) {
+            pendingTasks.add(retryTask);
+            if (pendingTasks.size() < batchSize) {
+                return 1;
+            }
+            tasks = drain();
+        }
+        delegate.updateBatch(tasks);
+        return 1;
+    }
+
+    @Override
+    public int updateBatch(List<RetryTask> retryTasks) {
+        retryTasks.forEach(this::update);
+        return retryTasks.size();
+    }
+
+    @Override
+    public List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay) {
+        return delegate.queryNeedRetryTaskList(identity, retryCount, initialDelay);
+    }
+
+    @Override
+    public List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize) {
+        return delegate.queryNeedRetryTaskList(identity, retryCount, initialDelay, lastTaskId, pageSize);
+    }
+
+    @Override
+    public List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize, int shardingTotalCount, int shardingItem) {
+        return delegate.queryNeedRetryTaskList(identity, retryCount, initialDelay, lastTaskId, pageSize, shardingTotalCount, shardingItem);
+    }
+
+    @Override
+    public List<RetryTask> claimNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize, String owner, int leaseSeconds) {
+        return delegate.claimNeedRetryTaskList(identity, retryCount, initialDelay, lastTaskId, pageSize, owner, leaseSeconds);
+    }
+
+    @Override
+    public int releaseClaim(List<Long> taskIds, String owner) {
+        return delegate.releaseClaim(taskIds, owner);
+    }
+
+    /**
+     * 把缓存的任务更新一次性写入
+     *
+     * @return 更新的行数
+     */
+    public int flush() {
+        List<RetryTask> tasks;
+        synchronized (this) {
+            if (pendingTasks.isEmpty()) {
+                return 0;
+            }
+            tasks = drain();
+        }
+        return delegate.updateBatch(tasks);
+    }
+
+    private List<RetryTask> drain() {
+        List<RetryTask> tasks = pendingTasks;
+        pendingTasks = new ArrayList<>();
+        return tasks;
+    }
+}
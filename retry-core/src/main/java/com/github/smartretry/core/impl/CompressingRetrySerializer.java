@@ -0,0 +1,361 @@
+package com.github.smartretry.core.impl;
+
+import com.github.smartretry.core.RetrySerializer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 压缩参数的RetrySerializer，序列化之后的参数（UTF-8编码之后的字节数）超过threshold时，使用codec压缩之后再保存
+ * <p>
+ * 压缩之后的参数带有前缀，所以压缩和没有压缩的参数可以同时存在，之前没有压缩的参数仍然可以反序列化：
+ * <ul>
+ * <li>byte[]：0x00 'Z' codec的id，后面是压缩之后的字节</li>
+ * <li>String："#Z" codec的id ":"，后面是压缩之后的字节的Base64编码</li>
+ * </ul>
+ * JSON和Smile都不会以这些前缀开头，自定义的RetrySerializer需要保证这一点
+ * <p>
+ * compressEnabled只控制保存的时候是否压缩，读取的时候总是会识别压缩的前缀，所以关闭压缩之后，之前压缩保存的参数仍然可以反序列化。
+ * 同样，codec只用于保存，读取的时候按照前缀里面的id选择压缩算法：DeflateCodec总是可以读取，更换压缩算法之前使用的其他压缩算法通过decodeCodecs指定
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+@Slf4j
+public class CompressingRetrySerializer implements RetrySerializer {
+
+    public static final int DEFAULT_THRESHOLD = 4096;
+
+    private static final byte BYTES_MAGIC = 'Z';
+
+    private static final String STRING_PREFIX = "#Z";
+
+    /**
+     * 统计信息的打印间隔
+     */
+    private static final long STATISTICS_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final RetrySerializer delegate;
+
+    /**
+     * 保存的时候使用的压缩算法
+     */
+    private final Codec codec;
+
+    /**
+     * 读取的时候可以识别的压缩算法，key是压缩算法的id
+     */
+    private final Map<Byte, Codec> codecs;
+
+    private final int threshold;
+
+    private final boolean compressEnabled;
+
+    /**
+     * 压缩的次数
+     */
+    private final LongAdder compressedCount = new LongAdder();
+
+    /**
+     * 小于threshold或者压缩之后没有变小，没有压缩的次数
+     */
+    private final LongAdder uncompressedCount = new LongAdder();
+
+    /**
+     * 调用codec压缩的次数，包括压缩之后没有变小的
+     */
+    private final LongAdder compressAttempts = new LongAdder();
+
+    /**
+     * 压缩的参数压缩之前的总字节数
+     */
+    private final LongAdder originalBytes = new LongAdder();
+
+    /**
+     * 压缩的参数压缩之后的总字节数
+     */
+    private final LongAdder compressedBytes = new LongAdder();
+
+    /**
+     * codec压缩的耗时，包括压缩之后没有变小的
+     */
+    private final LongAdder compressNanos = new LongAdder();
+
+    private final LongAdder decompressedCount = new LongAdder();
+
+    private final LongAdder decompressNanos = new LongAdder();
+
+    private final AtomicLong lastStatisticsTime = new AtomicLong(System.nanoTime());
+
+    public CompressingRetrySerializer(RetrySerializer delegate) {
+        this(delegate, new DeflateCodec(Deflater.DEFAULT_COMPRESSION), DEFAULT_THRESHOLD);
+    }
+
+    public CompressingRetrySerializer(RetrySerializer delegate, Codec codec, int threshold) {
+        this(delegate, codec, threshold, true);
+    }
+
+    /**
+     * @param compressEnabled 保存的时候是否压缩，为false时只解压之前压缩保存的参数
+     */
+    public CompressingRetrySerializer(RetrySerializer delegate, Codec codec, int threshold, boolean compressEnabled) {
+        this(delegate, codec, threshold, compressEnabled, Collections.emptyList());
+    }
+
+    /**
+     * @param codec        保存的时候使用的压缩算法
+     * @param decodeCodecs 除了DeflateCodec和codec之外，读取的时候还需要识别的压缩算法，比如说更换压缩算法之前使用的
+     */
+    public CompressingRetrySerializer(RetrySerializer delegate, Codec codec, int threshold, boolean compressEnabled, Collection<? extends Codec> decodeCodecs) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold不能小于0");
+        }
+        this.delegate = delegate;
+        this.codec = codec;
+        this.threshold = threshold;
+        this.compressEnabled = compressEnabled;
+
+        Map<Byte, Codec> codecs = new HashMap<>();
+        addCodec(codecs, new DeflateCodec(Deflater.DEFAULT_COMPRESSION));
+        decodeCodecs.forEach(decodeCodec -> addCodec(codecs, decodeCodec));
+        addCodec(codecs, codec);
+        this.codecs = codecs;
+    }
+
+    private static void addCodec(Map<Byte, Codec> codecs, Codec codec) {
+        Codec existing = codecs.put(codec.id(), codec);
+        if (existing != null && existing.getClass() != codec.getClass()) {
+            throw new IllegalArgumentException("压缩算法" + existing.getClass().getName() + "和" + codec.getClass().getName() + "的id=" + codec.id() + "重复");
+        }
+    }
+
+    @Override
+    public String serialize(Object object) {
+        String value = delegate.serialize(object);
+        if (!compressEnabled) {
+            return value;
+        }
+        //UTF-8编码之后每个字符最多3个字节，字符数的3倍都小于threshold时不需要编码
+        if (value == null || value.length() * 3L < threshold) {
+            uncompressedCount.increment();
+            return value;
+        }
+        byte[] original = value.getBytes(StandardCharsets.UTF_8);
+        if (original.length < threshold) {
+            uncompressedCount.increment();
+            return value;
+        }
+        byte[] compressed = compress(original);
+        String compressedValue = STRING_PREFIX + codec.id() + ":" + Base64.getEncoder().encodeToString(compressed);
+        if (compressedValue.length() >= original.length) {
+            uncompressedCount.increment();
+            return value;
+        }
+        recordCompressed(original.length, compressedValue.length());
+        return compressedValue;
+    }
+
+    @Override
+    public Object deserialize(String value, Class<?> clazz) {
+        if (value.startsWith(STRING_PREFIX)) {
+            int index = value.indexOf(':', STRING_PREFIX.length());
+            if (index > 0) {
+                byte id = Byte.parseByte(value.substring(STRING_PREFIX.length(), index));
+                byte[] original = decompress(id, Base64.getDecoder().decode(value.substring(index + 1)));
+                return delegate.deserialize(new String(original, StandardCharsets.UTF_8), clazz);
+            }
+        }
+        return delegate.deserialize(value, clazz);
+    }
+
+    @Override
+    public byte[] serializeToBytes(Object object) {
+        byte[] original = delegate.serializeToBytes(object);
+        if (!compressEnabled) {
+            return original;
+        }
+        if (original == null || original.length < threshold) {
+            uncompressedCount.increment();
+            return original;
+        }
+        byte[] compressed = compress(original);
+        if (compressed.length + 3 >= original.length) {
+            uncompressedCount.increment();
+            return original;
+        }
+        recordCompressed(original.length, compressed.length + 3);
+        byte[] value = new byte[compressed.length + 3];
+        value[1] = BYTES_MAGIC;
+        value[2] = codec.id();
+        System.arraycopy(compressed, 0, value, 3, compressed.length);
+        return value;
+    }
+
+    @Override
+    public Object deserialize(byte[] value, Class<?> clazz) {
+        if (value.length >= 3 && value[0] == 0 && value[1] == BYTES_MAGIC) {
+            return delegate.deserialize(decompress(value[2], Arrays.copyOfRange(value, 3, value.length)), clazz);
+        }
+        return delegate.deserialize(value, clazz);
+    }
+
+    private byte[] compress(byte[] original) {
+        long start = System.nanoTime();
+        byte[] compressed = codec.compress(original);
+        compressNanos.add(System.nanoTime() - start);
+        compressAttempts.increment();
+        return compressed;
+    }
+
+    private void recordCompressed(int originalLength, int compressedLength) {
+        compressedCount.increment();
+        originalBytes.add(originalLength);
+        compressedBytes.add(compressedLength);
+        logStatisticsIfNecessary();
+    }
+
+    private byte[] decompress(byte id, byte[] compressed) {
+        Codec decodeCodec = codecs.get(id);
+        if (decodeCodec == null) {
+            throw new IllegalArgumentException("参数使用了id=" + id + "的压缩算法，没有找到对应的Codec，更换压缩算法之前使用的Codec需要添加到decodeCodecs");
+        }
+        long start = System.nanoTime();
+        byte[] original = decodeCodec.decompress(compressed);
+        decompressNanos.add(System.nanoTime() - start);
+        decompressedCount.increment();
+        logStatisticsIfNecessary();
+        return original;
+    }
+
+    private void logStatisticsIfNecessary() {
+        long now = System.nanoTime();
+        long last = lastStatisticsTime.get();
+        if (now - last < STATISTICS_INTERVAL_NANOS || !lastStatisticsTime.compareAndSet(last, now)) {
+            return;
+        }
+        if (log.isInfoEnabled()) {
+            log.info("参数压缩统计：压缩{}次，没有压缩{}次，压缩率{}%，平均每次压缩耗时{}us，解压{}次，平均每次解压耗时{}us",
+                    compressedCount.sum(), uncompressedCount.sum(), getCompressionRatio(), getAverageCompressMicros(),
+                    decompressedCount.sum(), getAverageDecompressMicros());
+        }
+    }
+
+    /**
+     * @return 保存的大小占压缩之前的百分比，只统计压缩了的参数
+     */
+    public long getCompressionRatio() {
+        long original = originalBytes.sum();
+        return original == 0 ? 100 : compressedBytes.sum() * 100 / original;
+    }
+
+    /**
+     * @return 每次压缩的平均耗时，包括压缩之后没有变小的，单位：微秒
+     */
+    public long getAverageCompressMicros() {
+        long count = compressAttempts.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(compressNanos.sum() / count);
+    }
+
+    /**
+     * @return 每次解压的平均耗时，单位：微秒
+     */
+    public long getAverageDecompressMicros() {
+        long count = decompressedCount.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(decompressNanos.sum() / count);
+    }
+
+    public long getCompressedCount() {
+        return compressedCount.sum();
+    }
+
+    public long getUncompressedCount() {
+        return uncompressedCount.sum();
+    }
+
+    public long getDecompressedCount() {
+        return decompressedCount.sum();
+    }
+
+    /**
+     * 压缩算法
+     */
+    public interface Codec {
+
+        /**
+         * 保存在压缩之后的参数的前缀里面，用来识别压缩算法，不同的压缩算法不能相同
+         */
+        byte id();
+
+        byte[] compress(byte[] value);
+
+        byte[] decompress(byte[] value);
+    }
+
+    /**
+     * 使用JDK自带的Deflater，id=1
+     */
+    public static class DeflateCodec implements Codec {
+
+        private final int level;
+
+        public DeflateCodec(int level) {
+            this.level = level;
+        }
+
+        @Override
+        public byte id() {
+            return 1;
+        }
+
+        @Override
+        public byte[] compress(byte[] value) {
+            Deflater deflater = new Deflater(level);
+            try {
+                deflater.setInput(value);
+                deflater.finish();
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream(value.length / 2 + 64);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    outputStream.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return outputStream.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public byte[] decompress(byte[] value) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(value);
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream(value.length * 4);
+                byte[] buffer = new byte[8192];
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(buffer);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IllegalArgumentException("压缩的参数不完整");
+                    }
+                    outputStream.write(buffer, 0, n);
+                }
+                return outputStream.toByteArray();
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.github.smartretry.core.RetryTaskFactory;
 import com.github.smartretry.core.RetryTaskMapper;
 import com.github.smartretry.core.support.DefaultRetryHandler;
 import com.github.smartretry.core.support.GenericRetryHandler;
+import lombok.Setter;
 
 /**
  * @author yuni[mn960mn@163.com]
@@ -18,6 +19,12 @@ public class DefaultRetryHandlerPostProcessor implements RetryHandlerPostProcess
 
     private boolean beforeTask;
 
+    /**
+     * 不为null时，首次执行失败的任务先在当前节点本地重试
+     */
+    @Setter
+    private LocalRetryScheduler localRetryScheduler;
+
     public DefaultRetryHandlerPostProcessor(RetryTaskMapper retryTaskMapper, boolean beforeTask) {
         this(new DefaultRetryTaskFactory(), retryTaskMapper, beforeTask);
     }
@@ -31,8 +38,8 @@ public class DefaultRetryHandlerPostProcessor implements RetryHandlerPostProcess
     @Override
     public RetryHandler<Object, Object> doPost(RetryHandler<Object, Object> retryHandler) {
         if (retryHandler instanceof GenericRetryHandler) {
-            return new ImmediatelyRetryHandler((GenericRetryHandler) retryHandler, retryTaskFactory, retryTaskMapper, beforeTask);
+            return new ImmediatelyRetryHandler((GenericRetryHandler) retryHandler, retryTaskFactory, retryTaskMapper, beforeTask, localRetryScheduler);
         }
-        return new ImmediatelyRetryHandler(new DefaultRetryHandler(retryHandler), retryTaskFactory, retryTaskMapper, beforeTask);
+        return new ImmediatelyRetryHandler(new DefaultRetryHandler(retryHandler), retryTaskFactory, retryTaskMapper, beforeTask, localRetryScheduler);
     }
 }
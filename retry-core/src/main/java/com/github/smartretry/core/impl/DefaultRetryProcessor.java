@@ -1,5 +1,6 @@
 package com.github.smartretry.core.impl;
 
+import com.github.smartretry.core.NoRetryException;
 import com.github.smartretry.core.RetryHandler;
 import com.github.smartretry.core.RetryProcessor;
 import com.github.smartretry.core.RetrySerializer;
@@ -7,23 +8,129 @@ import com.github.smartretry.core.RetryTask;
 import com.github.smartretry.core.RetryTaskMapper;
 import com.github.smartretry.core.support.DefaultRetryHandler;
 import com.github.smartretry.core.support.GenericRetryHandler;
+import com.github.smartretry.core.util.VirtualThreadUtils;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * @author yuni[mn960mn@163.com]
  */
 @Slf4j
-public class DefaultRetryProcessor implements RetryProcessor {
+public class DefaultRetryProcessor implements RetryProcessor, Closeable {
+
+    /**
+     * 任务状态的更新先缓存起来，最多缓存多少个之后批量写入
+     */
+    public static final int DEFAULT_UPDATE_BATCH_SIZE = 500;
+
+    /**
+     * 默认每次从数据库查询多少个任务进行重试
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * 默认抢占任务的占用时长5分钟
+     */
+    public static final int DEFAULT_LEASE_SECONDS = 300;
+
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
 
     private GenericRetryHandler genericRetryHandler;
 
     private RetryTaskMapper retryTaskMapper;
 
+    private BatchUpdateRetryTaskMapper batchUpdateRetryTaskMapper;
+
     private RetryedRetryHandler retryedRetryHandler;
 
+    private int parallelism;
+
+    /**
+     * 同一个identity的重试限流，不需要限流时为null
+     */
+    private RetryLimiter retryLimiter;
+
+    /**
+     * 同一个identity的重试熔断器，不需要熔断时为null
+     */
+    private RetryCircuitBreaker circuitBreaker;
+
+    /**
+     * parallelism大于1时用来并发重试任务的线程池，第一次并发重试的时候创建，close的时候关闭
+     */
+    private ExecutorService executor;
+
+    /**
+     * 使用虚拟线程时，限制同时重试的任务数量不超过parallelism
+     */
+    private Semaphore permits;
+
+    /**
+     * 当前正在重试的任务数量，以及本次定时重试中同时重试的最大任务数量
+     */
+    private AtomicInteger inFlight = new AtomicInteger();
+
+    private AtomicInteger peakInFlight = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    /**
+     * parallelism大于1时，是否使用虚拟线程（需要JDK21及以上）并发重试任务。适合handle方法是阻塞IO的场景
+     * <p>
+     * parallelism小于等于1时任务在调用doRetry的线程里面逐个重试，不会创建线程池。
+     * 开启retry.virtualThreads.enabled之后，定时任务本身就在虚拟线程里面执行，不需要再切换到另外一个虚拟线程
+     */
+    @Setter
+    @Getter
+    private boolean virtualThreadEnabled;
+
+    /**
+     * 每次从数据库查询多少个任务进行重试，一页的任务重试完之后再查询下一页，避免任务过多时占用大量内存
+     */
+    @Setter
+    @Getter
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    /**
+     * 抢占任务的节点标识。不为空时，通过 {@link RetryTaskMapper#claimNeedRetryTaskList} 抢占任务，多个节点可以同时重试同一个identity
+     */
+    @Setter
+    @Getter
+    private String claimOwner;
+
+    /**
+     * 抢占任务的占用时长，单位：秒。需要大于一页任务的重试耗时
+     */
+    @Setter
+    @Getter
+    private int leaseSeconds = DEFAULT_LEASE_SECONDS;
+
     public DefaultRetryProcessor(RetryHandler<Object, Object> retryHandler, RetryTaskMapper retryTaskMapper, RetrySerializer retrySerializer) {
         if (retryHandler instanceof GenericRetryHandler) {
             this.genericRetryHandler = (GenericRetryHandler) retryHandler;
@@ -31,52 +138,410 @@ public class DefaultRetryProcessor implements RetryProcessor {
             this.genericRetryHandler = new DefaultRetryHandler(retryHandler);
         }
         this.retryTaskMapper = retryTaskMapper;
+        this.batchUpdateRetryTaskMapper = new BatchUpdateRetryTaskMapper(retryTaskMapper, DEFAULT_UPDATE_BATCH_SIZE);
 
         if (retrySerializer == null) {
-            this.retryedRetryHandler = new RetryedRetryHandler(genericRetryHandler, retryTaskMapper);
+            this.retryedRetryHandler = new RetryedRetryHandler(genericRetryHandler, batchUpdateRetryTaskMapper);
         } else {
-            this.retryedRetryHandler = new RetryedRetryHandler(genericRetryHandler, retryTaskMapper, retrySerializer);
+            this.retryedRetryHandler = new RetryedRetryHandler(genericRetryHandler, batchUpdateRetryTaskMapper, retrySerializer);
+        }
+
+        this.parallelism = genericRetryHandler.parallelism();
+        int maxConcurrentAttempts = genericRetryHandler.maxConcurrentAttempts();
+        if (RetryLimiter.isLimited(maxConcurrentAttempts, genericRetryHandler.maxAttemptsPerSecond())) {
+            this.retryLimiter = new RetryLimiter(maxConcurrentAttempts, genericRetryHandler.maxAttemptsPerSecond());
+            if (maxConcurrentAttempts > 0) {
+                //并发数超过maxConcurrentAttempts的线程只会把任务推迟，没有意义
+                this.parallelism = Math.min(parallelism, maxConcurrentAttempts);
+            }
+        }
+        if (genericRetryHandler.circuitBreakerFailureRate() > 0) {
+            this.circuitBreaker = new RetryCircuitBreaker(genericRetryHandler.circuitBreakerFailureRate(), genericRetryHandler.circuitBreakerWindowSize(), genericRetryHandler.circuitBreakerOpenSeconds());
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (closed) {
+            throw new RejectedExecutionException("Identity=" + genericRetryHandler.identity() + "已经关闭");
+        }
+        if (executor == null) {
+            if (virtualThreadEnabled) {
+                this.executor = VirtualThreadUtils.newVirtualThreadPerTaskExecutor();
+                this.permits = new Semaphore(parallelism);
+            } else {
+                this.executor = newExecutor(genericRetryHandler.identity(), parallelism);
+            }
         }
+        return executor;
+    }
+
+    /**
+     * 线程空闲之后会被回收，两次定时重试之间不会占用线程
+     */
+    private static ThreadPoolExecutor newExecutor(String identity, int parallelism) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "retry-" + identity + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
     }
 
     @Override
     public void doRetry() {
-        log.info("开始执行Identity={}的重试，maxRetryCount={}, initialDelay={}", genericRetryHandler.identity(), genericRetryHandler.maxRetryCount(), genericRetryHandler.initialDelay());
-        List<RetryTask> tasks = retryTaskMapper.queryNeedRetryTaskList(genericRetryHandler.identity(), genericRetryHandler.maxRetryCount(), genericRetryHandler.initialDelay());
-        if (tasks == null) {
+        doRetry(1, 0);
+    }
+
+    /**
+     * 分片总数大于1时，只查询taskId % shardingTotalCount = shardingItem的任务，此时不抢占任务
+     */
+    @Override
+    public void doRetry(int shardingTotalCount, int shardingItem) {
+        if (closed) {
+            log.info("Identity={}已经关闭，跳过本次重试", genericRetryHandler.identity());
             return;
         }
-        log.info("Identity={}当前有{}个任务准备重试", genericRetryHandler.identity(), tasks.size());
+        if (circuitBreaker != null && !circuitBreaker.allowPass()) {
+            log.info("Identity={}处于熔断中，跳过本次重试", genericRetryHandler.identity());
+            return;
+        }
+        if (shardingTotalCount > 1) {
+            log.info("开始执行Identity={}的重试，maxRetryCount={}, initialDelay={}，分片{}/{}", genericRetryHandler.identity(), genericRetryHandler.maxRetryCount(), genericRetryHandler.initialDelay(), shardingItem, shardingTotalCount);
+        } else {
+            log.info("开始执行Identity={}的重试，maxRetryCount={}, initialDelay={}", genericRetryHandler.identity(), genericRetryHandler.maxRetryCount(), genericRetryHandler.initialDelay());
+        }
+        long start = System.currentTimeMillis();
+        long lastTaskId = 0;
+        int total = 0;
+        peakInFlight.set(0);
+        //被限流或者熔断之后，剩下的任务推迟到下一次定时重试
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicInteger deferred = new AtomicInteger();
+        //抢占模式下记录一页中已经开始重试的任务，没有开始的任务在这一页结束的时候释放占用
+        Set<Long> started = shardingTotalCount > 1 || StringUtils.isBlank(claimOwner) ? null : ConcurrentHashMap.newKeySet();
+        while (true) {
+            List<RetryTask> tasks = queryNeedRetryTaskList(lastTaskId, shardingTotalCount, shardingItem);
+            if (tasks == null || tasks.isEmpty()) {
+                break;
+            }
+            log.info("Identity={}当前有{}个任务准备重试", genericRetryHandler.identity(), tasks.size());
+            total += tasks.size();
+            try {
+                if (genericRetryHandler.getBatchHandler() != null) {
+                    peakInFlight.accumulateAndGet(tasks.size(), Math::max);
+                    doRetryBatch(tasks, stopped, deferred, started);
+                } else {
+                    doRetry(tasks, stopped, deferred, started);
+                }
+            } finally {
+                //一页的任务状态批量写入
+                batchUpdateRetryTaskMapper.flush();
+                if (started != null) {
+                    releaseClaim(tasks, started);
+                }
+            }
+            if (tasks.size() < pageSize || stopped.get()) {
+                break;
+            }
+            lastTaskId = tasks.get(tasks.size() - 1).getTaskId();
+        }
+        if (deferred.get() > 0) {
+            log.info("Identity={}被限流或熔断，{}个任务推迟到下一次重试", genericRetryHandler.identity(), deferred.get());
+            total -= deferred.get();
+        }
+        //ThreadMXBean只统计平台线程，开启虚拟线程之后可以用来对比线程的占用
+        log.info("Identity={}本次共重试了{}个任务，耗时{}ms，最多同时重试{}个任务，当前平台线程数{}", genericRetryHandler.identity(), total,
+                System.currentTimeMillis() - start, peakInFlight.get(), ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+    private void doRetry(List<RetryTask> tasks, AtomicBoolean stopped, AtomicInteger deferred, Set<Long> started) {
+        Function<RetryTask, CompletableFuture<?>> action = this::doRetry;
+        if (started != null) {
+            action = retryTask -> {
+                started.add(retryTask.getTaskId());
+                return doRetry(retryTask);
+            };
+        }
+        if (circuitBreaker != null) {
+            action = circuitBreak(action, stopped, deferred);
+        }
         if (genericRetryHandler.ignoreException()) {
-            tasks.forEach(this::doRetryWithIgnoreException);
+            action = ignoreException(action);
+        }
+        if (retryLimiter != null) {
+            action = limit(action, stopped, deferred);
+        }
+        if (parallelism <= 1 || tasks.size() == 1) {
+            peakInFlight.accumulateAndGet(1, Math::max);
+            doRetrySerially(tasks, action);
         } else {
-            tasks.forEach(this::doRetry);
+            doRetryInParallel(tasks, action);
         }
     }
 
-    private void doRetryWithIgnoreException(RetryTask retryTask) {
-        log.info("开始重试Identity={}，TaskId={}的任务", retryTask.getIdentity(), retryTask.getTaskId());
-        retryedRetryHandler.setRetryTask(retryTask);
-        String json = retryTask.getParams();
+    /**
+     * 批量重试一页的任务，一页只调用一次handleBatch方法
+     * <p>
+     * 限流和熔断按照handleBatch方法的调用次数计算，获取不到许可时整页的任务推迟到下一次定时重试。
+     * handleBatch方法抛出异常，或者一页的任务全部失败，熔断器才记录一次失败
+     */
+    private void doRetryBatch(List<RetryTask> tasks, AtomicBoolean stopped, AtomicInteger deferred, Set<Long> started) {
+        if (retryLimiter != null && !retryLimiter.tryAcquire()) {
+            stopped.set(true);
+            deferred.addAndGet(tasks.size());
+            return;
+        }
         try {
-            if (StringUtils.isBlank(json)) {
-                retryedRetryHandler.handle(null);
-            } else {
-                retryedRetryHandler.parseArgsAndhandle(json);
+            if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+                stopped.set(true);
+                deferred.addAndGet(tasks.size());
+                return;
+            }
+            if (started != null) {
+                tasks.forEach(retryTask -> started.add(retryTask.getTaskId()));
+            }
+            RuntimeException exception;
+            try {
+                exception = retryedRetryHandler.handleBatch(tasks);
+            } catch (RuntimeException e) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onFailure();
+                }
+                throw e;
+            }
+            if (circuitBreaker != null) {
+                if (tasks.stream().allMatch(retryTask -> retryTask.getStatus() != RetryTask.STATUS_SUCCESS)) {
+                    circuitBreaker.onFailure();
+                } else {
+                    circuitBreaker.onSuccess();
+                }
+            }
+            if (exception != null) {
+                throw exception;
             }
         } catch (RuntimeException e) {
+            if (!genericRetryHandler.ignoreException()) {
+                throw e;
+            }
             log.error(e.getMessage(), e);
+        } finally {
+            if (retryLimiter != null) {
+                retryLimiter.release();
+            }
         }
     }
 
-    private void doRetry(RetryTask retryTask) {
-        log.info("开始重试Identity={}，Id={}的任务", retryTask.getIdentity(), retryTask.getTaskId());
-        retryedRetryHandler.setRetryTask(retryTask);
-        String json = retryTask.getParams();
-        if (StringUtils.isBlank(json)) {
-            retryedRetryHandler.handle(null);
+    /**
+     * 抢占到但是没有开始重试的任务（被限流、熔断，或者前面的任务报错之后跳过）马上释放占用，不用等leaseSeconds过期，其他节点就可以重新抢占
+     * <p>
+     * 占用过期之后任务还是会被重新抢占，所以释放失败只打印日志
+     */
+    private void releaseClaim(List<RetryTask> tasks, Set<Long> started) {
+        List<Long> taskIds = tasks.stream().map(RetryTask::getTaskId).filter(taskId -> !started.contains(taskId)).collect(Collectors.toList());
+        if (taskIds.isEmpty()) {
+            return;
+        }
+        try {
+            int rows = retryTaskMapper.releaseClaim(taskIds, claimOwner);
+            log.info("Identity={}释放了{}个没有开始重试的任务的占用", genericRetryHandler.identity(), rows);
+        } catch (RuntimeException e) {
+            log.error("Identity=" + genericRetryHandler.identity() + "释放任务的占用失败：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 获取不到许可的任务直接跳过（不更新任务，所以不算失败，也不增加重试次数），并且本次定时重试不再查询下一页
+     * <p>
+     * 异步重试的任务在CompletableFuture完成之后才释放许可
+     */
+    private Function<RetryTask, CompletableFuture<?>> limit(Function<RetryTask, CompletableFuture<?>> action, AtomicBoolean stopped, AtomicInteger deferred) {
+        return retryTask -> {
+            if (stopped.get() || !retryLimiter.tryAcquire()) {
+                stopped.set(true);
+                deferred.incrementAndGet();
+                return COMPLETED;
+            }
+            CompletableFuture<?> future;
+            try {
+                future = action.apply(retryTask);
+            } catch (RuntimeException | Error e) {
+                retryLimiter.release();
+                throw e;
+            }
+            return future.whenComplete((result, throwable) -> retryLimiter.release());
+        };
+    }
+
+    /**
+     * 熔断之后剩下的任务直接跳过。半开状态只放行一个任务，成功之后才继续重试其他任务
+     */
+    private Function<RetryTask, CompletableFuture<?>> circuitBreak(Function<RetryTask, CompletableFuture<?>> action, AtomicBoolean stopped, AtomicInteger deferred) {
+        return retryTask -> {
+            if (stopped.get() || !circuitBreaker.tryAcquire()) {
+                stopped.set(true);
+                deferred.incrementAndGet();
+                return COMPLETED;
+            }
+            CompletableFuture<?> future;
+            try {
+                future = action.apply(retryTask);
+            } catch (RuntimeException e) {
+                onCircuitBreakerResult(e);
+                throw e;
+            }
+            return future.whenComplete((result, throwable) -> onCircuitBreakerResult(throwable));
+        };
+    }
+
+    private void onCircuitBreakerResult(Throwable throwable) {
+        if (throwable == null || ExecuteRetryHandler.unwrapException(throwable) instanceof NoRetryException) {
+            //业务主动放弃重试，不代表下游出现了故障
+            circuitBreaker.onSuccess();
         } else {
-            retryedRetryHandler.parseArgsAndhandle(json);
+            circuitBreaker.onFailure();
+        }
+    }
+
+    private Function<RetryTask, CompletableFuture<?>> ignoreException(Function<RetryTask, CompletableFuture<?>> action) {
+        return retryTask -> {
+            try {
+                return action.apply(retryTask).exceptionally(throwable -> {
+                    Throwable e = ExecuteRetryHandler.unwrapException(throwable);
+                    log.error(e.getMessage(), e);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.error(e.getMessage(), e);
+                return COMPLETED;
+            }
+        };
+    }
+
+    /**
+     * 等待一页中异步重试的任务全部完成，同步重试的任务返回的是已经完成的CompletableFuture。一页只等待一次，异步重试的任务不占用线程
+     *
+     * @return 其中一个任务的错误，没有错误返回null
+     */
+    private RuntimeException awaitAll(List<CompletableFuture<?>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            return null;
+        } catch (CompletionException | CancellationException e) {
+            return ExecuteRetryHandler.unwrapException(e);
+        }
+    }
+
+    private List<RetryTask> queryNeedRetryTaskList(long lastTaskId, int shardingTotalCount, int shardingItem) {
+        if (shardingTotalCount > 1) {
+            return retryTaskMapper.queryNeedRetryTaskList(genericRetryHandler.identity(), genericRetryHandler.maxRetryCount(), genericRetryHandler.initialDelay(), lastTaskId, pageSize, shardingTotalCount, shardingItem);
+        }
+        if (StringUtils.isBlank(claimOwner)) {
+            return retryTaskMapper.queryNeedRetryTaskList(genericRetryHandler.identity(), genericRetryHandler.maxRetryCount(), genericRetryHandler.initialDelay(), lastTaskId, pageSize);
+        }
+        return retryTaskMapper.claimNeedRetryTaskList(genericRetryHandler.identity(), genericRetryHandler.maxRetryCount(), genericRetryHandler.initialDelay(), lastTaskId, pageSize, claimOwner, leaseSeconds);
+    }
+
+    /**
+     * 一个一个的重试一页的任务。不忽略错误时，一旦有任务报错，后面的任务不再重试，等已经发起的异步重试完成之后抛出错误
+     */
+    private void doRetrySerially(List<RetryTask> tasks, Function<RetryTask, CompletableFuture<?>> action) {
+        List<CompletableFuture<?>> futures = new ArrayList<>(tasks.size());
+        RuntimeException exception = null;
+        for (RetryTask retryTask : tasks) {
+            try {
+                futures.add(action.apply(retryTask));
+            } catch (RuntimeException e) {
+                exception = e;
+                break;
+            }
+        }
+        RuntimeException asyncException = awaitAll(futures);
+        if (exception != null) {
+            throw exception;
+        }
+        if (asyncException != null) {
+            throw asyncException;
+        }
+    }
+
+    /**
+     * 并发重试一页的任务，全部完成之后才返回
+     * <p>
+     * 不忽略错误时，一旦有任务报错，还没有开始的任务不再重试，等正在重试的任务完成之后抛出第一个错误
+     */
+    private void doRetryInParallel(List<RetryTask> tasks, Function<RetryTask, CompletableFuture<?>> action) {
+        ExecutorService executorService = getExecutor();
+        AtomicReference<RuntimeException> exception = new AtomicReference<>();
+        List<Future<?>> futures = new ArrayList<>(tasks.size());
+        //异步重试的任务在线程里面只是发起调用，线程返回之后再统一等待完成
+        List<CompletableFuture<?>> pending = Collections.synchronizedList(new ArrayList<>(tasks.size()));
+        try {
+            for (RetryTask retryTask : tasks) {
+                if (permits != null) {
+                    permits.acquire();
+                }
+                futures.add(executorService.submit(() -> {
+                    try {
+                        if (exception.get() == null) {
+                            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                            try {
+                                pending.add(action.apply(retryTask));
+                            } finally {
+                                inFlight.decrementAndGet();
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        exception.compareAndSet(null, e);
+                    } finally {
+                        if (permits != null) {
+                            permits.release();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    //任务里面已经捕获了RuntimeException，只有Error才会执行到这里
+                    exception.compareAndSet(null, new IllegalStateException(e.getCause().getMessage(), e.getCause()));
+                }
+            }
+        } catch (InterruptedException e) {
+            //不取消已经提交的任务（取消之后permits无法释放），还没有开始的任务看到exception之后会直接跳过
+            IllegalStateException interrupted = new IllegalStateException("Identity=" + genericRetryHandler.identity() + "的重试被中断", e);
+            exception.compareAndSet(null, interrupted);
+            Thread.currentThread().interrupt();
+            throw interrupted;
         }
+        exception.compareAndSet(null, awaitAll(pending));
+        if (exception.get() != null) {
+            throw exception.get();
+        }
+    }
+
+    /**
+     * 关闭重试用到的线程池，正在执行的重试会被中断，没有完成的任务由下一次定时重试继续处理
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        retryedRetryHandler.close();
+    }
+
+    /**
+     * 同步重试的任务返回已经完成的CompletableFuture，异步重试的任务返回的CompletableFuture在任务状态更新之后完成
+     */
+    private CompletableFuture<?> doRetry(RetryTask retryTask) {
+        log.info("开始重试Identity={}，Id={}的任务", retryTask.getIdentity(), retryTask.getTaskId());
+        Object result = retryedRetryHandler.parseArgsAndhandle(retryTask);
+        return result instanceof CompletableFuture ? (CompletableFuture<?>) result : COMPLETED;
     }
 }
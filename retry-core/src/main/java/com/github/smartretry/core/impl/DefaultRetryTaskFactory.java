@@ -5,6 +5,7 @@ import com.github.smartretry.core.RetrySerializer;
 import com.github.smartretry.core.RetryTask;
 import com.github.smartretry.core.RetryTaskFactory;
 import com.github.smartretry.core.util.ServiceLoaderUtils;
+import lombok.Setter;
 
 import java.time.LocalDateTime;
 
@@ -16,6 +17,12 @@ public class DefaultRetryTaskFactory implements RetryTaskFactory {
 
     private RetrySerializer retrySerializer;
 
+    /**
+     * 为true时参数序列化为字节，保存到RetryTask.paramsBytes
+     */
+    @Setter
+    private boolean binary;
+
     public DefaultRetryTaskFactory() {
         this(ServiceLoaderUtils.loadService(RetrySerializer.class));
     }
@@ -29,11 +36,16 @@ public class DefaultRetryTaskFactory implements RetryTaskFactory {
         RetryTask task = new RetryTask();
         task.setIdentity(retryHandler.identity());
         if (params != null) {
-            task.setParams(retrySerializer.serialize(params));
+            if (binary) {
+                task.setParamsBytes(retrySerializer.serializeToBytes(params));
+            } else {
+                task.setParams(retrySerializer.serialize(params));
+            }
         }
         task.setStatus(RetryTask.STATUS_INIT);
         task.setRetryCount(0);
         task.setCreateDate(LocalDateTime.now());
+        task.setNextRetryDate(task.getCreateDate().plusSeconds(retryHandler.initialDelay()));
         return task;
     }
 }
@@ -3,11 +3,17 @@ package com.github.smartretry.core.impl;
 import com.github.smartretry.core.RetryContext;
 import com.github.smartretry.core.RetryTask;
 import com.github.smartretry.core.RetryTaskMapper;
+import com.github.smartretry.core.backoff.BackoffPolicy;
 import com.github.smartretry.core.listener.QuietRetryListener;
 import com.github.smartretry.core.listener.RetryListener;
 import com.github.smartretry.core.support.GenericRetryHandler;
 import org.apache.commons.lang3.StringUtils;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
 /**
  * @author yuni[mn960mn@163.com]
  */
@@ -47,6 +53,11 @@ abstract class ExecuteRetryHandler implements GenericRetryHandler {
         return genericRetryHandler.interval();
     }
 
+    @Override
+    public long intervalMillis() {
+        return genericRetryHandler.intervalMillis();
+    }
+
     @Override
     public int maxRetryCount() {
         return genericRetryHandler.maxRetryCount();
@@ -97,9 +108,41 @@ abstract class ExecuteRetryHandler implements GenericRetryHandler {
         if (retryContext.getException() != null) {
             retryTask.setRemark(StringUtils.left(retryContext.getException().getMessage(), 1000));
         }
+        retryTask.setNextRetryDate(getNextRetryDate(retryTask));
         return retryTaskMapper.update(retryTask);
     }
 
+    /**
+     * 根据退避策略计算下一次最早可以重试的时间
+     */
+    protected LocalDateTime getNextRetryDate(RetryTask retryTask) {
+        long previousDelay = genericRetryHandler.initialDelay();
+        if (retryTask.getNextRetryDate() != null) {
+            //上一次失败（或者创建任务）的时间到上一次计划重试的时间
+            LocalDateTime previousDate = retryTask.getEditDate() == null ? retryTask.getCreateDate() : retryTask.getEditDate();
+            if (previousDate != null) {
+                previousDelay = Math.max(0, Duration.between(previousDate, retryTask.getNextRetryDate()).getSeconds());
+            }
+        }
+        BackoffPolicy backoffPolicy = genericRetryHandler.backoffPolicy();
+        long delay = backoffPolicy == null ? 0 : backoffPolicy.delay(retryTask.getRetryCount(), previousDelay);
+        return LocalDateTime.now().plusSeconds(delay);
+    }
+
+    /**
+     * 异步执行的异常会被包装成CompletionException，取出真正的异常。受检异常包装成IllegalArgumentException，和同步执行的处理方式一样
+     */
+    protected static RuntimeException unwrapException(Throwable e) {
+        Throwable cause = e;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new IllegalArgumentException(cause.getMessage(), cause);
+    }
+
     protected int updateRemark(RetryTask retryTask, Throwable e) {
         retryTask.setRemark(StringUtils.left(e.getMessage(), 1000));
         return retryTaskMapper.update(retryTask);
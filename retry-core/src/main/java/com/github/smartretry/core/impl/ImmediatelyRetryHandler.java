@@ -9,6 +9,9 @@ import com.github.smartretry.core.support.GenericRetryHandler;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
 /**
  * 用于在一个重试任务首次执行时触发。执行任务时，先把参数序列化并保存到数据库
  *
@@ -21,80 +24,157 @@ class ImmediatelyRetryHandler extends ExecuteRetryHandler {
 
     private boolean beforeTask;
 
+    /**
+     * 不为null时，首次执行失败的任务先在当前节点本地重试
+     */
+    private LocalRetryScheduler localRetryScheduler;
+
     public ImmediatelyRetryHandler(GenericRetryHandler genericRetryHandler, RetryTaskFactory retryTaskFactory, RetryTaskMapper retryTaskMapper, boolean beforeTask) {
+        this(genericRetryHandler, retryTaskFactory, retryTaskMapper, beforeTask, null);
+    }
+
+    public ImmediatelyRetryHandler(GenericRetryHandler genericRetryHandler, RetryTaskFactory retryTaskFactory, RetryTaskMapper retryTaskMapper, boolean beforeTask, LocalRetryScheduler localRetryScheduler) {
         super(genericRetryHandler, retryTaskMapper);
         this.retryTaskFactory = retryTaskFactory;
         this.beforeTask = beforeTask;
+        this.localRetryScheduler = localRetryScheduler;
     }
 
+    /**
+     * handle方法返回CompletionStage时，返回在它之后更新任务状态的CompletionStage（结果和异常保持不变），
+     * 调用方等到完成的时候，任务已经保存或者更新
+     */
     @Override
     public Object handle(Object arg) {
         RetryContext retryContext = new RetryContext(genericRetryHandler, arg);
-        Object result;
-        RetryTask retryTask;
+        RetryTask retryTask = null;
         if (beforeTask) {
             retryTask = retryTaskFactory.create(genericRetryHandler, arg);
             retryTaskMapper.insert(retryTask);
+        }
+        Object result;
+        try {
+            result = invokeWithQuickRetries(arg);
+        } catch (RuntimeException e) {
+            onFailure(retryTask, retryContext, e);
+            throw e;
+        }
+        if (result instanceof CompletionStage) {
+            RetryTask task = retryTask;
+            return ((CompletionStage<?>) result).whenComplete((r, throwable) -> {
+                try {
+                    if (throwable == null) {
+                        onSuccess(task, retryContext, r);
+                    } else {
+                        onFailure(task, retryContext, unwrapException(throwable));
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Identity=" + identity() + "的任务异步执行完成之后，更新任务状态失败：" + e.getMessage(), e);
+                }
+            });
+        } else {
+            onSuccess(retryTask, retryContext, result);
+        }
+        return result;
+    }
+
+    /**
+     * 首次执行失败之后，在调用线程上快速重试quickRetries次，短暂的故障不需要写数据库和等待定时重试
+     * <p>
+     * 只对抛出异常的情况快速重试，返回CompletionStage时不快速重试
+     */
+    private Object invokeWithQuickRetries(Object arg) {
+        int quickRetries = genericRetryHandler.maxRetryCount() > 0 ? genericRetryHandler.quickRetries() : 0;
+        for (int i = 0; ; i++) {
             try {
-                result = genericRetryHandler.handle(arg);
-                retryContext.setResult(result);
-                completeTask(retryTask);
-                onRetry(retryContext);
-                onComplete(retryContext);
+                return genericRetryHandler.handle(arg);
             } catch (NoRetryException e) {
-                retryContext.setException(e);
-                failureTask(retryTask, retryContext);
-
-                onRetry(retryContext);
-                onError(retryContext);
                 throw e;
             } catch (RuntimeException e) {
-                retryContext.setException(e);
+                if (i >= quickRetries || !quickBackoff()) {
+                    throw e;
+                }
+                log.debug("Identity={}的任务执行失败，第{}次快速重试：{}", identity(), i + 1, e.getMessage());
+            }
+        }
+    }
 
-                if (retryContext.getRetryCount() == genericRetryHandler.maxRetryCount()) {
-                    //只有最大可重试次数为0，才会执行到这里
-                    failureTask(retryTask, retryContext);
+    /**
+     * @return 被中断时返回false，不再快速重试
+     */
+    private boolean quickBackoff() {
+        int quickBackoffMillis = genericRetryHandler.quickBackoffMillis();
+        if (quickBackoffMillis <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(quickBackoffMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 
-                    onRetry(retryContext);
-                    onError(retryContext);
-                } else {
-                    updateRemark(retryTask, e);
-                    onRetry(retryContext);
-                }
+    /**
+     * @param retryTask beforeTask为false时为null
+     */
+    private void onSuccess(RetryTask retryTask, RetryContext retryContext, Object result) {
+        retryContext.setResult(result);
+        if (retryTask != null) {
+            completeTask(retryTask);
+        }
+        onRetry(retryContext);
+        onComplete(retryContext);
+    }
 
-                throw e;
+    private void onFailure(RetryTask retryTask, RetryContext retryContext, RuntimeException e) {
+        retryContext.setException(e);
+        if (e instanceof NoRetryException) {
+            if (retryTask != null) {
+                failureTask(retryTask, retryContext);
+            }
+            onRetry(retryContext);
+            onError(retryContext);
+        } else if (retryContext.getRetryCount() == genericRetryHandler.maxRetryCount()) {
+            //只有最大可重试次数为0，才会执行到这里
+            if (retryTask != null) {
+                failureTask(retryTask, retryContext);
             }
-            return result;
+            onRetry(retryContext);
+            onError(retryContext);
         } else {
+            long localDelay = localRetryScheduler == null ? -1 : localRetryScheduler.nextDelay(genericRetryHandler, 0, 0);
+            if (localDelay >= 0 && !localRetryScheduler.tryAcquire()) {
+                //本地重试的队列满了，nextRetryDate保持正常的退避时间，交给定时任务重试
+                localDelay = -1;
+            }
             try {
-                result = genericRetryHandler.handle(arg);
-                retryContext.setResult(result);
-                onRetry(retryContext);
-                onComplete(retryContext);
-            } catch (NoRetryException e) {
-                retryContext.setException(e);
-
-                onRetry(retryContext);
-                onError(retryContext);
-
-                throw e;
-            } catch (RuntimeException e) {
-                retryContext.setException(e);
-                if (retryContext.getRetryCount() == genericRetryHandler.maxRetryCount()) {
-                    //只有最大可重试次数为0，才会执行到这里
-                    onRetry(retryContext);
-                    onError(retryContext);
-                } else {
+                if (retryTask == null) {
                     //等待重试
-                    retryTask = retryTaskFactory.create(genericRetryHandler, arg);
+                    retryTask = retryTaskFactory.create(genericRetryHandler, retryContext.getArgs());
                     retryTask.setRemark(StringUtils.left(e.getMessage(), 1000));
+                    if (localDelay >= 0) {
+                        retryTask.setNextRetryDate(localRetryScheduler.getOwnedUntil(genericRetryHandler, localDelay));
+                    }
                     retryTaskMapper.insert(retryTask);
-                    onRetry(retryContext);
+                } else {
+                    if (localDelay >= 0) {
+                        retryTask.setNextRetryDate(localRetryScheduler.getOwnedUntil(genericRetryHandler, localDelay));
+                    }
+                    updateRemark(retryTask, e);
                 }
-
-                throw e;
+            } catch (RuntimeException ex) {
+                if (localDelay >= 0) {
+                    localRetryScheduler.release();
+                }
+                throw ex;
             }
+            if (localDelay >= 0) {
+                //数据库里面的任务作为兜底，先在本地延迟重试
+                localRetryScheduler.schedule(genericRetryHandler, retryTaskMapper, retryTask, localDelay);
+            }
+            onRetry(retryContext);
         }
-        return result;
     }
 }
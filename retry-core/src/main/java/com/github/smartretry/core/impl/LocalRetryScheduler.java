@@ -0,0 +1,336 @@
+package com.github.smartretry.core.impl;
+
+import com.github.smartretry.core.RetryContext;
+import com.github.smartretry.core.RetrySerializer;
+import com.github.smartretry.core.RetryTask;
+import com.github.smartretry.core.RetryTaskMapper;
+import com.github.smartretry.core.backoff.BackoffPolicy;
+import com.github.smartretry.core.support.GenericRetryHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地的延迟重试。任务首次执行失败之后，在当前节点的内存里面按照退避策略延迟重试，不需要等待下一次定时任务查询数据库
+ * <p>
+ * 本地重试期间，任务的nextRetryDate会被推迟到下一次本地重试时间再加上initialDelay，定时任务查询不到这个任务，所以不会被多个节点同时重试。
+ * 本地重试的次数达到maxAttempts、任务执行成功或者失败之后不再本地重试，剩下的交给定时任务处理。
+ * 一次本地重试的执行时间超过了占用时间（nextRetryDate）时，任务可能已经被定时任务查询到，此时不再更新任务，也不再本地重试。
+ * 系统宕机或者关闭时，内存里面的任务会丢失，但是数据库里面的任务还在，nextRetryDate到期之后由定时任务继续重试。
+ * 和定时任务一样，每次本地重试都从任务保存的参数反序列化出新的参数对象，不使用也不持有调用方的参数对象。
+ * 同时本地重试的任务最多queueSize个，队列满了之后新失败的任务不再本地重试，nextRetryDate保持正常的退避时间，由定时任务重试
+ *
+ * @author yuni[mn960mn@163.com]
+ * @see ImmediatelyRetryHandler
+ */
+@Slf4j
+public class LocalRetryScheduler implements Closeable {
+
+    public static final long DEFAULT_DELAY = 1000;
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    public static final int DEFAULT_THREADCOUNT = 4;
+
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    /**
+     * 退避策略计算出来的时长为0时，使用的延迟时间，单位：毫秒
+     */
+    private final long delay;
+
+    private final int maxAttempts;
+
+    private final int threadCount;
+
+    /**
+     * 占用本地重试位置的任务：等待中、已经到期等待执行的和正在执行的。任务不再本地重试时释放
+     */
+    private final Semaphore slots;
+
+    private final RetrySerializer retrySerializer;
+
+    private final DelayQueue<LocalRetry> queue = new DelayQueue<>();
+
+    private final ExecutorService executor;
+
+    private final Thread dispatcherThread;
+
+    private volatile boolean running = true;
+
+    private final Map<String, LocalRetryedRetryHandler> retryedRetryHandlers = new ConcurrentHashMap<>();
+
+    /**
+     * 正在本地重试的任务。RetryTask没有重写equals方法，按照对象比较
+     */
+    private final Map<RetryTask, Attempt> attemptingTasks = new ConcurrentHashMap<>();
+
+    public LocalRetryScheduler(RetrySerializer retrySerializer) {
+        this(retrySerializer, DEFAULT_DELAY, DEFAULT_MAX_ATTEMPTS, DEFAULT_THREADCOUNT);
+    }
+
+    public LocalRetryScheduler(RetrySerializer retrySerializer, long delay, int maxAttempts, int threadCount) {
+        this(retrySerializer, delay, maxAttempts, threadCount, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @param retrySerializer 和定时任务使用同一个RetrySerializer，用于从任务保存的参数反序列化
+     * @param queueSize       同时本地重试的任务的最大数量
+     */
+    public LocalRetryScheduler(RetrySerializer retrySerializer, long delay, int maxAttempts, int threadCount, int queueSize) {
+        if (delay <= 0 || maxAttempts <= 0 || threadCount <= 0 || queueSize <= 0) {
+            throw new IllegalArgumentException("delay、maxAttempts、threadCount、queueSize必须大于0");
+        }
+        this.retrySerializer = Objects.requireNonNull(retrySerializer, "retrySerializer");
+        this.delay = delay;
+        this.maxAttempts = maxAttempts;
+        this.threadCount = threadCount;
+        this.slots = new Semaphore(queueSize);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        //队列里面的任务不会超过queueSize个，执行线程的队列也不会超过
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueSize), r -> {
+            Thread thread = new Thread(r, "retry-local-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcherThread = new Thread(this::dispatch, "retry-local-dispatcher");
+        this.dispatcherThread.setDaemon(true);
+        this.dispatcherThread.start();
+    }
+
+    /**
+     * 计算下一次本地重试的延迟时间
+     *
+     * @param retryCount    任务已经重试的次数
+     * @param previousDelay 上一次本地重试的延迟时间，单位：毫秒
+     * @return 延迟时间，单位：毫秒。不再本地重试返回-1
+     */
+    public long nextDelay(GenericRetryHandler genericRetryHandler, int retryCount, long previousDelay) {
+        if (!running || retryCount >= maxAttempts || retryCount >= genericRetryHandler.maxRetryCount()) {
+            return -1;
+        }
+        BackoffPolicy backoffPolicy = genericRetryHandler.backoffPolicy();
+        long seconds = backoffPolicy == null ? 0 : backoffPolicy.delay(retryCount + 1, TimeUnit.MILLISECONDS.toSeconds(previousDelay));
+        return seconds > 0 ? TimeUnit.SECONDS.toMillis(seconds) : delay;
+    }
+
+    /**
+     * 占用一个本地重试的位置，成功之后调用schedule，如果不再调用schedule需要调用release
+     *
+     * @return 队列满了返回false，任务不再本地重试
+     */
+    public boolean tryAcquire() {
+        if (slots.tryAcquire()) {
+            return true;
+        }
+        log.debug("本地重试的队列已满，由定时任务重试");
+        return false;
+    }
+
+    public void release() {
+        slots.release();
+    }
+
+    /**
+     * 本地重试期间，任务的nextRetryDate：下一次本地重试的时间再加上initialDelay
+     */
+    public LocalDateTime getOwnedUntil(GenericRetryHandler genericRetryHandler, long nextDelay) {
+        return LocalDateTime.now().plus(nextDelay, ChronoUnit.MILLIS).plusSeconds(genericRetryHandler.initialDelay());
+    }
+
+    /**
+     * 延迟delay毫秒之后，在当前节点重试这个任务。调用之前应该已经调用tryAcquire占用了位置，并且任务的nextRetryDate已经按照getOwnedUntil推迟并保存
+     */
+    public void schedule(GenericRetryHandler genericRetryHandler, RetryTaskMapper retryTaskMapper, RetryTask retryTask, long delay) {
+        if (!running) {
+            release();
+            return;
+        }
+        LocalRetryedRetryHandler retryedRetryHandler = retryedRetryHandlers.computeIfAbsent(genericRetryHandler.identity(), identity -> new LocalRetryedRetryHandler(genericRetryHandler, retryTaskMapper));
+        queue.offer(new LocalRetry(retryedRetryHandler, retryTask, delay));
+    }
+
+    private void dispatch() {
+        while (running) {
+            LocalRetry localRetry;
+            try {
+                localRetry = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                executor.execute(() -> attempt(localRetry));
+            } catch (RejectedExecutionException e) {
+                //已经关闭，由定时任务重试
+                release();
+                return;
+            }
+        }
+    }
+
+    private void attempt(LocalRetry localRetry) {
+        RetryTask retryTask = localRetry.retryTask;
+        if (retryTask.getStatus() != RetryTask.STATUS_INIT) {
+            release();
+            return;
+        }
+        long nextDelay = nextDelay(localRetry.retryedRetryHandler.genericRetryHandler, retryTask.getRetryCount() + 1, localRetry.delay);
+        //调用之前保存的nextRetryDate就是本次本地重试的占用时间
+        Attempt attempt = new Attempt(nextDelay, retryTask.getNextRetryDate());
+        attemptingTasks.put(retryTask, attempt);
+        Object result;
+        try {
+            result = localRetry.retryedRetryHandler.parseArgsAndhandle(retryTask);
+        } catch (RuntimeException e) {
+            log.debug("Identity={}的任务本地重试失败：{}", localRetry.retryedRetryHandler.identity(), e.getMessage());
+            afterAttempt(localRetry, attempt);
+            return;
+        }
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((r, throwable) -> afterAttempt(localRetry, attempt));
+        } else {
+            afterAttempt(localRetry, attempt);
+        }
+    }
+
+    private void afterAttempt(LocalRetry localRetry, Attempt attempt) {
+        RetryTask retryTask = localRetry.retryTask;
+        attemptingTasks.remove(retryTask);
+        if (running && attempt.nextDelay >= 0 && !attempt.ownershipLost && retryTask.getStatus() == RetryTask.STATUS_INIT) {
+            //继续占用原来的位置
+            queue.offer(new LocalRetry(localRetry.retryedRetryHandler, retryTask, attempt.nextDelay));
+        } else {
+            release();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatcherThread.interrupt();
+        executor.shutdown();
+        retryedRetryHandlers.values().forEach(RetryedRetryHandler::close);
+        if (!queue.isEmpty()) {
+            log.info("还有{}个任务没有本地重试，由定时任务继续重试", queue.size());
+            queue.clear();
+        }
+    }
+
+    /**
+     * 本地重试失败之后，把nextRetryDate推迟到下一次本地重试之后，避免被定时任务同时重试
+     * <p>
+     * 更新任务之前检查是否还在占用时间之内，超过之后任务可能已经被定时任务重试，不再更新
+     */
+    private class LocalRetryedRetryHandler extends RetryedRetryHandler {
+
+        LocalRetryedRetryHandler(GenericRetryHandler genericRetryHandler, RetryTaskMapper retryTaskMapper) {
+            super(genericRetryHandler, retryTaskMapper, retrySerializer);
+            //本地重试最多同时执行threadCount个任务
+            setTimeoutThreads(threadCount);
+        }
+
+        @Override
+        protected LocalDateTime getNextRetryDate(RetryTask retryTask) {
+            LocalDateTime nextRetryDate = super.getNextRetryDate(retryTask);
+            Attempt attempt = attemptingTasks.get(retryTask);
+            if (attempt == null || attempt.nextDelay < 0) {
+                return nextRetryDate;
+            }
+            LocalDateTime ownedUntil = getOwnedUntil(genericRetryHandler, attempt.nextDelay);
+            return ownedUntil.isAfter(nextRetryDate) ? ownedUntil : nextRetryDate;
+        }
+
+        @Override
+        protected int completeTask(RetryTask retryTask) {
+            return isOwned(retryTask) ? super.completeTask(retryTask) : 0;
+        }
+
+        @Override
+        protected int failureTask(RetryTask retryTask, RetryContext retryContext) {
+            return isOwned(retryTask) ? super.failureTask(retryTask, retryContext) : 0;
+        }
+
+        @Override
+        protected int update(RetryTask retryTask, RetryContext retryContext) {
+            return isOwned(retryTask) ? super.update(retryTask, retryContext) : 0;
+        }
+
+        private boolean isOwned(RetryTask retryTask) {
+            Attempt attempt = attemptingTasks.get(retryTask);
+            if (attempt == null || attempt.ownedUntil == null || LocalDateTime.now().isBefore(attempt.ownedUntil)) {
+                return true;
+            }
+            attempt.ownershipLost = true;
+            log.warn("Identity={}，Id={}的任务本地重试超过了占用时间{}，可能已经被定时任务重试，不再更新任务", identity(), retryTask.getTaskId(), attempt.ownedUntil);
+            return false;
+        }
+    }
+
+    /**
+     * 一次本地重试
+     */
+    private static class Attempt {
+
+        /**
+         * 失败之后下一次本地重试的延迟时间，-1表示不再本地重试
+         */
+        private final long nextDelay;
+
+        /**
+         * 本次本地重试的占用时间，在这之前定时任务查询不到这个任务
+         */
+        private final LocalDateTime ownedUntil;
+
+        private volatile boolean ownershipLost;
+
+        Attempt(long nextDelay, LocalDateTime ownedUntil) {
+            this.nextDelay = nextDelay;
+            this.ownedUntil = ownedUntil;
+        }
+    }
+
+    private static class LocalRetry implements Delayed {
+
+        private final LocalRetryedRetryHandler retryedRetryHandler;
+
+        private final RetryTask retryTask;
+
+        private final long delay;
+
+        private final long triggerTime;
+
+        LocalRetry(LocalRetryedRetryHandler retryedRetryHandler, RetryTask retryTask, long delay) {
+            this.retryedRetryHandler = retryedRetryHandler;
+            this.retryTask = retryTask;
+            this.delay = delay;
+            this.triggerTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(triggerTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(triggerTime, ((LocalRetry) o).triggerTime);
+        }
+    }
+}
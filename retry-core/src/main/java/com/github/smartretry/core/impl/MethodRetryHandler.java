@@ -1,13 +1,23 @@
 package com.github.smartretry.core.impl;
 
+import com.github.smartretry.core.IllegalRetryException;
 import com.github.smartretry.core.RetryFunction;
+import com.github.smartretry.core.backoff.BackoffPolicy;
 import com.github.smartretry.core.listener.RetryListener;
 import com.github.smartretry.core.support.GenericRetryHandler;
 import com.github.smartretry.core.util.RetryHandlerUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
@@ -19,15 +29,28 @@ public class MethodRetryHandler implements GenericRetryHandler {
 
     private Method method;
 
+    /**
+     * 注册的时候根据method生成的调用器，避免每次调用都通过反射
+     */
+    private Invoker invoker;
+
     private RetryFunction retryed;
 
     private Supplier<RetryListener> retryListenerSupplier;
 
+    private BackoffPolicy backoffPolicy;
+
     public MethodRetryHandler(Object targetObject, Method method, RetryFunction retryed, Supplier<RetryListener> retryListenerSupplier) {
         this.targetObject = targetObject;
         this.method = method;
         this.retryed = retryed;
         this.retryListenerSupplier = retryListenerSupplier;
+        this.invoker = createInvoker(targetObject, method);
+        try {
+            this.backoffPolicy = retryed.backoff().create(retryed.backoffDelay(), retryed.backoffMultiplier(), retryed.backoffMaxDelay());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalRetryException(method.toString() + ": 退避策略配置错误，" + e.getMessage());
+        }
     }
 
     @Override
@@ -41,14 +64,110 @@ public class MethodRetryHandler implements GenericRetryHandler {
         return StringUtils.isBlank(identity) ? RetryHandlerUtils.getMethodIdentity(method) : identity;
     }
 
+    /**
+     * public类的public实例方法，使用LambdaMetafactory生成直接调用的类；其他方法（或者生成失败时）使用MethodHandle调用
+     */
+    private static Invoker createInvoker(Object targetObject, Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(declaringClass.getModifiers()) && !Modifier.isStatic(method.getModifiers())
+                && isVisible(declaringClass) && isVisible(method.getReturnType()) && (method.getParameterCount() == 0 || isVisible(method.getParameterTypes()[0]))) {
+            try {
+                return createLambdaInvoker(targetObject, method);
+            } catch (Throwable e) {
+                //ignore，使用MethodHandle调用
+            }
+        }
+        MethodHandle methodHandle = createMethodHandle(targetObject, method);
+        return arg -> (Object) methodHandle.invokeExact(arg);
+    }
+
+    /**
+     * 生成的类由MethodRetryHandler的ClassLoader加载，方法的声明类、参数、返回值类型都需要对这个ClassLoader可见
+     */
+    private static boolean isVisible(Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, MethodRetryHandler.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Invoker createLambdaInvoker(Object targetObject, Method method) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle implMethod = lookup.unreflect(method);
+        boolean hasParameter = method.getParameterCount() == 1;
+        boolean isVoid = method.getReturnType() == void.class;
+
+        Class<?> returnType = isVoid ? void.class : MethodType.methodType(method.getReturnType()).wrap().returnType();
+        MethodType instantiatedMethodType = hasParameter
+                ? MethodType.methodType(returnType, method.getDeclaringClass(), MethodType.methodType(method.getParameterTypes()[0]).wrap().returnType())
+                : MethodType.methodType(returnType, method.getDeclaringClass());
+        Class<?> functionalInterface;
+        String name = isVoid ? "accept" : "apply";
+        if (hasParameter) {
+            functionalInterface = isVoid ? BiConsumer.class : BiFunction.class;
+        } else {
+            functionalInterface = isVoid ? Consumer.class : Function.class;
+        }
+        MethodType samMethodType = instantiatedMethodType.erase().changeReturnType(isVoid ? void.class : Object.class);
+        Object function = LambdaMetafactory.metafactory(lookup, name, MethodType.methodType(functionalInterface), samMethodType, implMethod, instantiatedMethodType)
+                .getTarget().invoke();
+
+        if (hasParameter && isVoid) {
+            BiConsumer<Object, Object> consumer = (BiConsumer<Object, Object>) function;
+            return arg -> {
+                consumer.accept(targetObject, arg);
+                return null;
+            };
+        } else if (hasParameter) {
+            BiFunction<Object, Object, Object> biFunction = (BiFunction<Object, Object, Object>) function;
+            return arg -> biFunction.apply(targetObject, arg);
+        } else if (isVoid) {
+            Consumer<Object> consumer = (Consumer<Object>) function;
+            return arg -> {
+                consumer.accept(targetObject);
+                return null;
+            };
+        }
+        Function<Object, Object> noArgFunction = (Function<Object, Object>) function;
+        return arg -> noArgFunction.apply(targetObject);
+    }
+
+    /**
+     * 把method绑定到targetObject上，并且转换成(Object)Object类型：没有参数的方法忽略参数，返回void的方法返回null
+     */
+    private static MethodHandle createMethodHandle(Object targetObject, Method method) {
+        MethodHandle methodHandle;
+        try {
+            if (!method.isAccessible()) {
+                method.setAccessible(true);
+            }
+            methodHandle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new IllegalRetryException(method.toString() + ": 无法访问该方法，" + e.getMessage());
+        }
+        if (!Modifier.isStatic(method.getModifiers())) {
+            methodHandle = methodHandle.bindTo(targetObject);
+        }
+        if (method.getParameterCount() == 0) {
+            methodHandle = MethodHandles.dropArguments(methodHandle, 0, Object.class);
+        }
+        return methodHandle.asType(MethodType.methodType(Object.class, Object.class));
+    }
+
+    /**
+     * 和反射调用一样，方法抛出的异常都包装成IllegalArgumentException
+     */
     @Override
     public Object handle(Object arg) {
         try {
-            return method.getParameterCount() > 0 ? method.invoke(targetObject, arg) : method.invoke(targetObject);
-        } catch (IllegalAccessException e) {
+            return invoker.invoke(arg);
+        } catch (Throwable e) {
             throw new IllegalArgumentException(e.getMessage(), e);
-        } catch (InvocationTargetException e) {
-            throw new IllegalArgumentException(e.getCause().getMessage(), e.getCause());
         }
     }
 
@@ -67,6 +186,11 @@ public class MethodRetryHandler implements GenericRetryHandler {
         return retryed.interval();
     }
 
+    @Override
+    public long intervalMillis() {
+        return retryed.intervalMillis();
+    }
+
     @Override
     public int maxRetryCount() {
         return retryed.maxRetryCount();
@@ -77,6 +201,61 @@ public class MethodRetryHandler implements GenericRetryHandler {
         return retryed.initialDelay();
     }
 
+    @Override
+    public BackoffPolicy backoffPolicy() {
+        return backoffPolicy;
+    }
+
+    @Override
+    public int parallelism() {
+        return retryed.parallelism();
+    }
+
+    @Override
+    public int maxConcurrentAttempts() {
+        return retryed.maxConcurrentAttempts();
+    }
+
+    @Override
+    public int maxAttemptsPerSecond() {
+        return retryed.maxAttemptsPerSecond();
+    }
+
+    @Override
+    public int circuitBreakerFailureRate() {
+        return retryed.circuitBreakerFailureRate();
+    }
+
+    @Override
+    public int circuitBreakerWindowSize() {
+        return retryed.circuitBreakerWindowSize();
+    }
+
+    @Override
+    public int circuitBreakerOpenSeconds() {
+        return retryed.circuitBreakerOpenSeconds();
+    }
+
+    @Override
+    public int timeout() {
+        return retryed.timeout();
+    }
+
+    @Override
+    public int quickRetries() {
+        return retryed.quickRetries();
+    }
+
+    @Override
+    public int quickBackoffMillis() {
+        return retryed.quickBackoffMillis();
+    }
+
+    @Override
+    public int shardingTotalCount() {
+        return retryed.shardingTotalCount();
+    }
+
     @Override
     public boolean ignoreException() {
         return retryed.ignoreException();
@@ -91,4 +270,10 @@ public class MethodRetryHandler implements GenericRetryHandler {
     public Class<?> getInputArgsType() {
         return method.getParameterCount() == 1 ? method.getParameterTypes()[0] : null;
     }
-}
\ No newline at end of file
+
+    @FunctionalInterface
+    private interface Invoker {
+
+        Object invoke(Object arg) throws Throwable;
+    }
+}
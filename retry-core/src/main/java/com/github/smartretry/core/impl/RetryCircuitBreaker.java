@@ -0,0 +1,152 @@
+package com.github.smartretry.core.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 同一个identity的重试熔断器
+ * <p>
+ * CLOSED：正常重试，统计最近windowSize次重试的失败率，达到failureRateThreshold之后进入OPEN
+ * OPEN：openSeconds秒之内不再重试，定时重试直接跳过，任务不做任何更新
+ * HALF_OPEN：只放行一个任务（canary），成功则进入CLOSED，失败则重新进入OPEN
+ *
+ * @author yuni[mn960mn@163.com]
+ * @see DefaultRetryProcessor
+ */
+class RetryCircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureRateThreshold;
+
+    private final long openNanos;
+
+    private final LongSupplier nanoTime;
+
+    /**
+     * 最近windowSize次重试的结果，true表示失败
+     */
+    private final boolean[] outcomes;
+
+    private int index;
+
+    private int count;
+
+    private int failures;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private boolean canaryInFlight;
+
+    /**
+     * @param failureRateThreshold 失败率达到多少（百分比）之后熔断
+     * @param windowSize           统计最近多少次重试的失败率
+     * @param openSeconds          熔断多少秒之后再尝试重试
+     */
+    public RetryCircuitBreaker(int failureRateThreshold, int windowSize, int openSeconds) {
+        this(failureRateThreshold, windowSize, openSeconds, System::nanoTime);
+    }
+
+    RetryCircuitBreaker(int failureRateThreshold, int windowSize, int openSeconds, LongSupplier nanoTime) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 100) {
+            throw new IllegalArgumentException("failureRateThreshold必须在1到100之间");
+        }
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize必须大于0");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.outcomes = new boolean[windowSize];
+        this.openNanos = TimeUnit.SECONDS.toNanos(Math.max(0, openSeconds));
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * 本次定时重试是否需要执行。熔断中并且还没有到尝试的时间，返回false
+     */
+    public synchronized boolean allowPass() {
+        return state != State.OPEN || nanoTime.getAsLong() - openedAt >= openNanos;
+    }
+
+    /**
+     * 是否允许重试一个任务。允许之后需要调用 {@link #onSuccess()} 或者 {@link #onFailure()}
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nanoTime.getAsLong() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                canaryInFlight = false;
+                return tryAcquireCanary();
+            default:
+                return tryAcquireCanary();
+        }
+    }
+
+    private boolean tryAcquireCanary() {
+        if (canaryInFlight) {
+            return false;
+        }
+        canaryInFlight = true;
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (count == outcomes.length && failures * 100 >= failureRateThreshold * count) {
+                open();
+            }
+        }
+    }
+
+    private void record(boolean failure) {
+        if (count == outcomes.length) {
+            if (outcomes[index]) {
+                failures--;
+            }
+        } else {
+            count++;
+        }
+        outcomes[index] = failure;
+        if (failure) {
+            failures++;
+        }
+        index = (index + 1) % outcomes.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoTime.getAsLong();
+        canaryInFlight = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        index = 0;
+        count = 0;
+        failures = 0;
+        canaryInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.smartretry.core.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 同一个identity的重试限流：限制同时重试的任务数量（bulkhead），以及每秒最多重试的任务数量（令牌桶）
+ * <p>
+ * 全部使用CAS实现，不加锁。获取不到许可的时候不等待，直接返回false，由调用者把任务推迟到下一次定时重试
+ *
+ * @author yuni[mn960mn@163.com]
+ * @see DefaultRetryProcessor
+ */
+class RetryLimiter {
+
+    private final int maxConcurrentAttempts;
+
+    private final AtomicInteger concurrentAttempts = new AtomicInteger();
+
+    /**
+     * 每产生一个令牌需要的时长，单位：纳秒。0表示不限制
+     */
+    private final long nanosPerPermit;
+
+    /**
+     * 令牌桶的容量为1秒产生的令牌数量，即最多允许maxAttemptsPerSecond个任务的突发
+     */
+    private final long burstNanos;
+
+    /**
+     * 下一个令牌的理论到达时间（GCRA算法），小于当前时间说明桶是满的
+     */
+    private final AtomicLong theoreticalArrivalNanos;
+
+    private final LongSupplier nanoTime;
+
+    /**
+     * @param maxConcurrentAttempts 最多同时重试多少个任务，小于等于0表示不限制
+     * @param maxAttemptsPerSecond  每秒最多重试多少个任务，小于等于0表示不限制
+     */
+    public RetryLimiter(int maxConcurrentAttempts, int maxAttemptsPerSecond) {
+        this(maxConcurrentAttempts, maxAttemptsPerSecond, System::nanoTime);
+    }
+
+    RetryLimiter(int maxConcurrentAttempts, int maxAttemptsPerSecond, LongSupplier nanoTime) {
+        this.maxConcurrentAttempts = maxConcurrentAttempts;
+        this.nanosPerPermit = maxAttemptsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxAttemptsPerSecond : 0;
+        this.burstNanos = TimeUnit.SECONDS.toNanos(1);
+        this.nanoTime = nanoTime;
+        //初始时桶是满的
+        this.theoreticalArrivalNanos = new AtomicLong(nanoTime.getAsLong() - burstNanos);
+    }
+
+    /**
+     * 是否需要限流
+     */
+    public static boolean isLimited(int maxConcurrentAttempts, int maxAttemptsPerSecond) {
+        return maxConcurrentAttempts > 0 || maxAttemptsPerSecond > 0;
+    }
+
+    /**
+     * 获取一次重试的许可，获取成功之后需要调用 {@link #release()}
+     *
+     * @return 获取不到许可返回false
+     */
+    public boolean tryAcquire() {
+        if (!tryAcquireConcurrent()) {
+            return false;
+        }
+        if (!tryAcquireRate()) {
+            releaseConcurrent();
+            return false;
+        }
+        return true;
+    }
+
+    public void release() {
+        releaseConcurrent();
+    }
+
+    private boolean tryAcquireConcurrent() {
+        if (maxConcurrentAttempts <= 0) {
+            return true;
+        }
+        while (true) {
+            int current = concurrentAttempts.get();
+            if (current >= maxConcurrentAttempts) {
+                return false;
+            }
+            if (concurrentAttempts.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void releaseConcurrent() {
+        if (maxConcurrentAttempts > 0) {
+            concurrentAttempts.decrementAndGet();
+        }
+    }
+
+    private boolean tryAcquireRate() {
+        if (nanosPerPermit == 0) {
+            return true;
+        }
+        while (true) {
+            long now = nanoTime.getAsLong();
+            long current = theoreticalArrivalNanos.get();
+            long next = Math.max(current, now - burstNanos) + nanosPerPermit;
+            if (next - now > 0) {
+                return false;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    public int getConcurrentAttempts() {
+        return concurrentAttempts.get();
+    }
+}
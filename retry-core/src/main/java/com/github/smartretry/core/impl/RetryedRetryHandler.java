@@ -1,27 +1,65 @@
 package com.github.smartretry.core.impl;
 
 import com.github.smartretry.core.NoRetryException;
+import com.github.smartretry.core.RetryBatchHandler;
 import com.github.smartretry.core.RetryContext;
+import com.github.smartretry.core.RetryOutcome;
 import com.github.smartretry.core.RetrySerializer;
 import com.github.smartretry.core.RetryTask;
 import com.github.smartretry.core.RetryTaskMapper;
+import com.github.smartretry.core.RetryTimeoutException;
 import com.github.smartretry.core.support.GenericRetryHandler;
 import com.github.smartretry.core.util.ServiceLoaderUtils;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 该handle方法会在异步重试的时候被触发，handle方法的参数来自于数据库保存的
+ * <p>
+ * 本身不保存任务的状态，每次调用都需要传入对应的RetryTask，所以可以被多个线程同时调用
  *
  * @author yuni[mn960mn@163.com]
  */
 @Slf4j
-class RetryedRetryHandler extends ExecuteRetryHandler {
+class RetryedRetryHandler extends ExecuteRetryHandler implements Closeable {
 
     private RetrySerializer retrySerializer;
 
-    @Setter
-    private RetryTask retryTask;
+    /**
+     * 配置了timeout时用来执行重试的线程池，第一次使用的时候创建
+     */
+    private ExecutorService timeoutExecutor;
+
+    /**
+     * 配置了timeout并且是异步重试时，用来触发超时的定时器，第一次使用的时候创建
+     */
+    private ScheduledExecutorService timeoutScheduler;
+
+    /**
+     * timeoutExecutor的线程数量，默认等于parallelism
+     */
+    private int timeoutThreads;
+
+    private boolean closed;
 
     public RetryedRetryHandler(GenericRetryHandler genericRetryHandler, RetryTaskMapper retryTaskMapper) {
         this(genericRetryHandler, retryTaskMapper, ServiceLoaderUtils.loadService(RetrySerializer.class));
@@ -30,49 +68,273 @@ class RetryedRetryHandler extends ExecuteRetryHandler {
     public RetryedRetryHandler(GenericRetryHandler genericRetryHandler, RetryTaskMapper retryTaskMapper, RetrySerializer retrySerializer) {
         super(genericRetryHandler, retryTaskMapper);
         this.retrySerializer = retrySerializer;
+        this.timeoutThreads = Math.max(1, genericRetryHandler.parallelism());
+    }
+
+    /**
+     * 设置timeoutExecutor的线程数量，需要在第一次重试之前调用
+     */
+    public void setTimeoutThreads(int timeoutThreads) {
+        this.timeoutThreads = Math.max(1, timeoutThreads);
     }
 
-    public Object parseArgsAndhandle(String json) {
-        return handle(retrySerializer.deserialize(json, getInputArgsType()));
+    /**
+     * 参数保存为二进制时直接从字节反序列化，不需要先转成String
+     */
+    public Object parseArgsAndhandle(RetryTask retryTask) {
+        return handle(retryTask, parseArgs(retryTask));
     }
 
+    private Object parseArgs(RetryTask retryTask) {
+        if (retryTask.getParamsBytes() != null) {
+            return retryTask.getParamsBytes().length == 0 ? null : retrySerializer.deserialize(retryTask.getParamsBytes(), getInputArgsType());
+        }
+        return StringUtils.isBlank(retryTask.getParams()) ? null : retrySerializer.deserialize(retryTask.getParams(), getInputArgsType());
+    }
+
+    /**
+     * 只执行被包装的handle方法（同样受timeout限制），不更新任务
+     */
     @Override
     public Object handle(Object arg) {
+        return invoke(arg);
+    }
+
+    /**
+     * 配置了timeout则在单独的线程里面执行，超时之后中断执行的线程并抛出RetryTimeoutException
+     * <p>
+     * 返回CompletionStage时，CompletionStage在超时之前没有完成，则以RetryTimeoutException异常完成
+     */
+    private Object invoke(Object arg) {
+        return invoke(() -> genericRetryHandler.handle(arg));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> V invoke(Callable<V> callable) {
+        int timeout = genericRetryHandler.timeout();
+        if (timeout <= 0) {
+            try {
+                return callable.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+        Future<V> future = getTimeoutExecutor().submit(callable);
+        try {
+            V result = future.get(timeout, TimeUnit.MILLISECONDS);
+            if (result instanceof CompletionStage) {
+                return (V) withTimeout((CompletionStage<?>) result, timeout);
+            }
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RetryTimeoutException("重试超时，执行时间超过了" + timeout + "ms");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("重试被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalArgumentException(cause.getMessage(), cause);
+        }
+    }
+
+    private CompletionStage<Object> withTimeout(CompletionStage<?> stage, int timeout) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        ScheduledFuture<?> timer = getTimeoutScheduler().schedule(() -> {
+            if (future.completeExceptionally(new RetryTimeoutException("重试超时，执行时间超过了" + timeout + "ms")) && stage instanceof Future) {
+                ((Future<?>) stage).cancel(true);
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        stage.whenComplete((result, throwable) -> {
+            timer.cancel(false);
+            if (throwable == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+
+    private synchronized ScheduledExecutorService getTimeoutScheduler() {
+        if (timeoutScheduler == null) {
+            ScheduledThreadPoolExecutor scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "retry-" + identity() + "-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+            this.timeoutScheduler = scheduledThreadPoolExecutor;
+        }
+        return timeoutScheduler;
+    }
+
+    /**
+     * 线程数量最多timeoutThreads个，超出的排队等待，排队的时间也计算在timeout里面。线程空闲之后会被回收
+     * <p>
+     * 被卡住（不响应中断）的线程会一直占用，所以handle方法需要能够响应中断
+     */
+    private synchronized ExecutorService getTimeoutExecutor() {
+        if (closed) {
+            throw new RejectedExecutionException("Identity=" + identity() + "已经关闭");
+        }
+        if (timeoutExecutor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(timeoutThreads, timeoutThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "retry-" + identity() + "-timeout-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            this.timeoutExecutor = threadPoolExecutor;
+        }
+        return timeoutExecutor;
+    }
+
+    /**
+     * 关闭timeoutExecutor和timeoutScheduler，中断正在执行的重试。关闭之后不能再重试
+     */
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        if (timeoutExecutor != null) {
+            timeoutExecutor.shutdownNow();
+        }
+        if (timeoutScheduler != null) {
+            timeoutScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * handle方法返回CompletionStage时，立即返回一个CompletableFuture，在CompletionStage完成并且任务状态更新之后才完成
+     */
+    public Object handle(RetryTask retryTask, Object arg) {
         retryTask.setRetryCount(retryTask.getRetryCount() + 1);
         RetryContext retryContext = new RetryContext(genericRetryHandler, arg, retryTask.getRetryCount());
         Object result;
         try {
-            result = genericRetryHandler.handle(arg);
-            retryContext.setResult(result);
-            completeTask(retryTask);
-            onRetry(retryContext);
-            onComplete(retryContext);
-        } catch (NoRetryException e) {
-            retryContext.setException(e);
-
-            failureTask(retryTask, retryContext);
-            onRetry(retryContext);
-            onError(retryContext);
-            throw e;
+            result = invoke(arg);
         } catch (RuntimeException e) {
-            retryContext.setException(e);
+            onFailure(retryTask, retryContext, e);
+            throw e;
+        }
+        if (result instanceof CompletionStage) {
+            return handleAsync(retryTask, retryContext, (CompletionStage<?>) result);
+        }
+        onSuccess(retryTask, retryContext, result);
+        return result;
+    }
 
-            if (retryTask.getRetryCount() == genericRetryHandler.maxRetryCount()) {
-                failureTask(retryTask, retryContext);
-            } else {
-                update(retryTask, retryContext);
+    /**
+     * 批量重试一页的任务，只调用一次RetryBatchHandler.handleBatch方法，再根据每个任务的处理结果更新任务
+     * <p>
+     * 参数反序列化失败的任务单独当作失败处理，不传给handleBatch方法
+     *
+     * @return 其中一个任务的失败原因，全部成功返回null。handleBatch方法本身抛出异常时，这一批任务都当作失败处理，并抛出该异常
+     */
+    public RuntimeException handleBatch(List<RetryTask> retryTasks) {
+        RetryBatchHandler<Object> retryBatchHandler = genericRetryHandler.getBatchHandler();
+        RuntimeException exception = null;
+        List<RetryTask> tasks = new ArrayList<>(retryTasks.size());
+        List<RetryContext> retryContexts = new ArrayList<>(retryTasks.size());
+        List<Object> args = new ArrayList<>(retryTasks.size());
+        for (RetryTask retryTask : retryTasks) {
+            retryTask.setRetryCount(retryTask.getRetryCount() + 1);
+            Object arg;
+            try {
+                arg = parseArgs(retryTask);
+            } catch (RuntimeException e) {
+                onFailure(retryTask, new RetryContext(genericRetryHandler, null, retryTask.getRetryCount()), e);
+                exception = e;
+                continue;
             }
+            tasks.add(retryTask);
+            retryContexts.add(new RetryContext(genericRetryHandler, arg, retryTask.getRetryCount()));
+            args.add(arg);
+        }
+        if (tasks.isEmpty()) {
+            return exception;
+        }
 
-            onRetry(retryContext);
+        List<RetryOutcome> outcomes;
+        try {
+            outcomes = invoke(() -> retryBatchHandler.handleBatch(args));
+            if (outcomes == null || outcomes.size() != tasks.size()) {
+                throw new IllegalStateException(identity() + ".handleBatch方法返回的结果数量和参数数量不一致");
+            }
+        } catch (RuntimeException e) {
+            for (int i = 0; i < tasks.size(); i++) {
+                onFailure(tasks.get(i), retryContexts.get(i), e);
+            }
+            throw e;
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            RetryOutcome outcome = outcomes.get(i);
+            if (outcome != null && outcome.isSuccess()) {
+                onSuccess(tasks.get(i), retryContexts.get(i), outcome.getResult());
+            } else {
+                RuntimeException e = outcome == null ? new IllegalStateException(identity() + ".handleBatch方法返回的结果不能为null") : outcome.getException();
+                onFailure(tasks.get(i), retryContexts.get(i), e);
+                exception = e;
+            }
+        }
+        return exception;
+    }
 
-            if (retryContext.getRetryCount() == genericRetryHandler.maxRetryCount()) {
-                //重试次数达到最大，触发失败回调
-                onError(retryContext);
+    private CompletableFuture<Object> handleAsync(RetryTask retryTask, RetryContext retryContext, CompletionStage<?> stage) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        stage.whenComplete((result, throwable) -> {
+            try {
+                if (throwable == null) {
+                    onSuccess(retryTask, retryContext, result);
+                    future.complete(result);
+                } else {
+                    RuntimeException e = unwrapException(throwable);
+                    onFailure(retryTask, retryContext, e);
+                    future.completeExceptionally(e);
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
             }
+        });
+        return future;
+    }
 
-            throw e;
+    private void onSuccess(RetryTask retryTask, RetryContext retryContext, Object result) {
+        retryContext.setResult(result);
+        completeTask(retryTask);
+        onRetry(retryContext);
+        onComplete(retryContext);
+    }
+
+    private void onFailure(RetryTask retryTask, RetryContext retryContext, RuntimeException e) {
+        retryContext.setException(e);
+        if (e instanceof NoRetryException) {
+            failureTask(retryTask, retryContext);
+            onRetry(retryContext);
+            onError(retryContext);
+            return;
         }
 
-        return result;
+        if (retryTask.getRetryCount() == genericRetryHandler.maxRetryCount()) {
+            failureTask(retryTask, retryContext);
+        } else {
+            update(retryTask, retryContext);
+        }
+
+        onRetry(retryContext);
+
+        if (retryContext.getRetryCount() == genericRetryHandler.maxRetryCount()) {
+            //重试次数达到最大，触发失败回调
+            onError(retryContext);
+        }
     }
 }
@@ -1,8 +1,11 @@
 package com.github.smartretry.core.support;
 
 import com.github.smartretry.core.IllegalRetryException;
+import com.github.smartretry.core.RetryBatchHandler;
 import com.github.smartretry.core.RetryHandler;
+import com.github.smartretry.core.backoff.BackoffPolicy;
 import com.github.smartretry.core.listener.RetryListener;
+import com.github.smartretry.core.util.RetryHandlerUtils;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -29,7 +32,7 @@ public class DefaultRetryHandler implements GenericRetryHandler {
             for (Type type : current.getGenericInterfaces()) {
                 if (type instanceof ParameterizedType) {
                     ParameterizedType parameterizedType = (ParameterizedType) type;
-                    if (RetryHandler.class.equals(parameterizedType.getRawType())) {
+                    if (RetryHandlerUtils.isRetryHandlerInterface(parameterizedType)) {
                         Type targetType = parameterizedType.getActualTypeArguments()[0];
                         if (targetType instanceof Class) {
                             Class<?> targetClazz = (Class<?>) parameterizedType.getActualTypeArguments()[0];
@@ -54,6 +57,12 @@ public class DefaultRetryHandler implements GenericRetryHandler {
         return this.inputArgsType;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public RetryBatchHandler<Object> getBatchHandler() {
+        return delegate instanceof RetryBatchHandler ? (RetryBatchHandler<Object>) delegate : null;
+    }
+
     @Override
     public String name() {
         return delegate.name();
@@ -84,6 +93,11 @@ public class DefaultRetryHandler implements GenericRetryHandler {
         return delegate.interval();
     }
 
+    @Override
+    public long intervalMillis() {
+        return delegate.intervalMillis();
+    }
+
     @Override
     public int maxRetryCount() {
         return delegate.maxRetryCount();
@@ -94,6 +108,61 @@ public class DefaultRetryHandler implements GenericRetryHandler {
         return delegate.initialDelay();
     }
 
+    @Override
+    public BackoffPolicy backoffPolicy() {
+        return delegate.backoffPolicy();
+    }
+
+    @Override
+    public int parallelism() {
+        return delegate.parallelism();
+    }
+
+    @Override
+    public int maxConcurrentAttempts() {
+        return delegate.maxConcurrentAttempts();
+    }
+
+    @Override
+    public int maxAttemptsPerSecond() {
+        return delegate.maxAttemptsPerSecond();
+    }
+
+    @Override
+    public int circuitBreakerFailureRate() {
+        return delegate.circuitBreakerFailureRate();
+    }
+
+    @Override
+    public int circuitBreakerWindowSize() {
+        return delegate.circuitBreakerWindowSize();
+    }
+
+    @Override
+    public int circuitBreakerOpenSeconds() {
+        return delegate.circuitBreakerOpenSeconds();
+    }
+
+    @Override
+    public int timeout() {
+        return delegate.timeout();
+    }
+
+    @Override
+    public int quickRetries() {
+        return delegate.quickRetries();
+    }
+
+    @Override
+    public int quickBackoffMillis() {
+        return delegate.quickBackoffMillis();
+    }
+
+    @Override
+    public int shardingTotalCount() {
+        return delegate.shardingTotalCount();
+    }
+
     @Override
     public boolean ignoreException() {
         return delegate.ignoreException();
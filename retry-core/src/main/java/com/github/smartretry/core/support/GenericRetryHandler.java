@@ -1,5 +1,6 @@
 package com.github.smartretry.core.support;
 
+import com.github.smartretry.core.RetryBatchHandler;
 import com.github.smartretry.core.RetryHandler;
 
 /**
@@ -13,4 +14,13 @@ public interface GenericRetryHandler extends RetryHandler {
      * @return
      */
     Class<?> getInputArgsType();
+
+    /**
+     * 支持批量重试时，返回对应的RetryBatchHandler
+     *
+     * @return 不支持批量重试返回null
+     */
+    default RetryBatchHandler<Object> getBatchHandler() {
+        return null;
+    }
 }
@@ -1,6 +1,7 @@
 package com.github.smartretry.core.util;
 
 import com.github.smartretry.core.IllegalRetryException;
+import com.github.smartretry.core.RetryBatchHandler;
 import com.github.smartretry.core.RetryFunction;
 import com.github.smartretry.core.RetryHandler;
 
@@ -68,6 +69,10 @@ public class RetryHandlerUtils {
             //RetryHandler接口有泛型，需要特殊处理
             return true;
         }
+        if ("handle".equals(method.getName()) && method.getParameterCount() == 1 && method.isDefault() && RetryBatchHandler.class.equals(method.getDeclaringClass())) {
+            //没有覆盖RetryBatchHandler接口默认的handle方法
+            return true;
+        }
         Type interfaceType = getRetryHandlerGenericInterface(targetClass);
         if (interfaceType == null) {
             return false;
@@ -84,15 +89,26 @@ public class RetryHandlerUtils {
         Class<?> current = clazz;
         while (current != null) {
             Type[] types = current.getGenericInterfaces();
-            Optional<Type> interfaceTypeOptional = Stream.of(types).filter(i -> i.getTypeName().startsWith(RetryHandler.class.getName())).findAny();
+            Optional<Type> interfaceTypeOptional = Stream.of(types).filter(RetryHandlerUtils::isRetryHandlerInterface).findAny();
             if (interfaceTypeOptional.isPresent()) {
                 return interfaceTypeOptional.get();
             }
-            current = clazz.getSuperclass();
+            current = current.getSuperclass();
         }
         return null;
     }
 
+    /**
+     * 是否是RetryHandler或者其子接口（AsyncRetryHandler、RetryBatchHandler等），这些接口的第一个泛型参数都是handle方法的参数类型
+     *
+     * @param type
+     * @return
+     */
+    public static boolean isRetryHandlerInterface(Type type) {
+        Type rawType = type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType() : type;
+        return rawType instanceof Class && ((Class<?>) rawType).isInterface() && RetryHandler.class.isAssignableFrom((Class<?>) rawType);
+    }
+
     public static String getMethodIdentity(Method method) {
         return method.getDeclaringClass().getName() + "." + method.getName();
     }
@@ -1,22 +1,49 @@
 package com.github.smartretry.core.util;
 
-import java.util.Iterator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ServiceLoader;
+import java.util.stream.Collectors;
 
 /**
  * @author yuni[mn960mn@163.com]
  */
+@Slf4j
 public class ServiceLoaderUtils {
 
     private ServiceLoaderUtils() {
     }
 
+    /**
+     * 有多个实例时使用第一个，并打印警告日志：使用哪一个取决于classpath的顺序
+     */
     public static <T> T loadService(Class<T> clazz) {
-        ServiceLoader<T> serviceLoader = ServiceLoader.load(clazz);
-        Iterator<T> iterator = serviceLoader.iterator();
-        if (iterator.hasNext()) {
-            return iterator.next();
+        return loadService(clazz, null);
+    }
+
+    /**
+     * @param className 使用哪一个实现类，为空时使用第一个
+     */
+    public static <T> T loadService(Class<T> clazz, String className) {
+        List<T> services = new ArrayList<>();
+        ServiceLoader.load(clazz).forEach(services::add);
+        if (services.isEmpty()) {
+            throw new IllegalArgumentException("无法在META-INF/services找到" + clazz.getName() + "的实例");
+        }
+        if (StringUtils.isNotBlank(className)) {
+            return services.stream().filter(service -> service.getClass().getName().equals(className)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("无法在META-INF/services找到" + clazz.getName() + "的实例" + className + "，已有的实例：" + getClassNames(services)));
         }
-        throw new IllegalArgumentException("无法在META-INF/services找到" + clazz.getName() + "的实例");
+        if (services.size() > 1) {
+            log.warn("META-INF/services中有多个{}的实例：{}，使用第一个：{}，使用哪一个取决于classpath的顺序，需要明确指定", clazz.getName(), getClassNames(services), services.get(0).getClass().getName());
+        }
+        return services.get(0);
+    }
+
+    private static <T> List<String> getClassNames(List<T> services) {
+        return services.stream().map(service -> service.getClass().getName()).collect(Collectors.toList());
     }
 }
\ No newline at end of file
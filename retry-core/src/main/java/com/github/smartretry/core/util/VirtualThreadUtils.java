@@ -0,0 +1,54 @@
+package com.github.smartretry.core.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程（JDK21及以上）的工具类。项目本身基于JDK8编译，所以只能通过反射调用
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+public class VirtualThreadUtils {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findNewVirtualThreadPerTaskExecutor();
+
+    private VirtualThreadUtils() {
+    }
+
+    private static Method findNewVirtualThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     *
+     * @return
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * 每个任务一个虚拟线程的线程池，见 Executors.newVirtualThreadPerTaskExecutor()
+     *
+     * @return
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("当前JDK版本不支持虚拟线程：" + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.smartretry.core;
+
+import com.github.smartretry.core.impl.DefaultRetryProcessor;
+import com.github.smartretry.core.support.GenericRetryHandler;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class RetryTaskMapperTest {
+
+    private LegacyRetryTaskMapper retryTaskMapper;
+
+    @Before
+    public void setup() {
+        //没有按照taskId排序，并且任务数量超过一页
+        this.retryTaskMapper = new LegacyRetryTaskMapper(5L, 3L, 1L, 4L, 2L);
+    }
+
+    @Test
+    public void testQueryPageWithoutPaging() {
+        List<RetryTask> firstPage = retryTaskMapper.queryNeedRetryTaskList("user.order", 5, 0, 0L, 2);
+        assertThat(firstPage).extracting(RetryTask::getTaskId).containsExactly(5L, 3L, 1L, 4L, 2L);
+
+        //之后的页不再查询
+        assertThat(retryTaskMapper.queryNeedRetryTaskList("user.order", 5, 0, 2L, 2)).isEmpty();
+        assertThat(retryTaskMapper.queries.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testQueryShardingWithoutPaging() {
+        List<RetryTask> firstPage = retryTaskMapper.queryNeedRetryTaskList("user.order", 5, 0, 0L, 1, 2, 1);
+        assertThat(firstPage).extracting(RetryTask::getTaskId).containsExactly(5L, 3L, 1L);
+
+        //之后的页不再查询
+        assertThat(retryTaskMapper.queryNeedRetryTaskList("user.order", 5, 0, 1L, 1, 2, 1)).isEmpty();
+        assertThat(retryTaskMapper.queries.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDoRetryShardingOnlyQueriesOnce() {
+        DefaultRetryProcessor retryProcessor = newRetryProcessor();
+        retryProcessor.doRetry(2, 0);
+
+        assertThat(retryTaskMapper.queries.get()).isEqualTo(1);
+        assertThat(retryTaskMapper.updated).extracting(RetryTask::getTaskId).containsOnly(4L, 2L);
+    }
+
+    @Test
+    public void testDoRetryOnlyQueriesOnce() {
+        DefaultRetryProcessor retryProcessor = newRetryProcessor();
+        retryProcessor.doRetry();
+
+        assertThat(retryTaskMapper.queries.get()).isEqualTo(1);
+        assertThat(retryTaskMapper.updated).hasSize(5);
+    }
+
+    private DefaultRetryProcessor newRetryProcessor() {
+        GenericRetryHandler retryHandler = PowerMockito.mock(GenericRetryHandler.class);
+        when(retryHandler.identity()).thenReturn("user.order");
+        when(retryHandler.maxRetryCount()).thenReturn(5);
+        when(retryHandler.ignoreException()).thenReturn(true);
+        DefaultRetryProcessor retryProcessor = new DefaultRetryProcessor(retryHandler, retryTaskMapper, PowerMockito.mock(RetrySerializer.class));
+        retryProcessor.setPageSize(2);
+        return retryProcessor;
+    }
+
+    /**
+     * 只实现了不分页查询的RetryTaskMapper，比如没有配置分页SQL的自定义SQL映射文件
+     */
+    private static class LegacyRetryTaskMapper implements RetryTaskMapper {
+
+        private final long[] taskIds;
+
+        private final AtomicInteger queries = new AtomicInteger();
+
+        private final List<RetryTask> updated = new ArrayList<>();
+
+        LegacyRetryTaskMapper(long... taskIds) {
+            this.taskIds = taskIds;
+        }
+
+        @Override
+        public int insert(RetryTask retryTask) {
+            return 1;
+        }
+
+        @Override
+        public int update(RetryTask retryTask) {
+            updated.add(retryTask);
+            return 1;
+        }
+
+        @Override
+        public List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay) {
+            queries.incrementAndGet();
+            List<RetryTask> tasks = new ArrayList<>();
+            for (long taskId : taskIds) {
+                RetryTask task = new RetryTask();
+                task.setTaskId(taskId);
+                task.setIdentity(identity);
+                task.setStatus(RetryTask.STATUS_INIT);
+                tasks.add(task);
+            }
+            return tasks;
+        }
+    }
+}
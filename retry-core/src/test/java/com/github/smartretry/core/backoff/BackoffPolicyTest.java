@@ -0,0 +1,42 @@
+package com.github.smartretry.core.backoff;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BackoffPolicyTest {
+
+    @Test
+    public void testFixed() {
+        BackoffPolicy backoffPolicy = BackoffType.FIXED.create(30, 2, 100);
+        assertThat(backoffPolicy.delay(1, 0)).isEqualTo(30);
+        assertThat(backoffPolicy.delay(5, 30)).isEqualTo(30);
+        assertThat(BackoffType.FIXED.create(0, 2, 100)).isSameAs(BackoffPolicy.NONE);
+    }
+
+    @Test
+    public void testExponential() {
+        BackoffPolicy backoffPolicy = BackoffType.EXPONENTIAL.create(10, 2, 100);
+        assertThat(backoffPolicy.delay(1, 0)).isEqualTo(10);
+        assertThat(backoffPolicy.delay(2, 10)).isEqualTo(20);
+        assertThat(backoffPolicy.delay(3, 20)).isEqualTo(40);
+        assertThat(backoffPolicy.delay(5, 80)).isEqualTo(100);
+        assertThat(backoffPolicy.delay(Integer.MAX_VALUE, 100)).isEqualTo(100);
+    }
+
+    @Test
+    public void testDecorrelatedJitter() {
+        BackoffPolicy backoffPolicy = BackoffType.DECORRELATED_JITTER.create(10, 2, 100);
+        long previousDelay = 0;
+        for (int i = 1; i <= 100; i++) {
+            long delay = backoffPolicy.delay(i, previousDelay);
+            assertThat(delay).isBetween(10L, Math.min(100L, Math.max(10L, previousDelay) * 3));
+            previousDelay = delay;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExponentialWithoutDelay() {
+        BackoffType.EXPONENTIAL.create(0, 2, 100);
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.smartretry.core.impl;
+
+import com.github.smartretry.core.RetryTask;
+import com.github.smartretry.core.RetryTaskMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.powermock.api.mockito.PowerMockito;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class AsyncRetryTaskMapperTest {
+
+    private RetryTaskMapper retryTaskMapper;
+
+    private AsyncRetryTaskMapper asyncRetryTaskMapper;
+
+    @Before
+    public void setup() {
+        this.retryTaskMapper = PowerMockito.mock(RetryTaskMapper.class);
+        this.asyncRetryTaskMapper = new AsyncRetryTaskMapper(retryTaskMapper, TimeUnit.HOURS.toMillis(1), 10);
+    }
+
+    @After
+    public void close() {
+        asyncRetryTaskMapper.close();
+    }
+
+    @Test
+    public void testInsertAndSuccessCollapsed() {
+        RetryTask retryTask = newRetryTask();
+        asyncRetryTaskMapper.insert(retryTask);
+        retryTask.setStatus(RetryTask.STATUS_SUCCESS);
+        asyncRetryTaskMapper.update(retryTask);
+        asyncRetryTaskMapper.flush();
+
+        verify(retryTaskMapper, never()).insertBatch(anyListOf(RetryTask.class));
+        verify(retryTaskMapper, never()).updateBatch(anyListOf(RetryTask.class));
+        assertThat(asyncRetryTaskMapper.getCollapsedWrites()).isEqualTo(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInsertAndRemarkCollapsed() {
+        RetryTask retryTask = newRetryTask();
+        asyncRetryTaskMapper.insert(retryTask);
+        retryTask.setRemark("mock exception");
+        asyncRetryTaskMapper.update(retryTask);
+        asyncRetryTaskMapper.flush();
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(retryTaskMapper, times(1)).insertBatch(captor.capture());
+        verify(retryTaskMapper, never()).updateBatch(anyListOf(RetryTask.class));
+        //插入的是更新之后的快照
+        List<RetryTask> insertTasks = captor.getValue();
+        assertThat(insertTasks).hasSize(1);
+        assertThat(insertTasks.get(0)).isNotSameAs(retryTask);
+        assertThat(insertTasks.get(0).getRemark()).isEqualTo("mock exception");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWriteSnapshot() {
+        doAnswer(invocation -> {
+            ((List<RetryTask>) invocation.getArguments()[0]).forEach(task -> task.setTaskId(100L));
+            return null;
+        }).when(retryTaskMapper).insertBatch(anyListOf(RetryTask.class));
+
+        RetryTask retryTask = newRetryTask();
+        asyncRetryTaskMapper.insert(retryTask);
+        asyncRetryTaskMapper.flush();
+        //插入之后生成的taskId回写到原来的RetryTask上
+        assertThat(retryTask.getTaskId()).isEqualTo(100L);
+
+        retryTask.setRetryCount(1);
+        retryTask.setStatus(RetryTask.STATUS_EXCEPTION);
+        asyncRetryTaskMapper.update(retryTask);
+        //入队之后的修改不会被写入
+        retryTask.setRetryCount(2);
+        retryTask.setStatus(RetryTask.STATUS_INIT);
+        asyncRetryTaskMapper.flush();
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(retryTaskMapper, times(1)).updateBatch(captor.capture());
+        List<RetryTask> updateTasks = captor.getValue();
+        assertThat(updateTasks).hasSize(1);
+        assertThat(updateTasks.get(0).getTaskId()).isEqualTo(100L);
+        assertThat(updateTasks.get(0).getRetryCount()).isEqualTo(1);
+        assertThat(updateTasks.get(0).getStatus()).isEqualTo(RetryTask.STATUS_EXCEPTION);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUpdateBeforeInsertFlushed() {
+        doAnswer(invocation -> {
+            ((List<RetryTask>) invocation.getArguments()[0]).forEach(task -> task.setTaskId(100L));
+            return null;
+        }).when(retryTaskMapper).insertBatch(anyListOf(RetryTask.class));
+
+        RetryTask retryTask = newRetryTask();
+        asyncRetryTaskMapper.insert(retryTask);
+        retryTask.setStatus(RetryTask.STATUS_EXCEPTION);
+        asyncRetryTaskMapper.update(retryTask);
+        asyncRetryTaskMapper.flush();
+
+        //插入时的快照没有taskId，更新之前使用插入生成的taskId
+        ArgumentCaptor<List> insertCaptor = ArgumentCaptor.forClass(List.class);
+        verify(retryTaskMapper, times(1)).insertBatch(insertCaptor.capture());
+        assertThat(((RetryTask) insertCaptor.getValue().get(0)).getStatus()).isEqualTo(RetryTask.STATUS_INIT);
+        ArgumentCaptor<List> updateCaptor = ArgumentCaptor.forClass(List.class);
+        verify(retryTaskMapper, times(1)).updateBatch(updateCaptor.capture());
+        RetryTask updateTask = (RetryTask) updateCaptor.getValue().get(0);
+        assertThat(updateTask.getTaskId()).isEqualTo(100L);
+        assertThat(updateTask.getStatus()).isEqualTo(RetryTask.STATUS_EXCEPTION);
+    }
+
+    @Test
+    public void testCallerRunsWhenQueueFull() {
+        for (int i = 0; i < 11; i++) {
+            asyncRetryTaskMapper.insert(newRetryTask());
+        }
+        verify(retryTaskMapper, times(1)).insertBatch(anyListOf(RetryTask.class));
+        assertThat(asyncRetryTaskMapper.getCallerRunsFlushes()).isEqualTo(1);
+    }
+
+    private RetryTask newRetryTask() {
+        RetryTask retryTask = new RetryTask();
+        retryTask.setIdentity("user.order");
+        retryTask.setStatus(RetryTask.STATUS_INIT);
+        return retryTask;
+    }
+}
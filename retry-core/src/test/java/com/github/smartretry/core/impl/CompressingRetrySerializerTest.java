@@ -0,0 +1,179 @@
+package com.github.smartretry.core.impl;
+
+import com.github.smartretry.core.RetrySerializer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CompressingRetrySerializerTest {
+
+    private RetrySerializer retrySerializer;
+
+    private CompressingRetrySerializer compressingRetrySerializer;
+
+    @Before
+    public void setup() {
+        this.retrySerializer = new RetrySerializer() {
+
+            @Override
+            public String serialize(Object object) {
+                return (String) object;
+            }
+
+            @Override
+            public Object deserialize(String value, Class<?> clazz) {
+                return value;
+            }
+        };
+        this.compressingRetrySerializer = new CompressingRetrySerializer(retrySerializer, new CompressingRetrySerializer.DeflateCodec(Deflater.DEFAULT_COMPRESSION), 100);
+    }
+
+    @Test
+    public void testNotCompressBelowThreshold() {
+        String params = "{\"orderId\":1}";
+        assertThat(compressingRetrySerializer.serialize(params)).isEqualTo(params);
+        assertThat(compressingRetrySerializer.serializeToBytes(params)).isEqualTo(params.getBytes(StandardCharsets.UTF_8));
+        assertThat(compressingRetrySerializer.getCompressedCount()).isEqualTo(0);
+        assertThat(compressingRetrySerializer.getUncompressedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testCompressString() {
+        String params = newOrderParams();
+        String value = compressingRetrySerializer.serialize(params);
+        assertThat(value).startsWith("#Z1:");
+        assertThat(value.length()).isLessThan(params.length());
+        assertThat(compressingRetrySerializer.deserialize(value, String.class)).isEqualTo(params);
+        assertThat(compressingRetrySerializer.getCompressedCount()).isEqualTo(1);
+        assertThat(compressingRetrySerializer.getCompressionRatio()).isLessThan(50);
+    }
+
+    @Test
+    public void testCompressBytes() {
+        String params = newOrderParams();
+        byte[] value = compressingRetrySerializer.serializeToBytes(params);
+        assertThat(value[0]).isEqualTo((byte) 0);
+        assertThat(value[1]).isEqualTo((byte) 'Z');
+        assertThat(value[2]).isEqualTo((byte) 1);
+        assertThat(value.length).isLessThan(params.length());
+        assertThat(compressingRetrySerializer.deserialize(value, String.class)).isEqualTo(params);
+    }
+
+    @Test
+    public void testDeserializeUncompressed() {
+        //开启压缩之前保存的参数
+        String params = newOrderParams();
+        assertThat(compressingRetrySerializer.deserialize(params, String.class)).isEqualTo(params);
+        assertThat(compressingRetrySerializer.deserialize(params.getBytes(StandardCharsets.UTF_8), String.class)).isEqualTo(params);
+    }
+
+    @Test
+    public void testThresholdUsesEncodedBytes() {
+        //40个中文字符，UTF-8编码之后120个字节，超过了threshold
+        StringBuilder params = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            params.append('重');
+        }
+        String value = compressingRetrySerializer.serialize(params.toString());
+        assertThat(value).startsWith("#Z1:");
+        assertThat(compressingRetrySerializer.deserialize(value, String.class)).isEqualTo(params.toString());
+    }
+
+    @Test
+    public void testCompressDisabled() {
+        String params = newOrderParams();
+        String compressedValue = compressingRetrySerializer.serialize(params);
+        byte[] compressedBytes = compressingRetrySerializer.serializeToBytes(params);
+
+        //关闭压缩之后不再压缩，但是仍然可以读取之前压缩保存的参数
+        CompressingRetrySerializer disabled = new CompressingRetrySerializer(retrySerializer, new CompressingRetrySerializer.DeflateCodec(Deflater.DEFAULT_COMPRESSION), 100, false);
+        assertThat(disabled.serialize(params)).isEqualTo(params);
+        assertThat(disabled.serializeToBytes(params)).isEqualTo(params.getBytes(StandardCharsets.UTF_8));
+        assertThat(disabled.deserialize(compressedValue, String.class)).isEqualTo(params);
+        assertThat(disabled.deserialize(compressedBytes, String.class)).isEqualTo(params);
+        assertThat(disabled.getCompressedCount()).isEqualTo(0);
+        assertThat(disabled.getDecompressedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testNotCompressIncompressible() {
+        StringBuilder params = new StringBuilder();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 200; i++) {
+            params.append((char) random.nextInt('!', '~'));
+        }
+        //压缩之后再Base64编码会变大
+        assertThat(compressingRetrySerializer.serialize(params.toString())).isEqualTo(params.toString());
+        assertThat(compressingRetrySerializer.getCompressedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDecodeAfterCodecChanged() {
+        String params = newOrderParams();
+        String deflated = compressingRetrySerializer.serialize(params);
+        CompressingRetrySerializer highCompression = new CompressingRetrySerializer(retrySerializer, new HighDeflateCodec(), 100);
+        String highDeflated = highCompression.serialize(params);
+        assertThat(highDeflated).startsWith("#Z2:");
+
+        //更换压缩算法之后，DeflateCodec保存的参数仍然可以读取
+        assertThat(highCompression.deserialize(deflated, String.class)).isEqualTo(params);
+        //换回DeflateCodec之后，通过decodeCodecs读取之前使用的压缩算法保存的参数
+        CompressingRetrySerializer deflate = new CompressingRetrySerializer(retrySerializer, new CompressingRetrySerializer.DeflateCodec(Deflater.DEFAULT_COMPRESSION), 100, true,
+                Collections.singletonList(new HighDeflateCodec()));
+        assertThat(deflate.deserialize(highDeflated, String.class)).isEqualTo(params);
+        assertThat(deflate.deserialize(highCompression.serializeToBytes(params), String.class)).isEqualTo(params);
+        //没有配置的压缩算法无法读取
+        assertThatThrownBy(() -> compressingRetrySerializer.deserialize(highDeflated, String.class)).hasMessageContaining("id=2");
+    }
+
+    @Test
+    public void testDuplicateCodecId() {
+        assertThatThrownBy(() -> new CompressingRetrySerializer(retrySerializer, new HighDeflateCodec(), 100, true, Collections.singletonList(new CompressingRetrySerializer.Codec() {
+
+            @Override
+            public byte id() {
+                return 2;
+            }
+
+            @Override
+            public byte[] compress(byte[] value) {
+                return value;
+            }
+
+            @Override
+            public byte[] decompress(byte[] value) {
+                return value;
+            }
+        }))).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("id=2");
+    }
+
+    private String newOrderParams() {
+        StringBuilder params = new StringBuilder("{\"orderId\":1,\"items\":[");
+        for (int i = 0; i < 100; i++) {
+            params.append("{\"skuId\":").append(10000 + i).append(",\"quantity\":1,\"price\":99.5},");
+        }
+        return params.append("{}]}").toString();
+    }
+
+    /**
+     * 压缩级别最高的deflate，作为另外一种压缩算法
+     */
+    public static class HighDeflateCodec extends CompressingRetrySerializer.DeflateCodec {
+
+        public HighDeflateCodec() {
+            super(Deflater.BEST_COMPRESSION);
+        }
+
+        @Override
+        public byte id() {
+            return 2;
+        }
+    }
+}
@@ -1,22 +1,41 @@
 package com.github.smartretry.core.impl;
 
+import com.github.smartretry.core.RetryBatchHandler;
+import com.github.smartretry.core.RetryOutcome;
 import com.github.smartretry.core.RetrySerializer;
 import com.github.smartretry.core.RetryTask;
 import com.github.smartretry.core.RetryTaskMapper;
 import com.github.smartretry.core.support.GenericRetryHandler;
 import com.github.smartretry.core.util.ServiceLoaderUtils;
+import com.github.smartretry.core.util.VirtualThreadUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.lang.reflect.Method;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(PowerMockRunner.class)
@@ -48,17 +67,329 @@ public class DefaultRetryProcessorTest {
     @Test
     public void testDoRetryWithIgnoreException() {
         when(retryHandler.ignoreException()).thenReturn(true);
-        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay())).thenReturn(newRetryTaskList());
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE)).thenReturn(newRetryTaskList());
         defaultRetryProcessor.doRetry();
     }
 
     @Test(expected = RuntimeException.class)
     public void testDoRetryWithNoIgnoreException() {
         when(retryHandler.ignoreException()).thenReturn(false);
-        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay())).thenReturn(newRetryTaskList());
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE)).thenReturn(newRetryTaskList());
         defaultRetryProcessor.doRetry();
     }
 
+    @Test
+    public void testReleaseClaimAfterException() {
+        when(retryHandler.ignoreException()).thenReturn(false);
+        List<RetryTask> tasks = newRetryTaskList();
+        tasks.get(1).setTaskId(2L);
+        when(retryTaskMapper.claimNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE, "node-1", DefaultRetryProcessor.DEFAULT_LEASE_SECONDS)).thenReturn(tasks);
+        defaultRetryProcessor.setClaimOwner("node-1");
+        assertThatThrownBy(() -> defaultRetryProcessor.doRetry()).hasMessage("mock exception");
+
+        //第一个任务报错之后第二个任务没有开始重试，释放占用
+        verify(retryTaskMapper, times(1)).releaseClaim(Collections.singletonList(2L), "node-1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDoRetryWithBatchUpdate() {
+        when(retryHandler.ignoreException()).thenReturn(true);
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE)).thenReturn(newRetryTaskList());
+        defaultRetryProcessor.doRetry();
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(retryTaskMapper, never()).update(any(RetryTask.class));
+        verify(retryTaskMapper, times(1)).updateBatch(captor.capture());
+        assertThat(captor.getValue()).hasSize(2);
+    }
+
+    @Test
+    public void testDoRetryWithPaging() {
+        when(retryHandler.ignoreException()).thenReturn(true);
+        List<RetryTask> firstPage = newRetryTaskList();
+        firstPage.get(1).setTaskId(2L);
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, 2)).thenReturn(firstPage);
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 2L, 2)).thenReturn(new ArrayList<>());
+        defaultRetryProcessor.setPageSize(2);
+        defaultRetryProcessor.doRetry();
+
+        verify(retryTaskMapper, times(1)).queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 2L, 2);
+        verify(retryTaskMapper, times(1)).updateBatch(any(List.class));
+    }
+
+    @Test
+    public void testDoRetryWithSharding() {
+        when(retryHandler.ignoreException()).thenReturn(true);
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE, 3, 1)).thenReturn(newRetryTaskList());
+        defaultRetryProcessor.doRetry(3, 1);
+
+        verify(retryTaskMapper, times(1)).queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE, 3, 1);
+        verify(retryTaskMapper, never()).queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE);
+        verify(retryTaskMapper, times(1)).updateBatch(any(List.class));
+    }
+
+    @Test
+    public void testDoRetryWithParamsBytes() {
+        when(retryHandler.ignoreException()).thenReturn(true);
+        RetrySerializer retrySerializer = PowerMockito.mock(RetrySerializer.class);
+        DefaultRetryProcessor binaryRetryProcessor = new DefaultRetryProcessor(retryHandler, retryTaskMapper, retrySerializer);
+        List<RetryTask> tasks = newRetryTaskList();
+        byte[] paramsBytes = "{\"orderId\":1}".getBytes();
+        tasks.forEach(task -> task.setParamsBytes(paramsBytes));
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE)).thenReturn(tasks);
+        binaryRetryProcessor.doRetry();
+
+        verify(retrySerializer, times(2)).deserialize(any(byte[].class), any(Class.class));
+        verify(retrySerializer, never()).deserialize(any(String.class), any(Class.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDoRetryInParallel() {
+        when(retryHandler.parallelism()).thenReturn(2);
+        when(retryHandler.ignoreException()).thenReturn(false);
+        DefaultRetryProcessor parallelRetryProcessor = new DefaultRetryProcessor(retryHandler, retryTaskMapper, PowerMockito.mock(RetrySerializer.class));
+        List<RetryTask> tasks = newRetryTaskList();
+        tasks.forEach(task -> task.setRetryCount(0));
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE)).thenReturn(tasks);
+
+        assertThatThrownBy(parallelRetryProcessor::doRetry).hasMessage("mock exception");
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(retryTaskMapper, times(1)).updateBatch(captor.capture());
+        //第一个任务报错之后，还没有开始的任务不再重试
+        assertThat(captor.getValue()).isNotEmpty();
+        assertThat(tasks).allMatch(task -> task.getRetryCount() <= 1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDoRetryWithRateLimit() {
+        when(retryHandler.maxAttemptsPerSecond()).thenReturn(1);
+        when(retryHandler.ignoreException()).thenReturn(true);
+        DefaultRetryProcessor limitedRetryProcessor = new DefaultRetryProcessor(retryHandler, retryTaskMapper, PowerMockito.mock(RetrySerializer.class));
+        List<RetryTask> tasks = newRetryTaskList();
+        tasks.forEach(task -> task.setRetryCount(0));
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE)).thenReturn(tasks);
+        limitedRetryProcessor.doRetry();
+
+        //第二个任务推迟到下一次重试，不更新，也不增加重试次数
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(retryTaskMapper, times(1)).updateBatch(captor.capture());
+        assertThat(captor.getValue()).containsExactly(tasks.get(0));
+        assertThat(tasks.get(1).getRetryCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDoRetryWithTimeout() {
+        when(retryHandler.timeout()).thenReturn(50);
+        when(retryHandler.ignoreException()).thenReturn(true);
+        doAnswer(invocation -> {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+            return null;
+        }).when(retryHandler).handle(anyObject());
+        List<RetryTask> tasks = newRetryTaskList();
+        tasks.forEach(task -> task.setRetryCount(0));
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE)).thenReturn(tasks);
+
+        long start = System.currentTimeMillis();
+        defaultRetryProcessor.doRetry();
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(TimeUnit.SECONDS.toMillis(5));
+        assertThat(tasks).allMatch(task -> task.getRetryCount() == 1 && task.getRemark().contains("超时"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDoRetryAsync() {
+        when(retryHandler.ignoreException()).thenReturn(true);
+        List<CompletableFuture<Object>> stages = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            CompletableFuture<Object> stage = new CompletableFuture<>();
+            stages.add(stage);
+            return stage;
+        }).when(retryHandler).handle(anyObject());
+        List<RetryTask> tasks = newRetryTaskList();
+        tasks.forEach(task -> task.setRetryCount(0));
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE)).thenReturn(tasks);
+
+        //两个任务都发起之后，在其他线程里面完成
+        new Thread(() -> {
+            while (stages.size() < 2) {
+                Thread.yield();
+            }
+            stages.get(0).complete("ok");
+            stages.get(1).completeExceptionally(new RuntimeException("mock async exception"));
+        }).start();
+        defaultRetryProcessor.doRetry();
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(retryTaskMapper, times(1)).updateBatch(captor.capture());
+        assertThat(captor.getValue()).hasSize(2);
+        assertThat(tasks.get(0).getStatus()).isEqualTo(RetryTask.STATUS_SUCCESS);
+        assertThat(tasks.get(1).getRetryCount()).isEqualTo(1);
+        assertThat(tasks.get(1).getRemark()).isEqualTo("mock async exception");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDoRetryBatch() {
+        when(retryHandler.ignoreException()).thenReturn(true);
+        RetryBatchHandler<Object> batchHandler = PowerMockito.mock(RetryBatchHandler.class);
+        when(batchHandler.handleBatch(any(List.class))).thenReturn(Arrays.asList(RetryOutcome.success(), RetryOutcome.failure(new RuntimeException("mock batch exception"))));
+        when(retryHandler.getBatchHandler()).thenReturn(batchHandler);
+        List<RetryTask> tasks = newRetryTaskList();
+        tasks.forEach(task -> task.setRetryCount(0));
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE)).thenReturn(tasks);
+        defaultRetryProcessor.doRetry();
+
+        //一页的任务只调用一次handleBatch，每个任务按照各自的结果更新
+        verify(batchHandler, times(1)).handleBatch(any(List.class));
+        verify(retryHandler, never()).handle(anyObject());
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(retryTaskMapper, times(1)).updateBatch(captor.capture());
+        assertThat(captor.getValue()).hasSize(2);
+        assertThat(tasks.get(0).getStatus()).isEqualTo(RetryTask.STATUS_SUCCESS);
+        assertThat(tasks.get(1).getRetryCount()).isEqualTo(1);
+        assertThat(tasks.get(1).getRemark()).isEqualTo("mock batch exception");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDoRetryBatchWithRateLimit() {
+        when(retryHandler.maxAttemptsPerSecond()).thenReturn(1);
+        RetryBatchHandler<Object> batchHandler = mockBatchHandler(false);
+        DefaultRetryProcessor limitedRetryProcessor = new DefaultRetryProcessor(retryHandler, retryTaskMapper, PowerMockito.mock(RetrySerializer.class));
+        List<RetryTask> secondPage = mockTwoPages(limitedRetryProcessor);
+        limitedRetryProcessor.doRetry();
+
+        //第二页获取不到许可，整页推迟到下一次重试，不更新，也不增加重试次数
+        verify(batchHandler, times(1)).handleBatch(any(List.class));
+        verify(retryTaskMapper, times(1)).updateBatch(any(List.class));
+        assertThat(secondPage).allMatch(task -> task.getRetryCount() == 0);
+        verify(retryTaskMapper, never()).queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 4L, 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDoRetryBatchWithCircuitBreaker() {
+        when(retryHandler.circuitBreakerFailureRate()).thenReturn(100);
+        when(retryHandler.circuitBreakerWindowSize()).thenReturn(1);
+        when(retryHandler.circuitBreakerOpenSeconds()).thenReturn(60);
+        RetryBatchHandler<Object> batchHandler = mockBatchHandler(true);
+        DefaultRetryProcessor circuitBreakerRetryProcessor = new DefaultRetryProcessor(retryHandler, retryTaskMapper, PowerMockito.mock(RetrySerializer.class));
+        List<RetryTask> secondPage = mockTwoPages(circuitBreakerRetryProcessor);
+        circuitBreakerRetryProcessor.doRetry();
+
+        //第一页全部失败之后熔断，第二页推迟到下一次重试
+        verify(batchHandler, times(1)).handleBatch(any(List.class));
+        assertThat(secondPage).allMatch(task -> task.getRetryCount() == 0);
+
+        //熔断中，下一次定时重试直接跳过，不查询任务
+        circuitBreakerRetryProcessor.doRetry();
+        verify(retryTaskMapper, times(1)).queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, 2);
+        verify(batchHandler, times(1)).handleBatch(any(List.class));
+    }
+
+    @Test
+    public void testCloseShutsDownExecutor() throws InterruptedException {
+        DefaultRetryProcessor parallelRetryProcessor = newParallelRetryProcessor(false);
+        Set<Thread> threads = recordRetryThreads();
+        parallelRetryProcessor.doRetry();
+        assertThat(threads).isNotEmpty().allMatch(thread -> thread.getName().startsWith("retry-user.order-"));
+
+        parallelRetryProcessor.close();
+        for (Thread thread : threads) {
+            thread.join(5000);
+            assertThat(thread.isAlive()).isFalse();
+        }
+        //关闭之后不再重试
+        parallelRetryProcessor.doRetry();
+        verify(retryTaskMapper, times(1)).queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE);
+    }
+
+    @Test
+    public void testDoRetryWithVirtualThreads() throws Exception {
+        if (!VirtualThreadUtils.isSupported()) {
+            //PowerMockRunner不支持Assume，JDK21以下直接跳过
+            return;
+        }
+        DefaultRetryProcessor parallelRetryProcessor = newParallelRetryProcessor(true);
+        Set<Thread> threads = recordRetryThreads();
+        try {
+            parallelRetryProcessor.doRetry();
+        } finally {
+            parallelRetryProcessor.close();
+        }
+        Method isVirtual = Thread.class.getMethod("isVirtual");
+        assertThat(threads).isNotEmpty();
+        for (Thread thread : threads) {
+            assertThat(isVirtual.invoke(thread)).isEqualTo(Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 每个任务都返回同样的结果
+     */
+    @SuppressWarnings("unchecked")
+    private RetryBatchHandler<Object> mockBatchHandler(boolean failure) {
+        when(retryHandler.ignoreException()).thenReturn(true);
+        RetryBatchHandler<Object> batchHandler = PowerMockito.mock(RetryBatchHandler.class);
+        when(batchHandler.handleBatch(any(List.class))).thenAnswer(invocation -> {
+            List<RetryOutcome> outcomes = new ArrayList<>();
+            for (Object arg : (List<Object>) invocation.getArguments()[0]) {
+                outcomes.add(failure ? RetryOutcome.failure(new RuntimeException("mock batch exception")) : RetryOutcome.success());
+            }
+            return outcomes;
+        });
+        when(retryHandler.getBatchHandler()).thenReturn(batchHandler);
+        return batchHandler;
+    }
+
+    /**
+     * 每页2个任务，一共两页
+     *
+     * @return 第二页的任务
+     */
+    private List<RetryTask> mockTwoPages(DefaultRetryProcessor retryProcessor) {
+        List<RetryTask> firstPage = newRetryTaskList();
+        List<RetryTask> secondPage = newRetryTaskList();
+        for (int i = 0; i < 2; i++) {
+            firstPage.get(i).setTaskId(i + 1L);
+            secondPage.get(i).setTaskId(i + 3L);
+        }
+        firstPage.forEach(task -> task.setRetryCount(0));
+        secondPage.forEach(task -> task.setRetryCount(0));
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, 2)).thenReturn(firstPage);
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 2L, 2)).thenReturn(secondPage);
+        retryProcessor.setPageSize(2);
+        return secondPage;
+    }
+
+    private DefaultRetryProcessor newParallelRetryProcessor(boolean virtualThreadEnabled) {
+        when(retryHandler.parallelism()).thenReturn(2);
+        when(retryHandler.ignoreException()).thenReturn(true);
+        DefaultRetryProcessor parallelRetryProcessor = new DefaultRetryProcessor(retryHandler, retryTaskMapper, PowerMockito.mock(RetrySerializer.class));
+        parallelRetryProcessor.setVirtualThreadEnabled(virtualThreadEnabled);
+        List<RetryTask> tasks = newRetryTaskList();
+        tasks.forEach(task -> task.setRetryCount(0));
+        when(retryTaskMapper.queryNeedRetryTaskList(retryHandler.identity(), retryHandler.maxRetryCount(), retryHandler.initialDelay(), 0L, DefaultRetryProcessor.DEFAULT_PAGE_SIZE)).thenReturn(tasks);
+        return parallelRetryProcessor;
+    }
+
+    /**
+     * 记录执行handle方法的线程
+     */
+    private Set<Thread> recordRetryThreads() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> {
+            threads.add(Thread.currentThread());
+            return null;
+        }).when(retryHandler).handle(anyObject());
+        return threads;
+    }
+
     private List<RetryTask> newRetryTaskList() {
         List<RetryTask> tasks = new ArrayList<>();
         RetryTask task1 = new RetryTask();
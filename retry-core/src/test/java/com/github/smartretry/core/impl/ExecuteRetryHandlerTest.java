@@ -0,0 +1,105 @@
+package com.github.smartretry.core.impl;
+
+import com.github.smartretry.core.RetrySerializer;
+import com.github.smartretry.core.RetryTask;
+import com.github.smartretry.core.RetryTaskMapper;
+import com.github.smartretry.core.backoff.ExponentialBackoffPolicy;
+import com.github.smartretry.core.support.GenericRetryHandler;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class ExecuteRetryHandlerTest {
+
+    private GenericRetryHandler genericRetryHandler;
+
+    private ExecuteRetryHandler executeRetryHandler;
+
+    /**
+     * 传给退避策略的上一次等待时长
+     */
+    private AtomicLong previousDelay = new AtomicLong(-1);
+
+    @Before
+    public void setup() {
+        this.genericRetryHandler = PowerMockito.mock(GenericRetryHandler.class);
+        when(genericRetryHandler.initialDelay()).thenReturn(30);
+        when(genericRetryHandler.backoffPolicy()).thenReturn((retryCount, delay) -> {
+            previousDelay.set(delay);
+            return 60;
+        });
+        this.executeRetryHandler = new RetryedRetryHandler(genericRetryHandler, PowerMockito.mock(RetryTaskMapper.class), PowerMockito.mock(RetrySerializer.class));
+    }
+
+    @Test
+    public void testWithoutBackoffPolicy() {
+        when(genericRetryHandler.backoffPolicy()).thenReturn(null);
+        assertThat(secondsFromNow(executeRetryHandler.getNextRetryDate(newRetryTask(1)))).isEqualTo(0);
+    }
+
+    @Test
+    public void testExponentialBackoff() {
+        when(genericRetryHandler.backoffPolicy()).thenReturn(new ExponentialBackoffPolicy(10, 2, 3600));
+        //第3次失败之后等待10 * 2^2秒
+        assertThat(secondsFromNow(executeRetryHandler.getNextRetryDate(newRetryTask(3)))).isEqualTo(40);
+    }
+
+    @Test
+    public void testPreviousDelayIsInitialDelay() {
+        RetryTask retryTask = newRetryTask(1);
+        assertThat(secondsFromNow(executeRetryHandler.getNextRetryDate(retryTask))).isEqualTo(60);
+        assertThat(previousDelay.get()).isEqualTo(30);
+    }
+
+    @Test
+    public void testPreviousDelayFromEditDate() {
+        RetryTask retryTask = newRetryTask(2);
+        LocalDateTime editDate = LocalDateTime.now().minusMinutes(10);
+        retryTask.setCreateDate(editDate.minusHours(1));
+        retryTask.setEditDate(editDate);
+        retryTask.setNextRetryDate(editDate.plusSeconds(120));
+        executeRetryHandler.getNextRetryDate(retryTask);
+        assertThat(previousDelay.get()).isEqualTo(120);
+    }
+
+    @Test
+    public void testPreviousDelayFromCreateDate() {
+        RetryTask retryTask = newRetryTask(1);
+        LocalDateTime createDate = LocalDateTime.now().minusMinutes(10);
+        retryTask.setCreateDate(createDate);
+        retryTask.setNextRetryDate(createDate.plusSeconds(45));
+        executeRetryHandler.getNextRetryDate(retryTask);
+        assertThat(previousDelay.get()).isEqualTo(45);
+    }
+
+    @Test
+    public void testNegativePreviousDelay() {
+        RetryTask retryTask = newRetryTask(1);
+        LocalDateTime createDate = LocalDateTime.now();
+        retryTask.setCreateDate(createDate);
+        retryTask.setNextRetryDate(createDate.minusSeconds(5));
+        executeRetryHandler.getNextRetryDate(retryTask);
+        assertThat(previousDelay.get()).isEqualTo(0);
+    }
+
+    private long secondsFromNow(LocalDateTime nextRetryDate) {
+        //四舍五入，忽略执行的耗时
+        return Math.round(Duration.between(LocalDateTime.now(), nextRetryDate).toMillis() / 1000.0);
+    }
+
+    private RetryTask newRetryTask(int retryCount) {
+        RetryTask retryTask = new RetryTask();
+        retryTask.setTaskId(1L);
+        retryTask.setIdentity("user.order");
+        retryTask.setStatus(RetryTask.STATUS_INIT);
+        retryTask.setRetryCount(retryCount);
+        return retryTask;
+    }
+}
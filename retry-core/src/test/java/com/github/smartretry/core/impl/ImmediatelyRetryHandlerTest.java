@@ -0,0 +1,103 @@
+package com.github.smartretry.core.impl;
+
+import com.github.smartretry.core.NoRetryException;
+import com.github.smartretry.core.RetryTask;
+import com.github.smartretry.core.RetryTaskFactory;
+import com.github.smartretry.core.RetryTaskMapper;
+import com.github.smartretry.core.support.GenericRetryHandler;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ImmediatelyRetryHandlerTest {
+
+    private GenericRetryHandler retryHandler;
+
+    private RetryTaskMapper retryTaskMapper;
+
+    private RetryTaskFactory retryTaskFactory;
+
+    private ImmediatelyRetryHandler immediatelyRetryHandler;
+
+    @Before
+    public void setup() {
+        this.retryHandler = PowerMockito.mock(GenericRetryHandler.class);
+        this.retryTaskMapper = PowerMockito.mock(RetryTaskMapper.class);
+        this.retryTaskFactory = PowerMockito.mock(RetryTaskFactory.class);
+        this.immediatelyRetryHandler = new ImmediatelyRetryHandler(retryHandler, retryTaskFactory, retryTaskMapper, false);
+
+        when(retryHandler.identity()).thenReturn("user.order");
+        when(retryHandler.maxRetryCount()).thenReturn(5);
+        when(retryHandler.quickRetries()).thenReturn(2);
+        when(retryHandler.quickBackoffMillis()).thenReturn(10);
+        when(retryTaskFactory.create(any(GenericRetryHandler.class), anyObject())).thenReturn(new RetryTask());
+    }
+
+    @Test
+    public void testQuickRetrySuccess() {
+        when(retryHandler.handle(anyObject())).thenThrow(new RuntimeException("mock exception")).thenReturn("ok");
+        assertThat(immediatelyRetryHandler.handle("order-1")).isEqualTo("ok");
+
+        verify(retryHandler, times(2)).handle("order-1");
+        verify(retryTaskMapper, never()).insert(any(RetryTask.class));
+    }
+
+    @Test
+    public void testQuickRetryFailure() {
+        when(retryHandler.handle(anyObject())).thenThrow(new RuntimeException("mock exception"));
+        assertThatThrownBy(() -> immediatelyRetryHandler.handle("order-1")).hasMessage("mock exception");
+
+        verify(retryHandler, times(3)).handle("order-1");
+        verify(retryTaskMapper, times(1)).insert(any(RetryTask.class));
+    }
+
+    @Test
+    public void testNoQuickRetryWithNoRetryException() {
+        when(retryHandler.handle(anyObject())).thenThrow(new NoRetryException("mock exception"));
+        assertThatThrownBy(() -> immediatelyRetryHandler.handle("order-1")).isInstanceOf(NoRetryException.class);
+
+        verify(retryHandler, times(1)).handle("order-1");
+        verify(retryTaskMapper, never()).insert(any(RetryTask.class));
+    }
+
+    @Test
+    public void testAsyncFailureCompletesAfterInsert() {
+        CompletableFuture<Object> stage = new CompletableFuture<>();
+        when(retryHandler.handle(anyObject())).thenReturn(stage);
+        Object result = immediatelyRetryHandler.handle("order-1");
+        assertThat(result).isInstanceOf(CompletableFuture.class).isNotSameAs(stage);
+
+        //返回的CompletionStage在任务保存之后才完成
+        CompletableFuture<?> future = (CompletableFuture<?>) result;
+        when(retryTaskMapper.insert(any(RetryTask.class))).thenAnswer(invocation -> {
+            assertThat(future).isNotDone();
+            return 1;
+        });
+        stage.completeExceptionally(new RuntimeException("mock async exception"));
+
+        assertThatThrownBy(future::join).hasCauseInstanceOf(RuntimeException.class).hasMessageContaining("mock async exception");
+        verify(retryTaskMapper, times(1)).insert(any(RetryTask.class));
+    }
+
+    @Test
+    public void testAsyncSuccess() {
+        CompletableFuture<Object> stage = new CompletableFuture<>();
+        when(retryHandler.handle(anyObject())).thenReturn(stage);
+        CompletableFuture<?> future = (CompletableFuture<?>) immediatelyRetryHandler.handle("order-1");
+        stage.complete("ok");
+
+        assertThat(future.join()).isEqualTo("ok");
+        verify(retryTaskMapper, never()).insert(any(RetryTask.class));
+    }
+}
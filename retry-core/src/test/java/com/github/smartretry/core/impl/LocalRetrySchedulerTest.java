@@ -0,0 +1,203 @@
+package com.github.smartretry.core.impl;
+
+import com.github.smartretry.core.RetrySerializer;
+import com.github.smartretry.core.RetryTask;
+import com.github.smartretry.core.RetryTaskFactory;
+import com.github.smartretry.core.RetryTaskMapper;
+import com.github.smartretry.core.support.GenericRetryHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.powermock.api.mockito.PowerMockito;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LocalRetrySchedulerTest {
+
+    private GenericRetryHandler retryHandler;
+
+    private RetryTaskMapper retryTaskMapper;
+
+    private RetryTaskFactory retryTaskFactory;
+
+    private RetrySerializer retrySerializer;
+
+    private LocalRetryScheduler localRetryScheduler;
+
+    @Before
+    public void setup() {
+        this.retryHandler = PowerMockito.mock(GenericRetryHandler.class);
+        this.retryTaskMapper = PowerMockito.mock(RetryTaskMapper.class);
+        this.retryTaskFactory = PowerMockito.mock(RetryTaskFactory.class);
+        this.retrySerializer = PowerMockito.mock(RetrySerializer.class);
+        this.localRetryScheduler = new LocalRetryScheduler(retrySerializer, 50, 3, 1);
+
+        when(retryHandler.identity()).thenReturn("user.order");
+        when(retryHandler.maxRetryCount()).thenReturn(5);
+        when(retryHandler.initialDelay()).thenReturn(300);
+        when(retryTaskFactory.create(any(GenericRetryHandler.class), anyObject())).thenAnswer(invocation -> {
+            RetryTask retryTask = new RetryTask();
+            retryTask.setTaskId(1L);
+            retryTask.setIdentity("user.order");
+            retryTask.setStatus(RetryTask.STATUS_INIT);
+            retryTask.setParams(String.valueOf(invocation.getArguments()[1]));
+            retryTask.setCreateDate(LocalDateTime.now());
+            retryTask.setNextRetryDate(retryTask.getCreateDate().plusSeconds(300));
+            return retryTask;
+        });
+        //本地重试从保存的参数反序列化
+        when(retrySerializer.deserialize(anyString(), any(Class.class))).thenAnswer(invocation -> new String((String) invocation.getArguments()[0]));
+    }
+
+    @After
+    public void close() {
+        localRetryScheduler.close();
+    }
+
+    @Test
+    public void testRetryLocallyUntilSuccess() throws InterruptedException {
+        when(retryHandler.handle(anyObject())).thenThrow(new RuntimeException("mock exception")).thenThrow(new RuntimeException("mock exception")).thenReturn("ok");
+        ImmediatelyRetryHandler immediatelyRetryHandler = new ImmediatelyRetryHandler(retryHandler, retryTaskFactory, retryTaskMapper, false, localRetryScheduler);
+        assertThatThrownBy(() -> immediatelyRetryHandler.handle("order-1")).hasMessage("mock exception");
+
+        RetryTask retryTask = captureInsertedTask();
+        //本地重试期间，定时任务查询不到
+        assertThat(retryTask.getNextRetryDate()).isAfter(LocalDateTime.now().plusSeconds(299));
+
+        waitForStatus(retryTask, RetryTask.STATUS_SUCCESS);
+        assertThat(retryTask.getRetryCount()).isEqualTo(2);
+        verify(retryHandler, times(3)).handle("order-1");
+    }
+
+    @Test
+    public void testFallbackToPollingAfterMaxAttempts() throws InterruptedException {
+        when(retryHandler.handle(anyObject())).thenThrow(new RuntimeException("mock exception"));
+        ImmediatelyRetryHandler immediatelyRetryHandler = new ImmediatelyRetryHandler(retryHandler, retryTaskFactory, retryTaskMapper, false, localRetryScheduler);
+        assertThatThrownBy(() -> immediatelyRetryHandler.handle("order-1")).hasMessage("mock exception");
+
+        RetryTask retryTask = captureInsertedTask();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (retryTask.getRetryCount() < 3 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        //本地重试3次之后交给定时任务，状态仍然是待重试，nextRetryDate按照退避策略计算
+        assertThat(retryTask.getRetryCount()).isEqualTo(3);
+        assertThat(retryTask.getStatus()).isEqualTo(RetryTask.STATUS_INIT);
+        assertThat(retryTask.getNextRetryDate()).isBefore(LocalDateTime.now().plusSeconds(1));
+        verify(retryHandler, times(4)).handle("order-1");
+    }
+
+    @Test
+    public void testOwnershipLost() throws InterruptedException {
+        //占用时间只有本地重试的延迟50毫秒，本地重试执行了200毫秒
+        when(retryHandler.initialDelay()).thenReturn(0);
+        AtomicInteger attempts = new AtomicInteger();
+        when(retryHandler.handle(anyObject())).thenThrow(new RuntimeException("mock exception")).thenAnswer(invocation -> {
+            TimeUnit.MILLISECONDS.sleep(200);
+            attempts.incrementAndGet();
+            throw new RuntimeException("mock exception");
+        });
+        ImmediatelyRetryHandler immediatelyRetryHandler = new ImmediatelyRetryHandler(retryHandler, retryTaskFactory, retryTaskMapper, false, localRetryScheduler);
+        assertThatThrownBy(() -> immediatelyRetryHandler.handle("order-1")).hasMessage("mock exception");
+        captureInsertedTask();
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (attempts.get() < 1 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        TimeUnit.MILLISECONDS.sleep(500);
+
+        //超过了占用时间，任务可能已经被定时任务重试，不再更新任务，也不再本地重试
+        verify(retryTaskMapper, never()).update(any(RetryTask.class));
+        verify(retryHandler, times(2)).handle("order-1");
+    }
+
+    @Test
+    public void testRetryWithSavedParams() throws InterruptedException {
+        List<Object> args = new CopyOnWriteArrayList<>();
+        when(retryHandler.handle(anyObject())).thenAnswer(invocation -> {
+            args.add(invocation.getArguments()[0]);
+            if (args.size() == 1) {
+                throw new RuntimeException("mock exception");
+            }
+            return "ok";
+        });
+        ImmediatelyRetryHandler immediatelyRetryHandler = new ImmediatelyRetryHandler(retryHandler, retryTaskFactory, retryTaskMapper, false, localRetryScheduler);
+        List<String> arg = new ArrayList<>(Collections.singletonList("order-1"));
+        assertThatThrownBy(() -> immediatelyRetryHandler.handle(arg)).hasMessage("mock exception");
+        //调用方修改了参数对象，本地重试使用的是保存的参数
+        arg.add("order-2");
+
+        waitForStatus(captureInsertedTask(), RetryTask.STATUS_SUCCESS);
+        assertThat(args).hasSize(2);
+        assertThat(args.get(1)).isNotSameAs(arg).isEqualTo("[order-1]");
+    }
+
+    @Test
+    public void testQueueFull() throws InterruptedException {
+        localRetryScheduler.close();
+        localRetryScheduler = new LocalRetryScheduler(retrySerializer, 50, 3, 1, 1);
+        //占用时间是600秒之后，正常的退避时间是300秒之后
+        when(retryHandler.initialDelay()).thenReturn(600);
+        List<Object> args = new CopyOnWriteArrayList<>();
+        when(retryHandler.handle(anyObject())).thenAnswer(invocation -> {
+            args.add(invocation.getArguments()[0]);
+            if (args.size() > 1 && "order-1".equals(invocation.getArguments()[0])) {
+                return "ok";
+            }
+            throw new RuntimeException("mock exception");
+        });
+        ImmediatelyRetryHandler immediatelyRetryHandler = new ImmediatelyRetryHandler(retryHandler, retryTaskFactory, retryTaskMapper, false, localRetryScheduler);
+        assertThatThrownBy(() -> immediatelyRetryHandler.handle("order-1")).hasMessage("mock exception");
+        assertThatThrownBy(() -> immediatelyRetryHandler.handle("order-2")).hasMessage("mock exception");
+
+        ArgumentCaptor<RetryTask> captor = ArgumentCaptor.forClass(RetryTask.class);
+        verify(retryTaskMapper, times(2)).insert(captor.capture());
+        RetryTask retryTask1 = captor.getAllValues().get(0);
+        RetryTask retryTask2 = captor.getAllValues().get(1);
+        assertThat(retryTask1.getNextRetryDate()).isAfter(LocalDateTime.now().plusSeconds(599));
+        //队列满了，不本地重试，nextRetryDate保持正常的退避时间，由定时任务重试
+        assertThat(retryTask2.getNextRetryDate()).isBefore(LocalDateTime.now().plusSeconds(301));
+
+        //order-1本地重试成功之后释放位置，新失败的任务可以本地重试
+        waitForStatus(retryTask1, RetryTask.STATUS_SUCCESS);
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertThatThrownBy(() -> immediatelyRetryHandler.handle("order-3")).hasMessage("mock exception");
+        verify(retryTaskMapper, times(3)).insert(captor.capture());
+        assertThat(captor.getAllValues().get(captor.getAllValues().size() - 1).getNextRetryDate()).isAfter(LocalDateTime.now().plusSeconds(599));
+        assertThat(args.stream().filter("order-2"::equals).count()).isEqualTo(1);
+    }
+
+    private RetryTask captureInsertedTask() {
+        ArgumentCaptor<RetryTask> captor = ArgumentCaptor.forClass(RetryTask.class);
+        verify(retryTaskMapper, times(1)).insert(captor.capture());
+        return captor.getValue();
+    }
+
+    private void waitForStatus(RetryTask retryTask, int status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (retryTask.getStatus() != status && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertThat(retryTask.getStatus()).isEqualTo(status);
+    }
+}
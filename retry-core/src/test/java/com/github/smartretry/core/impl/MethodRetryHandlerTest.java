@@ -0,0 +1,68 @@
+package com.github.smartretry.core.impl;
+
+import com.github.smartretry.core.RetryFunction;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MethodRetryHandlerTest {
+
+    private int calls;
+
+    @Test
+    public void testHandle() throws NoSuchMethodException {
+        MethodRetryHandler methodRetryHandler = newMethodRetryHandler("payOrder", String.class);
+        assertThat(methodRetryHandler.handle("order-1")).isEqualTo("paid:order-1");
+        assertThat(methodRetryHandler.getInputArgsType()).isEqualTo(String.class);
+    }
+
+    @Test
+    public void testHandleWithoutParameter() throws NoSuchMethodException {
+        MethodRetryHandler methodRetryHandler = newMethodRetryHandler("refresh");
+        assertThat(methodRetryHandler.handle(null)).isNull();
+        assertThat(calls).isEqualTo(1);
+    }
+
+    @Test
+    public void testHandleWithPrimitiveParameter() throws NoSuchMethodException {
+        MethodRetryHandler methodRetryHandler = newMethodRetryHandler("cancelOrder", long.class);
+        assertThat(methodRetryHandler.handle(10L)).isEqualTo(11L);
+    }
+
+    @Test
+    public void testExceptionWrapped() throws NoSuchMethodException {
+        MethodRetryHandler methodRetryHandler = newMethodRetryHandler("failOrder", String.class);
+        assertThatThrownBy(() -> methodRetryHandler.handle("order-1"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("mock exception")
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    private MethodRetryHandler newMethodRetryHandler(String methodName, Class<?>... parameterTypes) throws NoSuchMethodException {
+        Method method = MethodRetryHandlerTest.class.getDeclaredMethod(methodName, parameterTypes);
+        return new MethodRetryHandler(this, method, method.getAnnotation(RetryFunction.class), () -> null);
+    }
+
+    @RetryFunction(identity = "order.pay")
+    public String payOrder(String orderId) {
+        return "paid:" + orderId;
+    }
+
+    @RetryFunction(identity = "order.refresh")
+    private void refresh() {
+        calls++;
+    }
+
+    @RetryFunction(identity = "order.cancel")
+    public long cancelOrder(long orderId) {
+        return orderId + 1;
+    }
+
+    @RetryFunction(identity = "order.fail")
+    public void failOrder(String orderId) {
+        throw new IllegalStateException("mock exception");
+    }
+}
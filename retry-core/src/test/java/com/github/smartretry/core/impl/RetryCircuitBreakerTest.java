@@ -0,0 +1,64 @@
+package com.github.smartretry.core.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetryCircuitBreakerTest {
+
+    private AtomicLong now = new AtomicLong(0);
+
+    private RetryCircuitBreaker circuitBreaker = new RetryCircuitBreaker(50, 4, 60, now::get);
+
+    @Test
+    public void testOpenWhenFailureRateReached() {
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.getState()).isEqualTo(RetryCircuitBreaker.State.CLOSED);
+
+        //窗口满了之后，失败率2/4达到50%
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.getState()).isEqualTo(RetryCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.allowPass()).isFalse();
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void testHalfOpenCanary() {
+        openCircuitBreaker();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertThat(circuitBreaker.allowPass()).isTrue();
+
+        //只放行一个任务
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.getState()).isEqualTo(RetryCircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+
+        circuitBreaker.onSuccess();
+        assertThat(circuitBreaker.getState()).isEqualTo(RetryCircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void testHalfOpenCanaryFailed() {
+        openCircuitBreaker();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onFailure();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(RetryCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.allowPass()).isFalse();
+    }
+
+    private void openCircuitBreaker() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onFailure();
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(RetryCircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.smartretry.core.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetryLimiterTest {
+
+    @Test
+    public void testMaxConcurrentAttempts() {
+        RetryLimiter retryLimiter = new RetryLimiter(2, 0);
+        assertThat(retryLimiter.tryAcquire()).isTrue();
+        assertThat(retryLimiter.tryAcquire()).isTrue();
+        assertThat(retryLimiter.tryAcquire()).isFalse();
+
+        retryLimiter.release();
+        assertThat(retryLimiter.tryAcquire()).isTrue();
+        assertThat(retryLimiter.getConcurrentAttempts()).isEqualTo(2);
+    }
+
+    @Test
+    public void testMaxAttemptsPerSecond() {
+        AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+        RetryLimiter retryLimiter = new RetryLimiter(0, 5, now::get);
+        for (int i = 0; i < 5; i++) {
+            assertThat(retryLimiter.tryAcquire()).isTrue();
+        }
+        assertThat(retryLimiter.tryAcquire()).isFalse();
+
+        //200ms产生一个令牌
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(retryLimiter.tryAcquire()).isTrue();
+        assertThat(retryLimiter.tryAcquire()).isFalse();
+
+        //空闲很久之后，最多只能突发5个
+        now.addAndGet(TimeUnit.MINUTES.toNanos(10));
+        for (int i = 0; i < 5; i++) {
+            assertThat(retryLimiter.tryAcquire()).isTrue();
+        }
+        assertThat(retryLimiter.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void testRateLimitReleasesConcurrentPermit() {
+        AtomicLong now = new AtomicLong(0);
+        RetryLimiter retryLimiter = new RetryLimiter(10, 1, now::get);
+        assertThat(retryLimiter.tryAcquire()).isTrue();
+        assertThat(retryLimiter.tryAcquire()).isFalse();
+        assertThat(retryLimiter.getConcurrentAttempts()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.smartretry.core.impl;
+
+import com.github.smartretry.core.RetrySerializer;
+import com.github.smartretry.core.RetryTaskMapper;
+import com.github.smartretry.core.support.GenericRetryHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.when;
+
+public class RetryedRetryHandlerTest {
+
+    private GenericRetryHandler genericRetryHandler;
+
+    private RetryedRetryHandler retryedRetryHandler;
+
+    /**
+     * 执行handle方法的线程
+     */
+    private Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setup() {
+        this.genericRetryHandler = PowerMockito.mock(GenericRetryHandler.class);
+        when(genericRetryHandler.identity()).thenReturn("user.order");
+        when(genericRetryHandler.parallelism()).thenReturn(2);
+        when(genericRetryHandler.timeout()).thenReturn(5000);
+        when(genericRetryHandler.handle(anyObject())).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread());
+            return "result-" + invocation.getArguments()[0];
+        });
+        this.retryedRetryHandler = new RetryedRetryHandler(genericRetryHandler, PowerMockito.mock(RetryTaskMapper.class), PowerMockito.mock(RetrySerializer.class));
+    }
+
+    @After
+    public void close() {
+        retryedRetryHandler.close();
+    }
+
+    @Test
+    public void testHandleWithoutRetryTask() {
+        when(genericRetryHandler.timeout()).thenReturn(0);
+        assertThat(retryedRetryHandler.handle("1")).isEqualTo("result-1");
+        assertThat(threads).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    public void testTimeoutExecutorIsBounded() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(retryedRetryHandler.handle(String.valueOf(i))).isEqualTo("result-" + i);
+        }
+        //线程数量不超过parallelism
+        assertThat(threads).hasSize(2);
+        assertThat(threads).allMatch(Thread::isDaemon);
+        assertThat(threads).allMatch(thread -> thread.getName().startsWith("retry-user.order-timeout-"));
+    }
+
+    @Test
+    public void testClose() throws InterruptedException {
+        retryedRetryHandler.handle("1");
+        retryedRetryHandler.close();
+        for (Thread thread : threads) {
+            thread.join(5000);
+            assertThat(thread.isAlive()).isFalse();
+        }
+        assertThatThrownBy(() -> retryedRetryHandler.handle("2")).isInstanceOf(RejectedExecutionException.class);
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.smartretry.core.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ServiceLoaderUtilsTest {
+
+    @Test
+    public void testLoadFirstService() {
+        //没有指定时使用META-INF/services中的第一个
+        assertThat(ServiceLoaderUtils.loadService(Greeting.class)).isInstanceOf(EnglishGreeting.class);
+        assertThat(ServiceLoaderUtils.loadService(Greeting.class, "")).isInstanceOf(EnglishGreeting.class);
+    }
+
+    @Test
+    public void testLoadServiceByClassName() {
+        assertThat(ServiceLoaderUtils.loadService(Greeting.class, ChineseGreeting.class.getName())).isInstanceOf(ChineseGreeting.class);
+        assertThatThrownBy(() -> ServiceLoaderUtils.loadService(Greeting.class, "com.example.FrenchGreeting"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining(ChineseGreeting.class.getName());
+    }
+
+    @Test
+    public void testLoadMissingService() {
+        assertThatThrownBy(() -> ServiceLoaderUtils.loadService(Runnable.class)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    public interface Greeting {
+    }
+
+    public static class EnglishGreeting implements Greeting {
+    }
+
+    public static class ChineseGreeting implements Greeting {
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.smartretry.indexer;
+
+import org.kohsuke.MetaInfServices;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 编译期生成重试方法的索引文件META-INF/smart-retry.index，启动时RetryAnnotationBeanPostProcessor只需要查索引，不需要反射扫描每一个bean的方法
+ * <p>
+ * 索引文件是Properties格式，key是类的全名，value是逗号分隔的@RetryFunction方法：方法名(参数类型)，多个参数类型用分号分隔，如：payOrder(java.lang.Long)。
+ * RetryHandler的实现类不需要索引，启动时直接按照类型判断
+ * 使用的时候，把retry-indexer加到编译期的依赖里面（optional或者provided）即可
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+@MetaInfServices(Processor.class)
+@SupportedAnnotationTypes("*")
+public class RetryIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_LOCATION = "META-INF/smart-retry.index";
+
+    public static final String RETRY_FUNCTION = "com.github.smartretry.core.RetryFunction";
+
+    private final Map<String, Set<String>> entries = new TreeMap<>();
+
+    /**
+     * 本次编译经过processor的所有类
+     */
+    private final Set<String> processedTypes = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            addProcessedType(type);
+        }
+        TypeElement retryFunction = processingEnv.getElementUtils().getTypeElement(RETRY_FUNCTION);
+        if (retryFunction != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(retryFunction)) {
+                if (element.getKind() == ElementKind.METHOD) {
+                    ExecutableElement method = (ExecutableElement) element;
+                    TypeElement type = (TypeElement) method.getEnclosingElement();
+                    addEntry(type, getMethodEntry(method));
+                }
+            }
+        }
+        return false;
+    }
+
+    private void addProcessedType(TypeElement type) {
+        processedTypes.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+        for (TypeElement memberType : ElementFilter.typesIn(type.getEnclosedElements())) {
+            addProcessedType(memberType);
+        }
+    }
+
+    private String getMethodEntry(ExecutableElement method) {
+        StringJoiner parameterTypes = new StringJoiner(";", method.getSimpleName() + "(", ")");
+        for (VariableElement parameter : method.getParameters()) {
+            parameterTypes.add(processingEnv.getTypeUtils().erasure(parameter.asType()).toString());
+        }
+        return parameterTypes.toString();
+    }
+
+    private void addEntry(TypeElement type, String entry) {
+        entries.computeIfAbsent(processingEnv.getElementUtils().getBinaryName(type).toString(), key -> new TreeSet<>()).add(entry);
+    }
+
+    private void writeIndex() {
+        Properties index = new Properties();
+        //增量编译时，只有修改过的类会经过processor，保留之前的索引里面仍然存在的类
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+            try (InputStream inputStream = existing.openInputStream()) {
+                index.load(inputStream);
+            }
+            index.keySet().removeIf(className -> processedTypes.contains(className) || processingEnv.getElementUtils().getTypeElement(((String) className).replace('$', '.')) == null);
+        } catch (IOException | IllegalArgumentException e) {
+            //没有之前的索引
+        }
+        entries.forEach((className, classEntries) -> index.setProperty(className, String.join(",", classEntries)));
+        if (index.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject fileObject = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+            try (OutputStream outputStream = fileObject.openOutputStream()) {
+                index.store(outputStream, "Generated by smart-retry retry-indexer");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "写入" + INDEX_LOCATION + "失败：" + e.getMessage());
+        }
+    }
+}
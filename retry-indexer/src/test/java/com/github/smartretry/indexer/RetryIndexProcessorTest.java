@@ -0,0 +1,106 @@
+package com.github.smartretry.indexer;
+
+import com.github.smartretry.core.RetryFunction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetryIndexProcessorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testIndex() throws IOException {
+        File outputDir = temporaryFolder.newFolder();
+        compile(outputDir,
+                source("demo.OrderService", "package demo;\n"
+                        + "import com.github.smartretry.core.RetryFunction;\n"
+                        + "public class OrderService {\n"
+                        + "    @RetryFunction public void payOrder(Long orderId) {}\n"
+                        + "    @RetryFunction public void createOrder(java.util.List<String> items, int count) {}\n"
+                        + "    public void cancelOrder(Long orderId) {}\n"
+                        + "    public static class Inner {\n"
+                        + "        @RetryFunction public void refund() {}\n"
+                        + "    }\n"
+                        + "}\n"),
+                source("demo.OrderRetryHandler", "package demo;\n"
+                        + "public class OrderRetryHandler implements com.github.smartretry.core.RetryHandler<Object, Object> {\n"
+                        + "    public String identity() { return \"order\"; }\n"
+                        + "    public Object handle(Object arg) { return null; }\n"
+                        + "}\n"));
+
+        Properties index = loadIndex(outputDir);
+        assertThat(index).hasSize(2);
+        assertThat(index.getProperty("demo.OrderService")).isEqualTo("createOrder(java.util.List;int),payOrder(java.lang.Long)");
+        //内部类使用二进制名称，RetryHandler的实现类不写入索引
+        assertThat(index.getProperty("demo.OrderService$Inner")).isEqualTo("refund()");
+    }
+
+    @Test
+    public void testIncrementalIndex() throws IOException {
+        File outputDir = temporaryFolder.newFolder();
+        compile(outputDir,
+                source("demo.OrderService", "package demo;\n"
+                        + "public class OrderService {\n"
+                        + "    @com.github.smartretry.core.RetryFunction public void payOrder(Long orderId) {}\n"
+                        + "}\n"),
+                source("demo.UserService", "package demo;\n"
+                        + "public class UserService {\n"
+                        + "    @com.github.smartretry.core.RetryFunction public void register(String userId) {}\n"
+                        + "}\n"));
+
+        //只重新编译OrderService，去掉了@RetryFunction方法
+        compile(outputDir, source("demo.OrderService", "package demo;\n"
+                + "public class OrderService {\n"
+                + "    public void payOrder(Long orderId) {}\n"
+                + "}\n"));
+
+        Properties index = loadIndex(outputDir);
+        assertThat(index).hasSize(1);
+        assertThat(index.getProperty("demo.UserService")).isEqualTo("register(java.lang.String)");
+    }
+
+    private void compile(File outputDir, JavaFileObject... sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        String classpath = new File(RetryFunction.class.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath()
+                + File.pathSeparator + outputDir.getPath();
+        List<String> options = Arrays.asList("-d", outputDir.getPath(), "-classpath", classpath);
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null, options, null, Arrays.asList(sources));
+        task.setProcessors(Collections.singletonList(new RetryIndexProcessor()));
+        assertThat(task.call()).isTrue();
+    }
+
+    private Properties loadIndex(File outputDir) throws IOException {
+        Properties index = new Properties();
+        try (InputStream inputStream = new FileInputStream(new File(outputDir, RetryIndexProcessor.INDEX_LOCATION))) {
+            index.load(inputStream);
+        }
+        return index;
+    }
+
+    private JavaFileObject source(String className, String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
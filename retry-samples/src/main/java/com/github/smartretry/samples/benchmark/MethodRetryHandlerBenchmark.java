@@ -0,0 +1,92 @@
+package com.github.smartretry.samples.benchmark;
+
+import com.github.smartretry.core.RetryFunction;
+import com.github.smartretry.core.impl.MethodRetryHandler;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比@RetryFunction方法通过反射调用和通过MethodRetryHandler调用的耗时
+ * <p>
+ * 系统中一般有多个@RetryFunction方法，所以轮流调用多个方法，避免调用点只有一个方法时JIT的过度优化
+ * <p>
+ * 运行：java -cp retry-samples.jar -Dloader.main=com.github.smartretry.samples.benchmark.MethodRetryHandlerBenchmark org.springframework.boot.loader.PropertiesLauncher 10000000
+ */
+public class MethodRetryHandlerBenchmark {
+
+    private static final int ROUNDS = 4;
+
+    private long sum;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        MethodRetryHandlerBenchmark target = new MethodRetryHandlerBenchmark();
+        Method[] methods = new Method[]{
+                MethodRetryHandlerBenchmark.class.getMethod("payOrder", Long.class),
+                MethodRetryHandlerBenchmark.class.getMethod("cancelOrder", Long.class),
+                MethodRetryHandlerBenchmark.class.getMethod("refundOrder", Long.class),
+                MethodRetryHandlerBenchmark.class.getMethod("queryOrder", Long.class)
+        };
+        MethodRetryHandler[] methodRetryHandlers = new MethodRetryHandler[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            methodRetryHandlers[i] = new MethodRetryHandler(target, methods[i], methods[i].getAnnotation(RetryFunction.class), () -> null);
+        }
+
+        for (int round = 0; round <= ROUNDS; round++) {
+            //第0轮作为预热
+            long reflect = reflect(target, methods, iterations);
+            long invoker = invoke(methodRetryHandlers, iterations);
+            if (round > 0) {
+                System.out.printf("第%d轮，%d次调用：Method.invoke %dms，MethodRetryHandler %dms%n", round, iterations, reflect, invoker);
+            }
+        }
+        System.out.println(target.sum);
+    }
+
+    /**
+     * 和之前的MethodRetryHandler.handle一样的反射调用方式
+     */
+    private static long reflect(Object target, Method[] methods, int iterations) throws IllegalAccessException {
+        long start = System.nanoTime();
+        for (long i = 0; i < iterations; i++) {
+            Method method = methods[(int) (i & 3)];
+            try {
+                Object result = method.getParameterCount() > 0 ? method.invoke(target, i) : method.invoke(target);
+            } catch (InvocationTargetException e) {
+                throw new IllegalArgumentException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static long invoke(MethodRetryHandler[] methodRetryHandlers, int iterations) {
+        long start = System.nanoTime();
+        for (long i = 0; i < iterations; i++) {
+            methodRetryHandlers[(int) (i & 3)].handle(i);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @RetryFunction(identity = "benchmark.payOrder")
+    public void payOrder(Long orderId) {
+        sum += orderId;
+    }
+
+    @RetryFunction(identity = "benchmark.cancelOrder")
+    public void cancelOrder(Long orderId) {
+        sum -= orderId;
+    }
+
+    @RetryFunction(identity = "benchmark.refundOrder")
+    public Long refundOrder(Long orderId) {
+        sum += 1;
+        return orderId;
+    }
+
+    @RetryFunction(identity = "benchmark.queryOrder")
+    public boolean queryOrder(Long orderId) {
+        return orderId > sum;
+    }
+}
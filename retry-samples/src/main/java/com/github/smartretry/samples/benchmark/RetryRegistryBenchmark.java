@@ -0,0 +1,73 @@
+package com.github.smartretry.samples.benchmark;
+
+import com.github.smartretry.core.RetryHandler;
+import com.github.smartretry.core.RetryRegistry;
+import com.github.smartretry.spring4.registry.quartz.QuartzRetryRegistry;
+import com.github.smartretry.spring4.registry.wheel.TimingWheelRetryRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.Lifecycle;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比QuartzRetryRegistry和TimingWheelRetryRegistry注册大量identity时的启动耗时和线程数量
+ * <p>
+ * 运行：java -cp retry-samples.jar -Dloader.main=com.github.smartretry.samples.benchmark.RetryRegistryBenchmark org.springframework.boot.loader.PropertiesLauncher 1000
+ */
+public class RetryRegistryBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int identities = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        benchmark(TimingWheelRetryRegistry.class, identities);
+        benchmark(QuartzRetryRegistry.class, identities);
+    }
+
+    private static void benchmark(Class<? extends RetryRegistry> registryClass, int identities) throws InterruptedException {
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long start = System.nanoTime();
+
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", Collections.singletonMap(QuartzRetryRegistry.RETRY_JOB_STARTUPDELAY, 0)));
+        context.registerBeanDefinition("retryRegistry", new RootBeanDefinition(registryClass));
+        context.refresh();
+
+        RetryRegistry retryRegistry = context.getBean(RetryRegistry.class);
+        for (int i = 0; i < identities; i++) {
+            retryRegistry.register(new BenchmarkRetryHandler("benchmark.identity." + i), () -> {
+            });
+        }
+        //Quartz的Scheduler是Lifecycle，注册完之后需要启动
+        context.getBeansOfType(Lifecycle.class).values().stream().filter(lifecycle -> !lifecycle.isRunning()).forEach(Lifecycle::start);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        TimeUnit.SECONDS.sleep(1);
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+        System.out.printf("%s: %d个identity，启动耗时%dms，新增线程%d个%n", registryClass.getSimpleName(), identities, elapsed, threads);
+
+        context.close();
+        TimeUnit.SECONDS.sleep(1);
+    }
+
+    private static class BenchmarkRetryHandler implements RetryHandler<String, Void> {
+
+        private final String identity;
+
+        BenchmarkRetryHandler(String identity) {
+            this.identity = identity;
+        }
+
+        @Override
+        public String identity() {
+            return identity;
+        }
+
+        @Override
+        public Void handle(String arg) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.smartretry.serializer.binary;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.smartretry.core.RetrySerializer;
+import org.kohsuke.MetaInfServices;
+
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * 使用Smile（二进制的JSON）序列化参数，字段名只写一次，数字按照二进制写入，比JSON文本更小，解析更快
+ * <p>
+ * Smile数据以":)\n"开头，以此区分Smile和JSON，所以之前以JSON保存的参数仍然可以反序列化：
+ * <ul>
+ * <li>retry.params.binary=true时，直接保存Smile的字节</li>
+ * <li>params是文本字段时，保存Base64编码之后的Smile，以"OikK"（":)\n"的Base64编码）开头</li>
+ * </ul>
+ * classpath下同时有多个RetrySerializer时，需要配置retry.params.serializer=com.github.smartretry.serializer.binary.SmileRetrySerializer
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+@MetaInfServices(RetrySerializer.class)
+public class SmileRetrySerializer implements RetrySerializer {
+
+    private static final byte[] SMILE_HEADER = new byte[]{':', ')', '\n'};
+
+    private static final String BASE64_SMILE_HEADER = "OikK";
+
+    private static final ObjectMapper SMILE = newObjectMapper(new SmileFactory());
+
+    /**
+     * 反序列化之前以JSON保存的参数
+     */
+    private static final ObjectMapper JSON = newObjectMapper(new JsonFactory());
+
+    private static ObjectMapper newObjectMapper(JsonFactory jsonFactory) {
+        ObjectMapper mapper = new ObjectMapper(jsonFactory);
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return mapper;
+    }
+
+    @Override
+    public String serialize(Object object) {
+        return Base64.getEncoder().encodeToString(serializeToBytes(object));
+    }
+
+    @Override
+    public Object deserialize(String value, Class<?> clazz) {
+        try {
+            if (value.startsWith(BASE64_SMILE_HEADER)) {
+                return SMILE.readValue(Base64.getDecoder().decode(value), clazz);
+            }
+            return JSON.readValue(value, clazz);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte[] serializeToBytes(Object object) {
+        try {
+            return SMILE.writeValueAsBytes(object);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] value, Class<?> clazz) {
+        try {
+            return (isSmile(value, value.length) ? SMILE : JSON).readValue(value, clazz);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private static boolean isSmile(byte[] value, int length) {
+        if (length < SMILE_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < SMILE_HEADER.length; i++) {
+            if (value[i] != SMILE_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
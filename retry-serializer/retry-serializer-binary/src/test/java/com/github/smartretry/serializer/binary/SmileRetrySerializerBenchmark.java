@@ -0,0 +1,110 @@
+package com.github.smartretry.serializer.binary;
+
+import com.github.smartretry.core.RetrySerializer;
+import com.github.smartretry.jackson2.Jackson2JsonRetrySerializer;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比Jackson2JsonRetrySerializer和SmileRetrySerializer序列化之后的大小，以及序列化、反序列化的耗时
+ * <p>
+ * 参数是一个包含很多数字字段的订单，序列化之后的JSON大约70KB
+ */
+public class SmileRetrySerializerBenchmark {
+
+    private static final int ROUNDS = 4;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Order order = newOrder(600);
+        RetrySerializer json = new Jackson2JsonRetrySerializer();
+        RetrySerializer smile = new SmileRetrySerializer();
+
+        System.out.printf("JSON %d字节，Smile %d字节，Smile(Base64) %d字节%n",
+                json.serialize(order).getBytes(StandardCharsets.UTF_8).length, smile.serializeToBytes(order).length, smile.serialize(order).length());
+
+        for (int round = 0; round <= ROUNDS; round++) {
+            //第0轮作为预热
+            long jsonString = string(json, order, iterations);
+            long jsonBytes = bytes(json, order, iterations);
+            long smileString = string(smile, order, iterations);
+            long smileBytes = bytes(smile, order, iterations);
+            if (round > 0) {
+                System.out.printf("第%d轮，%d次序列化+反序列化：JSON(String) %dms，JSON(byte[]) %dms，Smile(Base64) %dms，Smile(byte[]) %dms%n",
+                        round, iterations, jsonString, jsonBytes, smileString, smileBytes);
+            }
+        }
+    }
+
+    private static long string(RetrySerializer retrySerializer, Order order, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            retrySerializer.deserialize(retrySerializer.serialize(order), Order.class);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static long bytes(RetrySerializer retrySerializer, Order order, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            retrySerializer.deserialize(retrySerializer.serializeToBytes(order), Order.class);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static Order newOrder(int itemCount) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Order order = new Order();
+        order.setOrderId(random.nextLong(1L << 40));
+        order.setUserId(random.nextLong(1L << 32));
+        order.setStatus(1);
+        order.setItems(new ArrayList<>(itemCount));
+        for (int i = 0; i < itemCount; i++) {
+            OrderItem item = new OrderItem();
+            item.setSkuId(random.nextLong(1L << 40));
+            item.setQuantity(random.nextInt(1, 100));
+            item.setPrice(random.nextInt(100, 1000000) / 100.0);
+            item.setDiscount(random.nextInt(0, 10000) / 100.0);
+            item.setWarehouseId(random.nextInt(1, 500));
+            item.setCreateTime(System.currentTimeMillis() - random.nextLong(TimeUnit.DAYS.toMillis(30)));
+            order.getItems().add(item);
+        }
+        return order;
+    }
+
+    @Getter
+    @Setter
+    public static class Order {
+
+        private long orderId;
+
+        private long userId;
+
+        private int status;
+
+        private List<OrderItem> items;
+    }
+
+    @Getter
+    @Setter
+    public static class OrderItem {
+
+        private long skuId;
+
+        private int quantity;
+
+        private double price;
+
+        private double discount;
+
+        private int warehouseId;
+
+        private long createTime;
+    }
+}
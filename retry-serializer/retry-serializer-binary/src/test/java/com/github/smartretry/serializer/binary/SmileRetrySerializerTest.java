@@ -0,0 +1,77 @@
+package com.github.smartretry.serializer.binary;
+
+import com.github.smartretry.core.RetrySerializer;
+import com.github.smartretry.jackson2.Jackson2JsonRetrySerializer;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SmileRetrySerializerTest {
+
+    private RetrySerializer retrySerializer = new SmileRetrySerializer();
+
+    @Test
+    public void testSerialize() {
+        String value = retrySerializer.serialize(newOrder());
+        assertOrder((Order) retrySerializer.deserialize(value, Order.class));
+    }
+
+    @Test
+    public void testSerializeToBytes() {
+        byte[] value = retrySerializer.serializeToBytes(newOrder());
+        assertOrder((Order) retrySerializer.deserialize(value, Order.class));
+    }
+
+    @Test
+    public void testDeserializeJsonBytes() {
+        byte[] value = "{\"orderId\":1001,\"userName\":\"张三\",\"items\":[\"a\",\"b\"]}".getBytes(StandardCharsets.UTF_8);
+        assertOrder((Order) retrySerializer.deserialize(value, Order.class));
+    }
+
+    @Test
+    public void testSmileHeader() {
+        //Smile以":)\n"开头，保存为文本时是Base64编码，以"OikK"开头
+        assertThat(retrySerializer.serializeToBytes(newOrder())).startsWith(':', ')', '\n');
+        assertThat(retrySerializer.serialize(newOrder())).startsWith("OikK");
+    }
+
+    @Test
+    public void testDeserializeLegacyJson() {
+        //之前使用Jackson2JsonRetrySerializer以JSON保存的参数
+        RetrySerializer jsonRetrySerializer = new Jackson2JsonRetrySerializer();
+        assertOrder((Order) retrySerializer.deserialize(jsonRetrySerializer.serialize(newOrder()), Order.class));
+        assertOrder((Order) retrySerializer.deserialize(jsonRetrySerializer.serializeToBytes(newOrder()), Order.class));
+        assertThat(retrySerializer.deserialize("null", Order.class)).isNull();
+    }
+
+    private Order newOrder() {
+        Order order = new Order();
+        order.setOrderId(1001L);
+        order.setUserName("张三");
+        order.setItems(Arrays.asList("a", "b"));
+        return order;
+    }
+
+    private void assertOrder(Order order) {
+        assertThat(order.getOrderId()).isEqualTo(1001L);
+        assertThat(order.getUserName()).isEqualTo("张三");
+        assertThat(order.getItems()).containsExactly("a", "b");
+    }
+
+    @Getter
+    @Setter
+    public static class Order {
+
+        private Long orderId;
+
+        private String userName;
+
+        private List<String> items;
+    }
+}
@@ -19,4 +19,14 @@ public class FastjsonJsonRetrySerializer implements RetrySerializer {
     public Object deserialize(String value, Class<?> clazz) {
         return JSON.parseObject(value, clazz);
     }
+
+    @Override
+    public byte[] serializeToBytes(Object object) {
+        return JSON.toJSONBytes(object);
+    }
+
+    @Override
+    public Object deserialize(byte[] value, Class<?> clazz) {
+        return JSON.parseObject(value, clazz);
+    }
 }
\ No newline at end of file
@@ -4,6 +4,10 @@ import com.github.smartretry.core.RetrySerializer;
 import com.google.gson.Gson;
 import org.kohsuke.MetaInfServices;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
 /**
  * @author yuni[mn960mn@163.com]
  */
@@ -21,4 +25,9 @@ public class GsonJsonRetrySerializer implements RetrySerializer {
     public Object deserialize(String value, Class<?> clazz) {
         return gson.fromJson(value, clazz);
     }
+
+    @Override
+    public Object deserialize(byte[] value, Class<?> clazz) {
+        return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(value), StandardCharsets.UTF_8), clazz);
+    }
 }
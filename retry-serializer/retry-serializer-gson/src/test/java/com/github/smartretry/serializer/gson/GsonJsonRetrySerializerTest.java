@@ -0,0 +1,60 @@
+package com.github.smartretry.serializer.gson;
+
+import com.github.smartretry.core.RetrySerializer;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GsonJsonRetrySerializerTest {
+
+    private RetrySerializer retrySerializer = new GsonJsonRetrySerializer();
+
+    @Test
+    public void testSerialize() {
+        String value = retrySerializer.serialize(newOrder());
+        assertOrder((Order) retrySerializer.deserialize(value, Order.class));
+    }
+
+    @Test
+    public void testSerializeToBytes() {
+        byte[] value = retrySerializer.serializeToBytes(newOrder());
+        assertOrder((Order) retrySerializer.deserialize(value, Order.class));
+    }
+
+    @Test
+    public void testDeserializeJsonBytes() {
+        byte[] value = "{\"orderId\":1001,\"userName\":\"张三\",\"items\":[\"a\",\"b\"]}".getBytes(StandardCharsets.UTF_8);
+        assertOrder((Order) retrySerializer.deserialize(value, Order.class));
+    }
+
+    private Order newOrder() {
+        Order order = new Order();
+        order.setOrderId(1001L);
+        order.setUserName("张三");
+        order.setItems(Arrays.asList("a", "b"));
+        return order;
+    }
+
+    private void assertOrder(Order order) {
+        assertThat(order.getOrderId()).isEqualTo(1001L);
+        assertThat(order.getUserName()).isEqualTo("张三");
+        assertThat(order.getItems()).containsExactly("a", "b");
+    }
+
+    @Getter
+    @Setter
+    public static class Order {
+
+        private Long orderId;
+
+        private String userName;
+
+        private List<String> items;
+    }
+}
@@ -3,19 +3,46 @@ package com.github.smartretry.jackson2;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.github.smartretry.core.RetrySerializer;
 import org.kohsuke.MetaInfServices;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * 每个参数类型的ObjectReader、ObjectWriter在第一次使用的时候创建并缓存，不需要每次都查找类型对应的序列化器
+ * <p>
+ * 默认的ObjectMapper不注册额外的模块。可以通过构造方法传入系统中已经配置好的ObjectMapper，
+ * 或者传入registerOptionalModule之后的ObjectMapper，使用classpath下的jackson-module-blackbird或者jackson-module-afterburner（优先使用blackbird）
+ *
  * @author yuni[mn960mn@163.com]
  */
 @MetaInfServices(RetrySerializer.class)
 public class Jackson2JsonRetrySerializer implements RetrySerializer {
 
-    private static final ObjectMapper INSTANCE = newObjectMapper(JsonInclude.Include.NON_NULL);
+    private static final String[] OPTIONAL_MODULES = new String[]{
+            "com.fasterxml.jackson.module.blackbird.BlackbirdModule",
+            "com.fasterxml.jackson.module.afterburner.AfterburnerModule"
+    };
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public Jackson2JsonRetrySerializer() {
+        this(newObjectMapper(JsonInclude.Include.NON_NULL));
+    }
+
+    public Jackson2JsonRetrySerializer(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
 
     public static ObjectMapper newObjectMapper(JsonInclude.Include include) {
         ObjectMapper mapper = new ObjectMapper();
@@ -28,10 +55,38 @@ public class Jackson2JsonRetrySerializer implements RetrySerializer {
         return mapper;
     }
 
+    /**
+     * 注册classpath下的第一个可用的blackbird或者afterburner模块
+     */
+    public static ObjectMapper registerOptionalModule(ObjectMapper mapper) {
+        for (String moduleClassName : OPTIONAL_MODULES) {
+            try {
+                Class<?> moduleClass = Class.forName(moduleClassName, true, Jackson2JsonRetrySerializer.class.getClassLoader());
+                return mapper.registerModule((Module) moduleClass.getDeclaredConstructor().newInstance());
+            } catch (ClassNotFoundException | LinkageError e) {
+                //没有这个模块，或者和当前的jackson版本不兼容
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("无法创建" + moduleClassName, e);
+            }
+        }
+        return mapper;
+    }
+
+    private ObjectReader getReader(Class<?> clazz) {
+        return readers.computeIfAbsent(clazz, key -> objectMapper.readerFor(key));
+    }
+
+    private ObjectWriter getWriter(Object object) {
+        if (object == null) {
+            return objectMapper.writer();
+        }
+        return writers.computeIfAbsent(object.getClass(), key -> objectMapper.writerFor(key));
+    }
+
     @Override
     public String serialize(Object object) {
         try {
-            return INSTANCE.writeValueAsString(object);
+            return getWriter(object).writeValueAsString(object);
         } catch (JsonProcessingException e) {
             throw new IllegalArgumentException(e.getMessage(), e);
         }
@@ -40,9 +95,27 @@ public class Jackson2JsonRetrySerializer implements RetrySerializer {
     @Override
     public Object deserialize(String value, Class<?> clazz) {
         try {
-            return INSTANCE.readValue(value, clazz);
+            return getReader(clazz).readValue(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte[] serializeToBytes(Object object) {
+        try {
+            return getWriter(object).writeValueAsBytes(object);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] value, Class<?> clazz) {
+        try {
+            return getReader(clazz).readValue(value);
         } catch (IOException e) {
             throw new IllegalArgumentException(e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,109 @@
+package com.github.smartretry.jackson2;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.github.smartretry.core.RetrySerializer;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比每次调用ObjectMapper.readValue(value, clazz)（之前的实现）、缓存ObjectReader/ObjectWriter、缓存之后再加上afterburner的耗时
+ * <p>
+ * 模拟一次重试：序列化一个订单，再反序列化
+ */
+public class Jackson2JsonRetrySerializerBenchmark {
+
+    private static final int ROUNDS = 4;
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        Order order = newOrder(20);
+        ObjectMapper objectMapper = Jackson2JsonRetrySerializer.newObjectMapper(JsonInclude.Include.NON_NULL);
+        RetrySerializer cached = new Jackson2JsonRetrySerializer(Jackson2JsonRetrySerializer.newObjectMapper(JsonInclude.Include.NON_NULL));
+        RetrySerializer afterburner = new Jackson2JsonRetrySerializer(Jackson2JsonRetrySerializer.newObjectMapper(JsonInclude.Include.NON_NULL).registerModule(new AfterburnerModule()));
+
+        for (int round = 0; round <= ROUNDS; round++) {
+            //第0轮作为预热
+            long objectMapperMillis = objectMapper(objectMapper, order, iterations);
+            long cachedMillis = serializer(cached, order, iterations);
+            long afterburnerMillis = serializer(afterburner, order, iterations);
+            if (round > 0) {
+                System.out.printf("第%d轮，%d次序列化+反序列化：ObjectMapper %dms，缓存ObjectReader/ObjectWriter %dms，缓存+afterburner %dms%n",
+                        round, iterations, objectMapperMillis, cachedMillis, afterburnerMillis);
+            }
+        }
+    }
+
+    private static long objectMapper(ObjectMapper objectMapper, Order order, int iterations) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            objectMapper.readValue(objectMapper.writeValueAsString(order), Order.class);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static long serializer(RetrySerializer retrySerializer, Order order, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            retrySerializer.deserialize(retrySerializer.serialize(order), Order.class);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static Order newOrder(int itemCount) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Order order = new Order();
+        order.setOrderId(random.nextLong(1L << 40));
+        order.setUserId(random.nextLong(1L << 32));
+        order.setStatus(1);
+        order.setRemark("order-" + order.getOrderId());
+        order.setItems(new ArrayList<>(itemCount));
+        for (int i = 0; i < itemCount; i++) {
+            OrderItem item = new OrderItem();
+            item.setSkuId(random.nextLong(1L << 40));
+            item.setSkuName("sku-" + item.getSkuId());
+            item.setQuantity(random.nextInt(1, 100));
+            item.setPrice(random.nextInt(100, 1000000) / 100.0);
+            item.setCreateTime(System.currentTimeMillis() - random.nextLong(TimeUnit.DAYS.toMillis(30)));
+            order.getItems().add(item);
+        }
+        return order;
+    }
+
+    @Getter
+    @Setter
+    public static class Order {
+
+        private long orderId;
+
+        private long userId;
+
+        private int status;
+
+        private String remark;
+
+        private List<OrderItem> items;
+    }
+
+    @Getter
+    @Setter
+    public static class OrderItem {
+
+        private long skuId;
+
+        private String skuName;
+
+        private int quantity;
+
+        private double price;
+
+        private long createTime;
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.smartretry.jackson2;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.github.smartretry.core.RetrySerializer;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Jackson2JsonRetrySerializerTest {
+
+    private RetrySerializer retrySerializer = new Jackson2JsonRetrySerializer();
+
+    @Test
+    public void testSerialize() {
+        String value = retrySerializer.serialize(newOrder());
+        assertOrder((Order) retrySerializer.deserialize(value, Order.class));
+    }
+
+    @Test
+    public void testSerializeToBytes() {
+        byte[] value = retrySerializer.serializeToBytes(newOrder());
+        assertOrder((Order) retrySerializer.deserialize(value, Order.class));
+    }
+
+    @Test
+    public void testDeserializeJsonBytes() {
+        byte[] value = "{\"orderId\":1001,\"userName\":\"张三\",\"items\":[\"a\",\"b\"]}".getBytes(StandardCharsets.UTF_8);
+        assertOrder((Order) retrySerializer.deserialize(value, Order.class));
+    }
+
+    @Test
+    public void testInjectedObjectMapper() {
+        ObjectMapper objectMapper = Jackson2JsonRetrySerializer.newObjectMapper(JsonInclude.Include.NON_NULL);
+        objectMapper.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
+        RetrySerializer snakeCaseRetrySerializer = new Jackson2JsonRetrySerializer(objectMapper);
+
+        String value = snakeCaseRetrySerializer.serialize(newOrder());
+        assertThat(value).contains("\"order_id\":1001", "\"user_name\"");
+        assertOrder((Order) snakeCaseRetrySerializer.deserialize(value, Order.class));
+        assertOrder((Order) snakeCaseRetrySerializer.deserialize(snakeCaseRetrySerializer.serializeToBytes(newOrder()), Order.class));
+    }
+
+    @Test
+    public void testReaderWriterCache() {
+        AtomicInteger readers = new AtomicInteger();
+        AtomicInteger writers = new AtomicInteger();
+        ObjectMapper objectMapper = new ObjectMapper() {
+
+            @Override
+            public ObjectReader readerFor(Class<?> type) {
+                readers.incrementAndGet();
+                return super.readerFor(type);
+            }
+
+            @Override
+            public ObjectWriter writerFor(Class<?> rootType) {
+                writers.incrementAndGet();
+                return super.writerFor(rootType);
+            }
+        };
+        RetrySerializer cachedRetrySerializer = new Jackson2JsonRetrySerializer(objectMapper);
+        for (int i = 0; i < 3; i++) {
+            assertOrder((Order) cachedRetrySerializer.deserialize(cachedRetrySerializer.serialize(newOrder()), Order.class));
+            assertOrder((Order) cachedRetrySerializer.deserialize(cachedRetrySerializer.serializeToBytes(newOrder()), Order.class));
+        }
+        //每个类型只创建一次ObjectReader、ObjectWriter
+        assertThat(readers.get()).isEqualTo(1);
+        assertThat(writers.get()).isEqualTo(1);
+
+        cachedRetrySerializer.serialize(Collections.singletonMap("orderId", 1001L));
+        cachedRetrySerializer.deserialize("1001", Long.class);
+        assertThat(readers.get()).isEqualTo(2);
+        assertThat(writers.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRegisterOptionalModule() {
+        //默认不注册，需要的时候注册classpath下的afterburner
+        ObjectMapper objectMapper = Jackson2JsonRetrySerializer.newObjectMapper(JsonInclude.Include.NON_NULL);
+        assertThat(objectMapper.getRegisteredModuleIds()).isEmpty();
+        Jackson2JsonRetrySerializer.registerOptionalModule(objectMapper);
+        assertThat(objectMapper.getRegisteredModuleIds()).hasSize(1);
+
+        RetrySerializer afterburnerRetrySerializer = new Jackson2JsonRetrySerializer(objectMapper);
+        assertOrder((Order) afterburnerRetrySerializer.deserialize(afterburnerRetrySerializer.serialize(newOrder()), Order.class));
+    }
+
+    private Order newOrder() {
+        Order order = new Order();
+        order.setOrderId(1001L);
+        order.setUserName("张三");
+        order.setItems(Arrays.asList("a", "b"));
+        return order;
+    }
+
+    private void assertOrder(Order order) {
+        assertThat(order.getOrderId()).isEqualTo(1001L);
+        assertThat(order.getUserName()).isEqualTo("张三");
+        assertThat(order.getItems()).containsExactly("a", "b");
+    }
+
+    @Getter
+    @Setter
+    public static class Order {
+
+        private Long orderId;
+
+        private String userName;
+
+        private List<String> items;
+    }
+}
@@ -16,4 +16,9 @@ public class BeanConstants {
      * 自定义retry quartz job线程池的bean名称
      */
     public static final String DEFAULT_RETRY_TASKEXECUTOR = "defaultRetryTaskExecutor";
+
+    /**
+     * 自定义参数序列化使用的ObjectMapper的bean名称，没有RetrySerializer的bean时，使用这个ObjectMapper创建Jackson2JsonRetrySerializer
+     */
+    public static final String RETRY_OBJECTMAPPER = "retryObjectMapper";
 }
\ No newline at end of file
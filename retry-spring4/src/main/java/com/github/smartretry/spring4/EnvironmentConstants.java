@@ -14,4 +14,76 @@ public class EnvironmentConstants {
     public static final String RETRY_SQLMAPPING_FILEPATH_KEY = "retry.sqlMapping.filepath";
 
     public static final String RETRY_BEFORETASK = "retry.beforeTask";
+
+    public static final String RETRY_BEFORETASK_ASYNC = "retry.beforeTask.async";
+
+    public static final String RETRY_BEFORETASK_ASYNC_FLUSHINTERVAL = "retry.beforeTask.async.flushInterval";
+
+    public static final String RETRY_BEFORETASK_ASYNC_QUEUESIZE = "retry.beforeTask.async.queueSize";
+
+    public static final String RETRY_QUERY_PAGESIZE = "retry.query.pageSize";
+
+    public static final String RETRY_NEXTRETRYDATE_ENABLED = "retry.nextRetryDate.enabled";
+
+    public static final String RETRY_CLAIM_ENABLED = "retry.claim.enabled";
+
+    public static final String RETRY_CLAIM_OWNER = "retry.claim.owner";
+
+    public static final String RETRY_CLAIM_LEASESECONDS = "retry.claim.leaseSeconds";
+
+    public static final String RETRY_DELETEONSUCCESS = "retry.deleteOnSuccess";
+
+    public static final String RETRY_ARCHIVE_ENABLED = "retry.archive.enabled";
+
+    public static final String RETRY_ARCHIVE_PURGE = "retry.archive.purge";
+
+    public static final String RETRY_ARCHIVE_SUCCESS_RETENTIONDAYS = "retry.archive.success.retentionDays";
+
+    public static final String RETRY_ARCHIVE_EXCEPTION_RETENTIONDAYS = "retry.archive.exception.retentionDays";
+
+    public static final String RETRY_ARCHIVE_CHUNKSIZE = "retry.archive.chunkSize";
+
+    public static final String RETRY_ARCHIVE_CHUNKINTERVAL = "retry.archive.chunkInterval";
+
+    public static final String RETRY_ARCHIVE_INTERVAL = "retry.archive.interval";
+
+    public static final String RETRY_VIRTUALTHREADS_ENABLED = "retry.virtualThreads.enabled";
+
+    public static final String RETRY_QUARTZ_SHARED = "retry.quartz.shared";
+
+    public static final String RETRY_QUARTZ_THREADCOUNT = "retry.quartz.threadCount";
+
+    public static final String RETRY_REGISTRY = "retry.registry";
+
+    public static final String RETRY_WHEEL_TICKDURATION = "retry.wheel.tickDuration";
+
+    public static final String RETRY_WHEEL_THREADCOUNT = "retry.wheel.threadCount";
+
+    public static final String RETRY_LOCAL_ENABLED = "retry.local.enabled";
+
+    public static final String RETRY_LOCAL_DELAY = "retry.local.delay";
+
+    public static final String RETRY_LOCAL_MAXATTEMPTS = "retry.local.maxAttempts";
+
+    public static final String RETRY_LOCAL_THREADCOUNT = "retry.local.threadCount";
+
+    public static final String RETRY_LOCAL_QUEUESIZE = "retry.local.queueSize";
+
+    public static final String RETRY_INDEX_IGNORE = "retry.index.ignore";
+
+    public static final String RETRY_PARAMS_BINARY = "retry.params.binary";
+
+    public static final String RETRY_PARAMS_SERIALIZER = "retry.params.serializer";
+
+    public static final String RETRY_PARAMS_JACKSON2_OPTIONALMODULES = "retry.params.jackson2.optionalModules";
+
+    public static final String RETRY_PARAMS_COMPRESS_ENABLED = "retry.params.compress.enabled";
+
+    public static final String RETRY_PARAMS_COMPRESS_THRESHOLD = "retry.params.compress.threshold";
+
+    public static final String RETRY_PARAMS_COMPRESS_CODEC = "retry.params.compress.codec";
+
+    public static final String RETRY_PARAMS_COMPRESS_LEVEL = "retry.params.compress.level";
+
+    public static final String RETRY_PARAMS_COMPRESS_DECODECODECS = "retry.params.compress.decodeCodecs";
 }
\ No newline at end of file
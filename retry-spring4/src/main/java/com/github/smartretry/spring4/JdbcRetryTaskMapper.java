@@ -2,27 +2,47 @@ package com.github.smartretry.spring4;
 
 import com.github.smartretry.core.RetryTask;
 import com.github.smartretry.core.RetryTaskMapper;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
 
 import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 /**
  * @author yuni[mn960mn@163.com]
  */
+@Slf4j
 public class JdbcRetryTaskMapper extends JdbcTemplate implements RetryTaskMapper, EnvironmentAware {
 
     public static final String INSERT_SQL_KEY = "INSERT_SQL";
@@ -31,16 +51,115 @@ public class JdbcRetryTaskMapper extends JdbcTemplate implements RetryTaskMapper
 
     public static final String QUERY_NEEDRETRYTASK_LIST_SQL_KEY = "QUERY_NEEDRETRYTASK_LIST_SQL";
 
+    /**
+     * 检查表中是否有next_retry_at列，执行成功才使用next_retry_at，见 {@link #isNextRetryDateEnabled()}
+     */
+    public static final String CHECK_NEXTRETRYDATE_SQL_KEY = "CHECK_NEXTRETRYDATE_SQL";
+
+    /**
+     * 分页查询需要重试的任务。参数依次为：identity、retryCount、lastTaskId、pageSize
+     * <p>
+     * 以下查询SQL在没有开启nextRetryDate时（旧的表结构），retryCount之后多一个参数：当前时间减去initialDelay（create_date不晚于这个时间的任务才需要重试）
+     */
+    public static final String QUERY_NEEDRETRYTASK_PAGE_SQL_KEY = "QUERY_NEEDRETRYTASK_PAGE_SQL";
+
+    /**
+     * 分页查询一个分片中需要重试的任务。参数依次为：identity、retryCount、shardingTotalCount、shardingItem、lastTaskId、pageSize
+     */
+    public static final String QUERY_NEEDRETRYTASK_SHARDING_SQL_KEY = "QUERY_NEEDRETRYTASK_SHARDING_SQL";
+
+    /**
+     * 抢占需要重试的任务，需要对查询出来的行加锁并跳过其他节点已经加锁的行。参数依次为：identity、retryCount、lastTaskId、pageSize
+     */
+    public static final String CLAIM_NEEDRETRYTASK_LIST_SQL_KEY = "CLAIM_NEEDRETRYTASK_LIST_SQL";
+
+    /**
+     * 更新任务的占用信息。参数依次为：owner、leaseSeconds、taskId
+     */
+    public static final String UPDATE_LEASE_SQL_KEY = "UPDATE_LEASE_SQL";
+
+    /**
+     * 释放没有开始重试的任务的占用信息。参数依次为：taskId、owner
+     */
+    public static final String RELEASE_CLAIM_SQL_KEY = "RELEASE_CLAIM_SQL";
+
+    /**
+     * 开启抢占时更新任务，同时释放占用，失败的任务不需要等占用过期就可以被再次重试。参数同UPDATE_SQL
+     */
+    public static final String UPDATE_CLAIMED_SQL_KEY = "UPDATE_CLAIMED_SQL";
+
+    /**
+     * 根据taskId删除任务，retry.deleteOnSuccess=true时用于删除执行成功的任务。参数为：taskId
+     */
+    public static final String DELETE_SQL_KEY = "DELETE_SQL";
+
+    /**
+     * 查询数据库的当前时间，归档时根据数据库的时间计算editDate，避免应用服务器和数据库的时钟不一致。没有参数
+     */
+    public static final String QUERY_CURRENT_TIMESTAMP_SQL_KEY = "QUERY_CURRENT_TIMESTAMP_SQL";
+
+    /**
+     * 按照taskId升序查询一批需要归档的任务的taskId。参数依次为：status、editDate、lastTaskId、limit
+     */
+    public static final String QUERY_ARCHIVE_TASKID_LIST_SQL_KEY = "QUERY_ARCHIVE_TASKID_LIST_SQL";
+
+    /**
+     * 把一批任务复制到归档表。参数依次为：status、editDate、起始taskId（不包含）、结束taskId（包含）
+     */
+    public static final String INSERT_ARCHIVE_SQL_KEY = "INSERT_ARCHIVE_SQL";
+
+    /**
+     * 删除一批已经归档的任务。参数依次为：status、editDate、起始taskId（不包含）、结束taskId（包含）
+     */
+    public static final String DELETE_ARCHIVE_SQL_KEY = "DELETE_ARCHIVE_SQL";
+
     public static final String PRIMARY_KEY_KEY = "PRIMARY_KEY";
 
+    /**
+     * 数据库驱动是否支持批量插入之后通过getGeneratedKeys获取全部主键
+     */
+    public static final String INSERT_BATCH_ENABLED_KEY = "INSERT_BATCH_ENABLED";
+
+    private static final String SQLMAPPING_DIRECTORY = "META-INF/sqlprops/";
+
     private String primaryKeyKey;
 
+    private boolean insertBatchEnabled;
+
+    /**
+     * 执行成功的任务直接删除，而不是更新状态
+     */
+    private boolean deleteOnSuccess;
+
+    /**
+     * params字段是二进制类型，参数通过setBinaryStream、getBinaryStream读写
+     */
+    private boolean paramsBinary;
+
+    /**
+     * 表中是否有next_retry_at列
+     */
+    private boolean nextRetryDateEnabled;
+
+    /**
+     * 更新任务的SQL，开启抢占时为UPDATE_CLAIMED_SQL
+     */
+    private String updateSql;
+
     private Properties sqlMappingProperties;
 
     private Environment environment;
 
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 没有配置分片SQL时只打印一次警告日志
+     */
+    private final AtomicBoolean shardingSqlWarned = new AtomicBoolean();
+
     public JdbcRetryTaskMapper(DataSource dataSource) {
         super(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
     }
 
     @Override
@@ -50,26 +169,72 @@ public class JdbcRetryTaskMapper extends JdbcTemplate implements RetryTaskMapper
 
     @PostConstruct
     public void initSqlMappingProperties() {
-        this.sqlMappingProperties = getSqlMappingProperties();
+        String filepath = environment.getProperty(EnvironmentConstants.RETRY_SQLMAPPING_FILEPATH_KEY);
+        String databaseName = filepath == null ? getDatabaseName() : null;
+        this.sqlMappingProperties = loadSqlMappingProperties(filepath == null ? SQLMAPPING_DIRECTORY + databaseName + ".properties" : filepath);
+        this.nextRetryDateEnabled = checkNextRetryDateEnabled();
+        if (!nextRetryDateEnabled) {
+            log.warn("没有开启nextRetryDate，按照旧的表结构根据create_date查询需要重试的任务，退避策略不生效，表结构升级见doc/SYS_ARGS.md");
+            if (databaseName != null) {
+                this.sqlMappingProperties = loadSqlMappingProperties(SQLMAPPING_DIRECTORY + databaseName + "-legacy.properties");
+            }
+        }
         this.primaryKeyKey = sqlMappingProperties.getProperty(PRIMARY_KEY_KEY);
+        this.insertBatchEnabled = Boolean.parseBoolean(sqlMappingProperties.getProperty(INSERT_BATCH_ENABLED_KEY));
+        this.deleteOnSuccess = environment.getProperty(EnvironmentConstants.RETRY_DELETEONSUCCESS, Boolean.class, Boolean.FALSE);
+        this.paramsBinary = environment.getProperty(EnvironmentConstants.RETRY_PARAMS_BINARY, Boolean.class, Boolean.FALSE);
+        if (deleteOnSuccess && sqlMappingProperties.getProperty(DELETE_SQL_KEY) == null) {
+            throw new IllegalArgumentException("retry.deleteOnSuccess=true时，SQL映射文件中需要配置" + DELETE_SQL_KEY);
+        }
+        this.updateSql = sqlMappingProperties.getProperty(UPDATE_SQL_KEY);
+        if (environment.getProperty(EnvironmentConstants.RETRY_CLAIM_ENABLED, Boolean.class, Boolean.FALSE)) {
+            if (sqlMappingProperties.getProperty(UPDATE_CLAIMED_SQL_KEY) == null) {
+                log.warn("SQL映射文件中没有配置{}，任务更新之后不会释放占用，需要等占用过期之后才会被再次重试", UPDATE_CLAIMED_SQL_KEY);
+            } else {
+                this.updateSql = sqlMappingProperties.getProperty(UPDATE_CLAIMED_SQL_KEY);
+            }
+        }
+        if (sqlMappingProperties.getProperty(QUERY_NEEDRETRYTASK_PAGE_SQL_KEY) == null) {
+            log.warn("SQL映射文件中没有配置{}，每次定时重试会一次性查询出全部需要重试的任务，不分页", QUERY_NEEDRETRYTASK_PAGE_SQL_KEY);
+        }
     }
 
-    private Properties getSqlMappingProperties() {
-        String filepath;
-        if (environment.containsProperty(EnvironmentConstants.RETRY_SQLMAPPING_FILEPATH_KEY)) {
-            filepath = environment.getProperty(EnvironmentConstants.RETRY_SQLMAPPING_FILEPATH_KEY);
-        } else {
-            try (Connection conn = this.getDataSource().getConnection()) {
-                String databaseProductName = conn.getMetaData().getDatabaseProductName();
-                DatabaseDriverEnum databaseDriverEnum = DatabaseDriverEnum.fromProductName(databaseProductName);
-                if (databaseDriverEnum == null) {
-                    throw new IllegalArgumentException("无法根据数据库的databaseProductName=" + databaseProductName + "判断数据库类型，请在配置文件中使用retry.sqlMapping.filepath配置");
-                }
-                filepath = "META-INF/sqlprops/" + databaseDriverEnum.getDriverClassName() + ".properties";
-            } catch (SQLException e) {
-                throw new IllegalArgumentException("无法获取数据库连接", e);
+    /**
+     * 配置了retry.nextRetryDate.enabled的以配置为准，否则执行CHECK_NEXTRETRYDATE_SQL检查表中是否有next_retry_at列。
+     * 没有配置CHECK_NEXTRETRYDATE_SQL的自定义SQL映射文件按照旧的表结构处理
+     */
+    private boolean checkNextRetryDateEnabled() {
+        Boolean enabled = environment.getProperty(EnvironmentConstants.RETRY_NEXTRETRYDATE_ENABLED, Boolean.class);
+        if (enabled != null) {
+            return enabled;
+        }
+        String sql = sqlMappingProperties.getProperty(CHECK_NEXTRETRYDATE_SQL_KEY);
+        if (sql == null) {
+            return false;
+        }
+        try {
+            this.queryForList(sql);
+            return true;
+        } catch (DataAccessException e) {
+            log.warn("表中没有next_retry_at列：{}", e.getMessage());
+            return false;
+        }
+    }
+
+    private String getDatabaseName() {
+        try (Connection conn = this.getDataSource().getConnection()) {
+            String databaseProductName = conn.getMetaData().getDatabaseProductName();
+            DatabaseDriverEnum databaseDriverEnum = DatabaseDriverEnum.fromProductName(databaseProductName);
+            if (databaseDriverEnum == null) {
+                throw new IllegalArgumentException("无法根据数据库的databaseProductName=" + databaseProductName + "判断数据库类型，请在配置文件中使用retry.sqlMapping.filepath配置");
             }
+            return databaseDriverEnum.getDriverClassName();
+        } catch (SQLException e) {
+            throw new IllegalArgumentException("无法获取数据库连接", e);
         }
+    }
+
+    private Properties loadSqlMappingProperties(String filepath) {
         Properties properties = new Properties();
         try (InputStream input = Thread.currentThread().getContextClassLoader().getResourceAsStream(filepath)) {
             if (input == null) {
@@ -82,16 +247,22 @@ public class JdbcRetryTaskMapper extends JdbcTemplate implements RetryTaskMapper
         return properties;
     }
 
+    /**
+     * 表中是否有next_retry_at列。没有的时候按照旧的表结构根据create_date查询需要重试的任务，不会保存nextRetryDate，退避策略和本地重试都不能使用
+     *
+     * @return
+     */
+    public boolean isNextRetryDateEnabled() {
+        return nextRetryDateEnabled;
+    }
+
     @Override
     public int insert(RetryTask retryTask) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
         PreparedStatementCreator psc = conn -> {
             String sql = sqlMappingProperties.getProperty(INSERT_SQL_KEY);
             PreparedStatement ps = conn.prepareStatement(sql, new String[]{primaryKeyKey});
-            ps.setString(1, retryTask.getIdentity());
-            ps.setString(2, retryTask.getParams());
-            ps.setInt(3, RetryTask.STATUS_INIT);
-            ps.setString(4, retryTask.getRemark());
+            setInsertParameters(ps, retryTask);
             return ps;
         };
         int rows = update(psc, keyHolder);
@@ -99,34 +270,358 @@ public class JdbcRetryTaskMapper extends JdbcTemplate implements RetryTaskMapper
         return rows;
     }
 
+    @Override
+    public int insertBatch(List<RetryTask> retryTasks) {
+        if (retryTasks.isEmpty()) {
+            return 0;
+        }
+        if (!insertBatchEnabled || retryTasks.size() == 1) {
+            //驱动不支持批量获取主键（如sqlserver），只能逐条插入
+            return RetryTaskMapper.super.insertBatch(retryTasks);
+        }
+        String sql = sqlMappingProperties.getProperty(INSERT_SQL_KEY);
+        return execute((ConnectionCallback<Integer>) conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql, new String[]{primaryKeyKey})) {
+                for (RetryTask retryTask : retryTasks) {
+                    setInsertParameters(ps, retryTask);
+                    ps.addBatch();
+                }
+                int rows = sumBatchRows(ps.executeBatch());
+                int index = 0;
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    while (index < retryTasks.size() && rs.next()) {
+                        retryTasks.get(index++).setTaskId(rs.getLong(1));
+                    }
+                }
+                if (index != retryTasks.size()) {
+                    throw new DataRetrievalFailureException("批量插入了" + retryTasks.size() + "个任务，但是只获取到" + index + "个主键");
+                }
+                return rows;
+            }
+        });
+    }
+
     @Override
     public int update(RetryTask retryTask) {
-        String sql = sqlMappingProperties.getProperty(UPDATE_SQL_KEY);
-        return this.update(sql, ps -> {
-            ps.setInt(1, retryTask.getStatus());
-            ps.setInt(2, retryTask.getRetryCount());
-            ps.setString(3, retryTask.getRemark());
-            ps.setLong(4, retryTask.getTaskId());
+        if (isDeleteOnSuccess(retryTask)) {
+            return this.update(sqlMappingProperties.getProperty(DELETE_SQL_KEY), retryTask.getTaskId());
+        }
+        return this.update(updateSql, ps -> setUpdateParameters(ps, retryTask));
+    }
+
+    @Override
+    public int updateBatch(List<RetryTask> retryTasks) {
+        if (retryTasks.isEmpty()) {
+            return 0;
+        }
+        if (deleteOnSuccess) {
+            Map<Boolean, List<RetryTask>> partitions = retryTasks.stream().collect(Collectors.partitioningBy(this::isDeleteOnSuccess));
+            List<Object[]> deleteArgs = partitions.get(true).stream().map(task -> new Object[]{task.getTaskId()}).collect(Collectors.toList());
+            int rows = deleteArgs.isEmpty() ? 0 : sumBatchRows(batchUpdate(sqlMappingProperties.getProperty(DELETE_SQL_KEY), deleteArgs));
+            return rows + doUpdateBatch(partitions.get(false));
+        }
+        return doUpdateBatch(retryTasks);
+    }
+
+    private boolean isDeleteOnSuccess(RetryTask retryTask) {
+        return deleteOnSuccess && retryTask.getStatus() == RetryTask.STATUS_SUCCESS;
+    }
+
+    private int doUpdateBatch(List<RetryTask> retryTasks) {
+        if (retryTasks.isEmpty()) {
+            return 0;
+        }
+        int[] rows = batchUpdate(updateSql, new BatchPreparedStatementSetter() {
+
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                setUpdateParameters(ps, retryTasks.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return retryTasks.size();
+            }
         });
+        return sumBatchRows(rows);
+    }
+
+    private void setInsertParameters(PreparedStatement ps, RetryTask retryTask) throws SQLException {
+        ps.setString(1, retryTask.getIdentity());
+        if (paramsBinary) {
+            setParamsBytes(ps, 2, retryTask);
+        } else {
+            ps.setString(2, retryTask.getParams());
+        }
+        //异步写入的时候insert可能和之后的update合并成一次insert，状态以任务当前的状态为准。没有设置状态的按初始状态处理
+        ps.setInt(3, retryTask.getStatus() == 0 ? RetryTask.STATUS_INIT : retryTask.getStatus());
+        ps.setString(4, retryTask.getRemark());
+        if (nextRetryDateEnabled) {
+            ps.setInt(5, getNextRetryDelay(retryTask));
+        }
+    }
+
+    private void setParamsBytes(PreparedStatement ps, int parameterIndex, RetryTask retryTask) throws SQLException {
+        byte[] paramsBytes = retryTask.getParamsBytes();
+        if (paramsBytes == null && retryTask.getParams() != null) {
+            paramsBytes = retryTask.getParams().getBytes(StandardCharsets.UTF_8);
+        }
+        if (paramsBytes == null) {
+            ps.setNull(parameterIndex, Types.VARBINARY);
+        } else {
+            ps.setBinaryStream(parameterIndex, new ByteArrayInputStream(paramsBytes), paramsBytes.length);
+        }
+    }
+
+    private void setUpdateParameters(PreparedStatement ps, RetryTask retryTask) throws SQLException {
+        ps.setInt(1, retryTask.getStatus());
+        ps.setInt(2, retryTask.getRetryCount());
+        ps.setString(3, retryTask.getRemark());
+        int index = 4;
+        if (nextRetryDateEnabled) {
+            ps.setInt(index++, getNextRetryDelay(retryTask));
+        }
+        ps.setLong(index, retryTask.getTaskId());
+    }
+
+    /**
+     * next_retry_at和create_date、edit_date一样使用数据库的当前时间，只传入距离当前时间的秒数（向上取整），不受应用和数据库时钟偏差的影响
+     */
+    private int getNextRetryDelay(RetryTask retryTask) {
+        if (retryTask.getNextRetryDate() == null) {
+            return 0;
+        }
+        long millis = Duration.between(LocalDateTime.now(), retryTask.getNextRetryDate()).toMillis();
+        return millis <= 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, (millis + 999) / 1000);
+    }
+
+    /**
+     * 查询需要重试的任务的公共参数
+     *
+     * @return 下一个参数的位置
+     */
+    private int setQueryParameters(PreparedStatement ps, String identity, int retryCount, int initialDelay) throws SQLException {
+        ps.setString(1, identity);
+        ps.setInt(2, retryCount);
+        if (nextRetryDateEnabled) {
+            return 3;
+        }
+        //旧的表结构，创建时间早于当前时间减去initialDelay的任务才需要重试
+        ps.setObject(3, LocalDateTime.now().minusSeconds(initialDelay));
+        return 4;
+    }
+
+    /**
+     * 部分驱动（如mysql开启rewriteBatchedStatements）批量执行后返回SUCCESS_NO_INFO，这种情况按1行计算
+     */
+    private int sumBatchRows(int[] rows) {
+        int total = 0;
+        for (int row : rows) {
+            total += row == Statement.SUCCESS_NO_INFO ? 1 : row;
+        }
+        return total;
     }
 
     @Override
     public List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay) {
         String sql = sqlMappingProperties.getProperty(QUERY_NEEDRETRYTASK_LIST_SQL_KEY);
+        return this.query(sql, ps -> setQueryParameters(ps, identity, retryCount, initialDelay), new RetryTaskRowMapper());
+    }
+
+    @Override
+    public List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize) {
+        String sql = sqlMappingProperties.getProperty(QUERY_NEEDRETRYTASK_PAGE_SQL_KEY);
+        if (sql == null) {
+            //自定义的SQL映射文件没有配置分页SQL，只执行一次不分页的查询
+            return RetryTaskMapper.super.queryNeedRetryTaskList(identity, retryCount, initialDelay, lastTaskId, pageSize);
+        }
+        return this.query(sql, ps -> {
+            int index = setQueryParameters(ps, identity, retryCount, initialDelay);
+            ps.setLong(index++, lastTaskId);
+            ps.setInt(index, pageSize);
+        }, new RetryTaskRowMapper());
+    }
+
+    @Override
+    public List<RetryTask> queryNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize, int shardingTotalCount, int shardingItem) {
+        String sql = sqlMappingProperties.getProperty(QUERY_NEEDRETRYTASK_SHARDING_SQL_KEY);
+        if (sql == null) {
+            //自定义的SQL映射文件没有配置分片SQL，只执行一次不分页的查询
+            if (lastTaskId == 0 && shardingSqlWarned.compareAndSet(false, true)) {
+                log.warn("SQL映射文件中没有配置{}，每次分片重试会一次性查询出全部需要重试的任务之后在内存中分片，不分页", QUERY_NEEDRETRYTASK_SHARDING_SQL_KEY);
+            }
+            return RetryTaskMapper.super.queryNeedRetryTaskList(identity, retryCount, initialDelay, lastTaskId, pageSize, shardingTotalCount, shardingItem);
+        }
+        return this.query(sql, ps -> {
+            int index = setQueryParameters(ps, identity, retryCount, initialDelay);
+            ps.setInt(index++, shardingTotalCount);
+            ps.setInt(index++, shardingItem);
+            ps.setLong(index++, lastTaskId);
+            ps.setInt(index, pageSize);
+        }, new RetryTaskRowMapper());
+    }
+
+    @Override
+    public List<RetryTask> claimNeedRetryTaskList(String identity, int retryCount, int initialDelay, long lastTaskId, int pageSize, String owner, int leaseSeconds) {
+        String claimSql = sqlMappingProperties.getProperty(CLAIM_NEEDRETRYTASK_LIST_SQL_KEY);
+        String leaseSql = sqlMappingProperties.getProperty(UPDATE_LEASE_SQL_KEY);
+        if (claimSql == null || leaseSql == null) {
+            //自定义的SQL映射文件没有配置抢占SQL
+            return queryNeedRetryTaskList(identity, retryCount, initialDelay, lastTaskId, pageSize);
+        }
+        //查询加锁和更新占用信息需要在同一个事务里面
+        return transactionTemplate.execute(status -> {
+            List<RetryTask> tasks = this.query(claimSql, ps -> {
+                int index = setQueryParameters(ps, identity, retryCount, initialDelay);
+                ps.setLong(index++, lastTaskId);
+                ps.setInt(index, pageSize);
+            }, new RetryTaskRowMapper());
+            if (!tasks.isEmpty()) {
+                batchUpdate(leaseSql, new BatchPreparedStatementSetter() {
+
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, owner);
+                        ps.setInt(2, leaseSeconds);
+                        ps.setLong(3, tasks.get(i).getTaskId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return tasks.size();
+                    }
+                });
+            }
+            return tasks;
+        });
+    }
+
+    @Override
+    public int releaseClaim(List<Long> taskIds, String owner) {
+        String sql = sqlMappingProperties.getProperty(RELEASE_CLAIM_SQL_KEY);
+        if (sql == null || taskIds.isEmpty()) {
+            //自定义的SQL映射文件没有配置，等占用过期之后再被抢占
+            return 0;
+        }
+        return sumBatchRows(batchUpdate(sql, new BatchPreparedStatementSetter() {
+
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, taskIds.get(i));
+                ps.setString(2, owner);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return taskIds.size();
+            }
+        }));
+    }
+
+    /**
+     * 查询数据库的当前时间
+     *
+     * @return
+     */
+    public LocalDateTime queryCurrentTimestamp() {
+        return this.queryForObject(getRequiredSql(QUERY_CURRENT_TIMESTAMP_SQL_KEY), (rs, rowNum) -> rs.getObject(1, LocalDateTime.class));
+    }
+
+    /**
+     * 按照taskId升序查询一批需要归档的任务
+     *
+     * @param status     任务状态
+     * @param editDate   只查询最后修改时间早于editDate的任务
+     * @param lastTaskId 上一批最后一个任务的taskId，第一批传0
+     * @param limit      最多查询多少个
+     * @return
+     */
+    public List<Long> queryArchiveTaskIdList(int status, LocalDateTime editDate, long lastTaskId, int limit) {
+        String sql = getRequiredSql(QUERY_ARCHIVE_TASKID_LIST_SQL_KEY);
         return this.query(sql, ps -> {
-            ps.setString(1, identity);
-            ps.setInt(2, retryCount);
-            ps.setObject(3, LocalDateTime.now().minusSeconds(initialDelay));
-        }, (rs, rowNum) -> {
+            ps.setInt(1, status);
+            ps.setObject(2, editDate);
+            ps.setLong(3, lastTaskId);
+            ps.setInt(4, limit);
+        }, (rs, rowNum) -> rs.getLong(1));
+    }
+
+    /**
+     * 归档taskId在(fromTaskId, toTaskId]之间的任务。复制到归档表和删除在同一个事务里面
+     *
+     * @param status     任务状态
+     * @param editDate   只归档最后修改时间早于editDate的任务
+     * @param fromTaskId 不包含
+     * @param toTaskId   包含
+     * @param purge      为true则直接删除，不复制到归档表
+     * @return 删除的行数
+     */
+    public int archiveTasks(int status, LocalDateTime editDate, long fromTaskId, long toTaskId, boolean purge) {
+        String deleteSql = getRequiredSql(DELETE_ARCHIVE_SQL_KEY);
+        String insertSql = purge ? null : getRequiredSql(INSERT_ARCHIVE_SQL_KEY);
+        Object[] args = new Object[]{status, editDate, fromTaskId, toTaskId};
+        return transactionTemplate.execute(transactionStatus -> {
+            if (insertSql != null) {
+                this.update(insertSql, args);
+            }
+            return this.update(deleteSql, args);
+        });
+    }
+
+    private String getRequiredSql(String key) {
+        String sql = sqlMappingProperties.getProperty(key);
+        if (sql == null) {
+            throw new IllegalArgumentException("SQL映射文件中没有配置" + key);
+        }
+        return sql;
+    }
+
+    private byte[] getParamsBytes(ResultSet rs) throws SQLException {
+        try (InputStream inputStream = rs.getBinaryStream("Params")) {
+            return inputStream == null ? null : StreamUtils.copyToByteArray(inputStream);
+        } catch (IOException e) {
+            throw new SQLException("读取Params失败：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 自定义SQL映射文件（比如旧版本的SQL）的查询结果可能没有EditDate、NextRetryDate列，读取第一行的时候检查
+     */
+    private class RetryTaskRowMapper implements RowMapper<RetryTask> {
+
+        private boolean editDatePresent;
+
+        private boolean nextRetryDatePresent;
+
+        @Override
+        public RetryTask mapRow(ResultSet rs, int rowNum) throws SQLException {
+            if (rowNum == 0) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    String label = metaData.getColumnLabel(i);
+                    editDatePresent |= "EditDate".equalsIgnoreCase(label);
+                    nextRetryDatePresent |= "NextRetryDate".equalsIgnoreCase(label);
+                }
+            }
             RetryTask task = new RetryTask();
             task.setTaskId(rs.getLong("TaskId"));
             task.setIdentity(rs.getString("IdentityName"));
-            task.setParams(rs.getString("Params"));
+            if (paramsBinary) {
+                task.setParamsBytes(getParamsBytes(rs));
+            } else {
+                task.setParams(rs.getString("Params"));
+            }
             task.setStatus(rs.getInt("Status"));
             task.setRemark(rs.getString("Remark"));
             task.setRetryCount(rs.getInt("RetryCount"));
             task.setCreateDate(rs.getObject("CreateDate", LocalDateTime.class));
+            if (editDatePresent) {
+                task.setEditDate(rs.getObject("EditDate", LocalDateTime.class));
+            }
+            if (nextRetryDatePresent) {
+                task.setNextRetryDate(rs.getObject("NextRetryDate", LocalDateTime.class));
+            }
             return task;
-        });
+        }
     }
 }
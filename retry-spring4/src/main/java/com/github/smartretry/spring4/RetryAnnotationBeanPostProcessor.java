@@ -1,17 +1,23 @@
 package com.github.smartretry.spring4;
 
 import com.github.smartretry.core.*;
+import com.github.smartretry.core.impl.AsyncRetryTaskMapper;
+import com.github.smartretry.core.impl.CompressingRetrySerializer;
 import com.github.smartretry.core.impl.DefaultRetryHandlerPostProcessor;
 import com.github.smartretry.core.impl.DefaultRetryProcessor;
 import com.github.smartretry.core.impl.DefaultRetryTaskFactory;
+import com.github.smartretry.core.impl.LocalRetryScheduler;
 import com.github.smartretry.core.impl.MethodRetryHandler;
 import com.github.smartretry.core.listener.RetryListener;
 import com.github.smartretry.core.util.RetryHandlerUtils;
+import com.github.smartretry.core.util.ServiceLoaderUtils;
+import com.github.smartretry.core.util.VirtualThreadUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.aop.framework.AopInfrastructureBean;
 import org.springframework.aop.framework.AopProxyUtils;
 import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.*;
 import org.springframework.beans.factory.config.BeanPostProcessor;
@@ -19,14 +25,19 @@ import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.core.MethodIntrospector;
 import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.ReflectionUtils;
 
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.function.Supplier;
+import java.util.zip.Deflater;
 
 /**
  * 对所有com.github.smartretry.core.RetryHandler和带有@RetryFunction注解的方法进行注册
@@ -34,7 +45,9 @@ import java.util.function.Supplier;
  * @author yuni[mn960mn@163.com]
  */
 @Slf4j
-public class RetryAnnotationBeanPostProcessor implements BeanPostProcessor, SmartInitializingSingleton, EnvironmentAware, BeanFactoryAware {
+public class RetryAnnotationBeanPostProcessor implements BeanPostProcessor, SmartInitializingSingleton, EnvironmentAware, BeanFactoryAware, DisposableBean {
+
+    private static final String JACKSON2_RETRY_SERIALIZER = "com.github.smartretry.jackson2.Jackson2JsonRetrySerializer";
 
     private DefaultListableBeanFactory defaultListableBeanFactory;
 
@@ -47,6 +60,11 @@ public class RetryAnnotationBeanPostProcessor implements BeanPostProcessor, Smar
 
     private List<RetryHandler> retryHandlers = new ArrayList<>();
 
+    /**
+     * 创建的DefaultRetryProcessor，关闭的时候释放它们的线程池
+     */
+    private List<DefaultRetryProcessor> retryProcessors = new ArrayList<>();
+
     private RetryRegistry retryRegistry;
 
     private RetrySerializer retrySerializer;
@@ -55,6 +73,30 @@ public class RetryAnnotationBeanPostProcessor implements BeanPostProcessor, Smar
 
     private RetryHandlerPostProcessor<Object, Object> retryHandlerPostProcessor;
 
+    /**
+     * retry.beforeTask.async=true时，任务首次执行时使用的异步写入RetryTaskMapper
+     */
+    private AsyncRetryTaskMapper asyncRetryTaskMapper;
+
+    /**
+     * retry.local.enabled=true时，首次执行失败的任务先在当前节点本地重试
+     */
+    private LocalRetryScheduler localRetryScheduler;
+
+    /**
+     * retry.claim.enabled=true时，当前节点抢占任务的标识
+     */
+    private String claimOwner;
+
+    private boolean virtualThreadEnabled;
+
+    /**
+     * retry-indexer在编译期生成的索引，没有索引文件或者retry.index.ignore=true时为null
+     */
+    private RetryIndex retryIndex;
+
+    private boolean retryIndexLoaded;
+
     @Override
     public void setEnvironment(Environment environment) {
         this.environment = environment;
@@ -86,8 +128,16 @@ public class RetryAnnotationBeanPostProcessor implements BeanPostProcessor, Smar
                 retryHandlers.add((RetryHandler) targetObject);
                 return bean;
             }
-            ReflectionUtils.MethodFilter methodFilter = method -> method.getAnnotation(RetryFunction.class) != null;
-            Set<Method> methods = MethodIntrospector.selectMethods(targetClass, methodFilter);
+            Set<Method> methods;
+            RetryIndex retryIndex = getRetryIndex();
+            if (retryIndex == null) {
+                ReflectionUtils.MethodFilter methodFilter = method -> method.getAnnotation(RetryFunction.class) != null;
+                methods = MethodIntrospector.selectMethods(targetClass, methodFilter);
+            } else if (retryIndex.contains(targetClass)) {
+                methods = retryIndex.getRetryFunctionMethods(targetClass);
+            } else {
+                methods = Collections.emptySet();
+            }
             methods.forEach(method -> processRetryFunction(targetObject, method));
 
             postedClasseCache.add(targetClass);
@@ -95,6 +145,16 @@ public class RetryAnnotationBeanPostProcessor implements BeanPostProcessor, Smar
         return bean;
     }
 
+    private RetryIndex getRetryIndex() {
+        if (!retryIndexLoaded) {
+            retryIndexLoaded = true;
+            if (!environment.getProperty(EnvironmentConstants.RETRY_INDEX_IGNORE, Boolean.class, Boolean.FALSE)) {
+                retryIndex = RetryIndex.load(defaultListableBeanFactory.getBeanClassLoader());
+            }
+        }
+        return retryIndex;
+    }
+
     protected void processRetryFunction(Object bean, Method method) {
         log.info("发现@RetryFunction的实例：{}，准备注册", method.toString());
         Method invocableMethod = AopUtils.selectInvocableMethod(method, bean.getClass());
@@ -125,23 +185,99 @@ public class RetryAnnotationBeanPostProcessor implements BeanPostProcessor, Smar
     @Override
     public void afterSingletonsInstantiated() {
         postedClasseCache.clear();
+        retryIndex = null;
 
         this.retryTaskMapper = defaultListableBeanFactory.getBean(RetryTaskMapper.class);
         this.retryRegistry = defaultListableBeanFactory.getBean(RetryRegistry.class);
 
         boolean beforeTask = environment.getProperty(EnvironmentConstants.RETRY_BEFORETASK, Boolean.class, Boolean.TRUE);
+        RetryTaskMapper immediatelyRetryTaskMapper = retryTaskMapper;
+        if (beforeTask && environment.getProperty(EnvironmentConstants.RETRY_BEFORETASK_ASYNC, Boolean.class, Boolean.FALSE)) {
+            long flushInterval = environment.getProperty(EnvironmentConstants.RETRY_BEFORETASK_ASYNC_FLUSHINTERVAL, Long.class, AsyncRetryTaskMapper.DEFAULT_FLUSH_INTERVAL);
+            int queueSize = environment.getProperty(EnvironmentConstants.RETRY_BEFORETASK_ASYNC_QUEUESIZE, Integer.class, AsyncRetryTaskMapper.DEFAULT_QUEUE_SIZE);
+            this.asyncRetryTaskMapper = new AsyncRetryTaskMapper(retryTaskMapper, flushInterval, queueSize);
+            immediatelyRetryTaskMapper = asyncRetryTaskMapper;
+            log.info("开启任务的异步写入，flushInterval={}ms，queueSize={}", flushInterval, queueSize);
+        }
+        if (environment.getProperty(EnvironmentConstants.RETRY_CLAIM_ENABLED, Boolean.class, Boolean.FALSE)) {
+            this.claimOwner = environment.getProperty(EnvironmentConstants.RETRY_CLAIM_OWNER, defaultClaimOwner());
+            log.info("开启任务抢占，当前节点的标识为{}", claimOwner);
+        }
+        if (environment.getProperty(EnvironmentConstants.RETRY_VIRTUALTHREADS_ENABLED, Boolean.class, Boolean.FALSE)) {
+            if (VirtualThreadUtils.isSupported()) {
+                this.virtualThreadEnabled = true;
+            } else {
+                log.warn("当前JDK版本{}不支持虚拟线程，retry.virtualThreads.enabled配置无效", System.getProperty("java.version"));
+            }
+        }
         this.retrySerializer = getRetrySerializerFromBeanFactory(defaultListableBeanFactory);
+        if (this.retrySerializer == null && defaultListableBeanFactory.containsBean(BeanConstants.RETRY_OBJECTMAPPER)
+                && ClassUtils.isPresent(JACKSON2_RETRY_SERIALIZER, defaultListableBeanFactory.getBeanClassLoader())) {
+            this.retrySerializer = Jackson2RetrySerializerFactory.newRetrySerializer(defaultListableBeanFactory.getBean(BeanConstants.RETRY_OBJECTMAPPER));
+        }
+        String serializerClassName = environment.getProperty(EnvironmentConstants.RETRY_PARAMS_SERIALIZER);
+        if (this.retrySerializer == null && environment.getProperty(EnvironmentConstants.RETRY_PARAMS_JACKSON2_OPTIONALMODULES, Boolean.class, Boolean.FALSE)
+                && (StringUtils.isBlank(serializerClassName) || JACKSON2_RETRY_SERIALIZER.equals(serializerClassName))
+                && ClassUtils.isPresent(JACKSON2_RETRY_SERIALIZER, defaultListableBeanFactory.getBeanClassLoader())) {
+            this.retrySerializer = Jackson2RetrySerializerFactory.newRetrySerializerWithOptionalModule();
+        }
         if (this.retrySerializer == null) {
-            this.retryHandlerPostProcessor = new DefaultRetryHandlerPostProcessor(retryTaskMapper, beforeTask);
-        } else {
-            this.retryHandlerPostProcessor = new DefaultRetryHandlerPostProcessor(new DefaultRetryTaskFactory(retrySerializer), retryTaskMapper, beforeTask);
+            //所有的RetryHandler共用一个RetrySerializer，共用序列化器的缓存。classpath下有多个实现时通过retry.params.serializer指定
+            this.retrySerializer = ServiceLoaderUtils.loadService(RetrySerializer.class, serializerClassName);
+        }
+        //没有开启压缩时也需要解压之前压缩保存的参数
+        this.retrySerializer = newCompressingRetrySerializer(retrySerializer);
+        if (environment.getProperty(EnvironmentConstants.RETRY_LOCAL_ENABLED, Boolean.class, Boolean.FALSE)) {
+            if (retryTaskMapper instanceof JdbcRetryTaskMapper && !((JdbcRetryTaskMapper) retryTaskMapper).isNextRetryDateEnabled()) {
+                //本地重试依赖next_retry_at防止定时任务同时重试同一个任务
+                throw new IllegalStateException("开启retry.local.enabled需要表中有next_retry_at列，表结构升级见doc/SYS_ARGS.md");
+            }
+            long delay = environment.getProperty(EnvironmentConstants.RETRY_LOCAL_DELAY, Long.class, LocalRetryScheduler.DEFAULT_DELAY);
+            int maxAttempts = environment.getProperty(EnvironmentConstants.RETRY_LOCAL_MAXATTEMPTS, Integer.class, LocalRetryScheduler.DEFAULT_MAX_ATTEMPTS);
+            int threadCount = environment.getProperty(EnvironmentConstants.RETRY_LOCAL_THREADCOUNT, Integer.class, LocalRetryScheduler.DEFAULT_THREADCOUNT);
+            int queueSize = environment.getProperty(EnvironmentConstants.RETRY_LOCAL_QUEUESIZE, Integer.class, LocalRetryScheduler.DEFAULT_QUEUE_SIZE);
+            this.localRetryScheduler = new LocalRetryScheduler(retrySerializer, delay, maxAttempts, threadCount, queueSize);
+            log.info("开启本地重试，delay={}ms，maxAttempts={}，threadCount={}，queueSize={}", delay, maxAttempts, threadCount, queueSize);
         }
+        DefaultRetryTaskFactory retryTaskFactory = new DefaultRetryTaskFactory(retrySerializer);
+        retryTaskFactory.setBinary(environment.getProperty(EnvironmentConstants.RETRY_PARAMS_BINARY, Boolean.class, Boolean.FALSE));
+        DefaultRetryHandlerPostProcessor defaultRetryHandlerPostProcessor = new DefaultRetryHandlerPostProcessor(retryTaskFactory, immediatelyRetryTaskMapper, beforeTask);
+        defaultRetryHandlerPostProcessor.setLocalRetryScheduler(localRetryScheduler);
+        this.retryHandlerPostProcessor = defaultRetryHandlerPostProcessor;
 
         retryHandlers.forEach(this::registerJobBean);
 
         retryHandlers.clear();
     }
 
+    private CompressingRetrySerializer newCompressingRetrySerializer(RetrySerializer delegate) {
+        int threshold = environment.getProperty(EnvironmentConstants.RETRY_PARAMS_COMPRESS_THRESHOLD, Integer.class, CompressingRetrySerializer.DEFAULT_THRESHOLD);
+        String codecName = environment.getProperty(EnvironmentConstants.RETRY_PARAMS_COMPRESS_CODEC, "deflate");
+        CompressingRetrySerializer.Codec codec;
+        if ("deflate".equalsIgnoreCase(codecName)) {
+            codec = new CompressingRetrySerializer.DeflateCodec(environment.getProperty(EnvironmentConstants.RETRY_PARAMS_COMPRESS_LEVEL, Integer.class, Deflater.DEFAULT_COMPRESSION));
+        } else {
+            codec = newCodec(codecName);
+        }
+        //读取的时候除了DeflateCodec和codec之外，还可以识别的压缩算法
+        List<CompressingRetrySerializer.Codec> decodeCodecs = new ArrayList<>();
+        for (String decodeCodecName : environment.getProperty(EnvironmentConstants.RETRY_PARAMS_COMPRESS_DECODECODECS, String[].class, new String[0])) {
+            if (StringUtils.isNotBlank(decodeCodecName)) {
+                decodeCodecs.add(newCodec(decodeCodecName.trim()));
+            }
+        }
+        boolean compressEnabled = environment.getProperty(EnvironmentConstants.RETRY_PARAMS_COMPRESS_ENABLED, Boolean.class, Boolean.FALSE);
+        if (compressEnabled) {
+            log.info("开启参数压缩，threshold={}，codec={}", threshold, codec.getClass().getName());
+        }
+        return new CompressingRetrySerializer(delegate, codec, threshold, compressEnabled, decodeCodecs);
+    }
+
+    private CompressingRetrySerializer.Codec newCodec(String codecClassName) {
+        Class<?> codecClass = ClassUtils.resolveClassName(codecClassName, defaultListableBeanFactory.getBeanClassLoader());
+        return BeanUtils.instantiateClass(codecClass, CompressingRetrySerializer.Codec.class);
+    }
+
     protected void registerJobBean(RetryHandler retryHandler) {
         if (retryHandler.identity().length() > 50) {
             throw new IllegalArgumentException("identity=" + retryHandler.identity() + " is too long, it must be less than 50");
@@ -150,8 +286,53 @@ public class RetryAnnotationBeanPostProcessor implements BeanPostProcessor, Smar
         RetryHandler retryHandlerProxy = retryHandlerPostProcessor.doPost(retryHandler);
         RetryHandlerRegistration.registry(retryHandlerProxy);
 
-        RetryProcessor retryProcessor = new DefaultRetryProcessor(retryHandler, retryTaskMapper, retrySerializer);
+        DefaultRetryProcessor retryProcessor = new DefaultRetryProcessor(retryHandler, retryTaskMapper, retrySerializer);
+        retryProcessor.setPageSize(environment.getProperty(EnvironmentConstants.RETRY_QUERY_PAGESIZE, Integer.class, DefaultRetryProcessor.DEFAULT_PAGE_SIZE));
+        retryProcessor.setClaimOwner(claimOwner);
+        retryProcessor.setVirtualThreadEnabled(virtualThreadEnabled);
+        retryProcessor.setLeaseSeconds(environment.getProperty(EnvironmentConstants.RETRY_CLAIM_LEASESECONDS, Integer.class, DefaultRetryProcessor.DEFAULT_LEASE_SECONDS));
 
         retryRegistry.register(retryHandler, retryProcessor);
+        retryProcessors.add(retryProcessor);
+    }
+
+    /**
+     * 默认使用 pid@hostname 加上随机数作为节点标识，保证同一台机器上的多个进程也不会重复
+     */
+    private String defaultClaimOwner() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        return StringUtils.left(name, 64 - suffix.length() - 1) + "-" + suffix;
+    }
+
+    @Override
+    public void destroy() {
+        if (localRetryScheduler != null) {
+            //还没有本地重试的任务由定时任务继续重试
+            localRetryScheduler.close();
+        }
+        if (asyncRetryTaskMapper != null) {
+            //把还没有写入的任务全部写入数据库
+            asyncRetryTaskMapper.close();
+        }
+        retryProcessors.forEach(DefaultRetryProcessor::close);
+    }
+
+    /**
+     * 排除了retry-serializer-jackson2依赖时不会加载这个类
+     */
+    private static class Jackson2RetrySerializerFactory {
+
+        static RetrySerializer newRetrySerializer(Object objectMapper) {
+            return new com.github.smartretry.jackson2.Jackson2JsonRetrySerializer((com.fasterxml.jackson.databind.ObjectMapper) objectMapper);
+        }
+
+        /**
+         * 注册classpath下的blackbird或者afterburner模块
+         */
+        static RetrySerializer newRetrySerializerWithOptionalModule() {
+            com.fasterxml.jackson.databind.ObjectMapper objectMapper = com.github.smartretry.jackson2.Jackson2JsonRetrySerializer.newObjectMapper(com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL);
+            return newRetrySerializer(com.github.smartretry.jackson2.Jackson2JsonRetrySerializer.registerOptionalModule(objectMapper));
+        }
     }
 }
\ No newline at end of file
@@ -31,6 +31,13 @@ public class RetryHandlerRegistration {
     }
 
     public static Optional<RetryHandler> get(String identity) {
-        return Optional.ofNullable(retryHandlerMap.get(identity));
+        return Optional.ofNullable(getOrNull(identity));
+    }
+
+    /**
+     * 不存在时返回null，调用频繁的地方使用，不创建Optional
+     */
+    public static RetryHandler getOrNull(String identity) {
+        return retryHandlerMap.get(identity);
     }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.github.smartretry.spring4;
+
+import com.github.smartretry.core.RetryFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * retry-indexer在编译期生成的索引文件，所有jar里面的META-INF/smart-retry.index合并在一起
+ *
+ * @author yuni[mn960mn@163.com]
+ */
+@Slf4j
+public class RetryIndex {
+
+    public static final String INDEX_LOCATION = "META-INF/smart-retry.index";
+
+    /**
+     * key：类的全名，value：@RetryFunction方法的方法名(参数类型)
+     */
+    private final Map<String, List<String>> entries;
+
+    private RetryIndex(Map<String, List<String>> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * 加载classpath下所有的索引文件，没有索引文件返回null
+     */
+    public static RetryIndex load(ClassLoader classLoader) {
+        Map<String, List<String>> entries = new HashMap<>();
+        try {
+            Enumeration<URL> urls = classLoader == null ? ClassLoader.getSystemResources(INDEX_LOCATION) : classLoader.getResources(INDEX_LOCATION);
+            if (!urls.hasMoreElements()) {
+                return null;
+            }
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                PropertiesLoaderUtils.loadProperties(new UrlResource(url)).forEach((className, value) -> {
+                    List<String> classEntries = entries.computeIfAbsent((String) className, key -> new ArrayList<>());
+                    classEntries.addAll(Arrays.asList(StringUtils.split((String) value, ',')));
+                });
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("加载" + INDEX_LOCATION + "失败", e);
+        }
+        log.info("加载{}，共{}个类", INDEX_LOCATION, entries.size());
+        return new RetryIndex(entries);
+    }
+
+    /**
+     * 类以及父类、接口是否在索引里面
+     */
+    public boolean contains(Class<?> targetClass) {
+        return getHierarchy(targetClass).stream().anyMatch(type -> entries.containsKey(type.getName()));
+    }
+
+    /**
+     * 索引里面记录的带有@RetryFunction注解的方法，包括父类和接口里面的方法
+     */
+    public Set<Method> getRetryFunctionMethods(Class<?> targetClass) {
+        Set<Method> methods = new LinkedHashSet<>();
+        for (Class<?> type : getHierarchy(targetClass)) {
+            for (String entry : entries.getOrDefault(type.getName(), Collections.emptyList())) {
+                int index = entry.indexOf('(');
+                if (index < 0) {
+                    log.warn("{}里面的索引格式不正确：{}", INDEX_LOCATION, entry);
+                    continue;
+                }
+                Method method = findMethod(type, entry.substring(0, index), entry.substring(index + 1, entry.length() - 1));
+                if (method != null && method.getAnnotation(RetryFunction.class) != null) {
+                    methods.add(method);
+                }
+            }
+        }
+        return methods;
+    }
+
+    private static Method findMethod(Class<?> type, String methodName, String parameterTypes) {
+        String[] parameterTypeNames = StringUtils.split(parameterTypes, ';');
+        for (Method method : type.getDeclaredMethods()) {
+            if (method.isBridge() || !method.getName().equals(methodName) || method.getParameterCount() != parameterTypeNames.length) {
+                continue;
+            }
+            Class<?>[] methodParameterTypes = method.getParameterTypes();
+            boolean matched = true;
+            for (int i = 0; i < parameterTypeNames.length && matched; i++) {
+                matched = parameterTypeNames[i].equals(methodParameterTypes[i].getCanonicalName());
+            }
+            if (matched) {
+                return method;
+            }
+        }
+        //索引和class文件不一致，比如重新编译之后没有重新生成索引
+        log.warn("{}里面找不到索引中的方法：{}({})", type.getName(), methodName, parameterTypes);
+        return null;
+    }
+
+    private static Set<Class<?>> getHierarchy(Class<?> targetClass) {
+        Set<Class<?>> hierarchy = new LinkedHashSet<>();
+        for (Class<?> type = targetClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            hierarchy.add(type);
+        }
+        hierarchy.addAll(ClassUtils.getAllInterfacesForClassAsSet(targetClass));
+        return hierarchy;
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.smartretry.spring4;
+
+import com.github.smartretry.core.RetryTask;
+import com.github.smartretry.core.RetryTaskMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期把执行成功（可选执行失败）的历史任务从sys_retry_task移到归档表，或者直接删除，避免任务表和索引无限增长
+ * <p>
+ * 按照taskId分批处理，每批处理完之后暂停chunkInterval毫秒，避免长事务和对数据库造成太大的压力
+ *
+ * @author yuni[mn960mn@163.com]
+ * @see JdbcRetryTaskMapper#archiveTasks
+ */
+@Slf4j
+public class RetryTaskArchiver implements EnvironmentAware, InitializingBean, DisposableBean {
+
+    public static final int DEFAULT_SUCCESS_RETENTIONDAYS = 7;
+
+    public static final int DEFAULT_CHUNKSIZE = 500;
+
+    public static final long DEFAULT_CHUNKINTERVAL = 100;
+
+    /**
+     * 默认每小时归档一次
+     */
+    public static final long DEFAULT_INTERVAL = 3600;
+
+    private RetryTaskMapper retryTaskMapper;
+
+    private Environment environment;
+
+    private boolean purge;
+
+    private int successRetentionDays;
+
+    private int exceptionRetentionDays;
+
+    private int chunkSize;
+
+    private long chunkInterval;
+
+    private ScheduledExecutorService scheduledExecutorService;
+
+    private volatile boolean running;
+
+    public RetryTaskArchiver(RetryTaskMapper retryTaskMapper) {
+        this.retryTaskMapper = retryTaskMapper;
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!environment.getProperty(EnvironmentConstants.RETRY_ARCHIVE_ENABLED, Boolean.class, Boolean.FALSE)) {
+            return;
+        }
+        if (!(retryTaskMapper instanceof JdbcRetryTaskMapper)) {
+            log.warn("当前的RetryTaskMapper[{}]不是JdbcRetryTaskMapper，不支持任务归档", retryTaskMapper.getClass().getName());
+            return;
+        }
+        this.purge = environment.getProperty(EnvironmentConstants.RETRY_ARCHIVE_PURGE, Boolean.class, Boolean.FALSE);
+        this.successRetentionDays = environment.getProperty(EnvironmentConstants.RETRY_ARCHIVE_SUCCESS_RETENTIONDAYS, Integer.class, DEFAULT_SUCCESS_RETENTIONDAYS);
+        this.exceptionRetentionDays = environment.getProperty(EnvironmentConstants.RETRY_ARCHIVE_EXCEPTION_RETENTIONDAYS, Integer.class, 0);
+        this.chunkSize = environment.getProperty(EnvironmentConstants.RETRY_ARCHIVE_CHUNKSIZE, Integer.class, DEFAULT_CHUNKSIZE);
+        this.chunkInterval = environment.getProperty(EnvironmentConstants.RETRY_ARCHIVE_CHUNKINTERVAL, Long.class, DEFAULT_CHUNKINTERVAL);
+        long interval = environment.getProperty(EnvironmentConstants.RETRY_ARCHIVE_INTERVAL, Long.class, DEFAULT_INTERVAL);
+        if (chunkSize <= 0 || interval <= 0) {
+            throw new IllegalArgumentException("retry.archive.chunkSize、retry.archive.interval必须大于0");
+        }
+
+        this.running = true;
+        this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "retry-task-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduledExecutorService.scheduleWithFixedDelay(this::archive, interval, interval, TimeUnit.SECONDS);
+        log.info("开启任务归档，purge={}，执行成功的任务保留{}天，执行失败的任务保留{}天，每{}秒执行一次", purge, successRetentionDays, exceptionRetentionDays, interval);
+    }
+
+    /**
+     * 执行一次归档。retentionDays小于等于0的状态不归档
+     */
+    public void archive() {
+        try {
+            if (successRetentionDays > 0) {
+                archive(RetryTask.STATUS_SUCCESS, successRetentionDays);
+            }
+            if (exceptionRetentionDays > 0) {
+                archive(RetryTask.STATUS_EXCEPTION, exceptionRetentionDays);
+            }
+        } catch (RuntimeException e) {
+            log.error("任务归档失败：" + e.getMessage(), e);
+        }
+    }
+
+    private void archive(int status, int retentionDays) {
+        JdbcRetryTaskMapper jdbcRetryTaskMapper = (JdbcRetryTaskMapper) retryTaskMapper;
+        //按照数据库的时间计算，每批使用同一个editDate，复制和删除的是同一批任务
+        LocalDateTime editDate = jdbcRetryTaskMapper.queryCurrentTimestamp().minusDays(retentionDays);
+        long lastTaskId = 0;
+        int total = 0;
+        while (running) {
+            List<Long> taskIds = jdbcRetryTaskMapper.queryArchiveTaskIdList(status, editDate, lastTaskId, chunkSize);
+            if (taskIds.isEmpty()) {
+                break;
+            }
+            long toTaskId = taskIds.get(taskIds.size() - 1);
+            total += jdbcRetryTaskMapper.archiveTasks(status, editDate, lastTaskId, toTaskId, purge);
+            lastTaskId = toTaskId;
+            if (taskIds.size() < chunkSize) {
+                break;
+            }
+            if (chunkInterval > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(chunkInterval);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        log.info("status={}的任务本次共归档了{}个", status, total);
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        if (scheduledExecutorService != null) {
+            scheduledExecutorService.shutdownNow();
+        }
+    }
+}
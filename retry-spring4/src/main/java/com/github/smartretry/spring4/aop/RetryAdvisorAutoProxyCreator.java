@@ -1,9 +1,14 @@
 package com.github.smartretry.spring4.aop;
 
+import com.github.smartretry.core.RetryHandler;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.aop.Advisor;
+import org.springframework.aop.PointcutAdvisor;
+import org.springframework.aop.TargetSource;
+import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.aop.framework.autoproxy.AbstractAdvisorAutoProxyCreator;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
 
 import java.util.List;
 
@@ -28,4 +33,30 @@ public class RetryAdvisorAutoProxyCreator extends AbstractAdvisorAutoProxyCreato
     protected List<Advisor> findCandidateAdvisors() {
         return retryAdvisors;
     }
+
+    /**
+     * 代理RetryHandler实例的时候，把共用的RetryHandlerClassInterceptor换成这个实例专用的，identity只在这里获取一次
+     */
+    @Override
+    protected void customizeProxyFactory(ProxyFactory proxyFactory) {
+        TargetSource targetSource = proxyFactory.getTargetSource();
+        if (!targetSource.isStatic()) {
+            return;
+        }
+        Object target;
+        try {
+            target = targetSource.getTarget();
+        } catch (Exception e) {
+            return;
+        }
+        if (!(target instanceof RetryHandler)) {
+            return;
+        }
+        String identity = ((RetryHandler) target).identity();
+        for (Advisor advisor : proxyFactory.getAdvisors()) {
+            if (advisor instanceof PointcutAdvisor && advisor.getAdvice() instanceof RetryHandlerClassInterceptor) {
+                proxyFactory.replaceAdvisor(advisor, new DefaultPointcutAdvisor(((PointcutAdvisor) advisor).getPointcut(), new RetryHandlerClassInterceptor(identity)));
+            }
+        }
+    }
 }
@@ -7,14 +7,37 @@ import org.aopalliance.intercept.MethodInvocation;
 import org.apache.commons.lang3.ArrayUtils;
 
 /**
+ * 每个代理的RetryHandler实例使用一个拦截器，创建代理的时候确定identity，调用时不再获取。
+ * 无法在创建代理的时候拿到目标对象（比如说自定义的TargetSource）时，使用identity为null的拦截器，每次调用都从目标对象获取
+ *
  * @author yuni[mn960mn@163.com]
+ * @see RetryAdvisorAutoProxyCreator
  */
 public class RetryHandlerClassInterceptor implements MethodInterceptor {
 
+    private final String identity;
+
+    public RetryHandlerClassInterceptor() {
+        this(null);
+    }
+
+    public RetryHandlerClassInterceptor(String identity) {
+        this.identity = identity;
+    }
+
+    /**
+     * 每次调用都按照identity查找RetryHandler代理，只是一次ConcurrentHashMap查找。
+     * 不按照目标对象缓存：RetryHandler代理引用了目标对象，缓存会让prototype等非单例的RetryHandler无法被回收
+     */
     @Override
     public Object invoke(MethodInvocation invocation) {
-        RetryHandler retryHandler = (RetryHandler) invocation.getThis();
+        String identity = this.identity != null ? this.identity : ((RetryHandler) invocation.getThis()).identity();
+        //RetryHandler代理在所有单例bean初始化之后才注册
+        RetryHandler retryHandler = RetryHandlerRegistration.getOrNull(identity);
+        if (retryHandler == null) {
+            return null;
+        }
         Object[] args = invocation.getArguments();
-        return RetryHandlerRegistration.get(retryHandler.identity()).map(rh -> rh.handle(ArrayUtils.isEmpty(args) ? null : args[0])).orElse(null);
+        return retryHandler.handle(ArrayUtils.isEmpty(args) ? null : args[0]);
     }
 }
\ No newline at end of file
@@ -9,25 +9,51 @@ import org.aopalliance.intercept.MethodInvocation;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.Optional;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * @author yuni[mn960mn@163.com]
  */
 public class RetryHandlerMethodInterceptor implements MethodInterceptor {
 
+    /**
+     * 每个@RetryFunction方法对应的RetryHandler代理，第一次调用的时候解析。
+     * 写时复制，调用的时候只需要一次IdentityHashMap查找，不需要每次都解析注解、拼接identity
+     */
+    private volatile Map<Method, RetryHandler> retryHandlerCache = new IdentityHashMap<>();
+
     @Override
     public Object invoke(MethodInvocation invocation) {
-        RetryFunction retryFunction = invocation.getMethod().getAnnotation(RetryFunction.class);
+        Method method = invocation.getMethod();
+        RetryHandler retryHandler = retryHandlerCache.get(method);
+        if (retryHandler == null) {
+            retryHandler = resolveRetryHandler(method);
+        }
         Object[] args = invocation.getArguments();
+        return retryHandler.handle(ArrayUtils.isEmpty(args) ? null : args[0]);
+    }
+
+    /**
+     * RetryHandler代理在所有单例bean初始化之后才注册，找不到的时候不缓存
+     */
+    private synchronized RetryHandler resolveRetryHandler(Method method) {
+        RetryHandler retryHandler = retryHandlerCache.get(method);
+        if (retryHandler != null) {
+            return retryHandler;
+        }
+        RetryFunction retryFunction = method.getAnnotation(RetryFunction.class);
         String identity = retryFunction.identity();
         if (StringUtils.isBlank(identity)) {
-            identity = RetryHandlerUtils.getMethodIdentity(invocation.getMethod());
-        }
-        Optional<RetryHandler> optional = RetryHandlerRegistration.get(identity);
-        if (optional.isPresent()) {
-            return optional.get().handle(ArrayUtils.isEmpty(args) ? null : args[0]);
+            identity = RetryHandlerUtils.getMethodIdentity(method);
         }
-        throw new IllegalArgumentException("找不到对应的RetryHandler代理，identity=" + identity);
+        String methodIdentity = identity;
+        retryHandler = RetryHandlerRegistration.get(identity).orElseThrow(() -> new IllegalArgumentException("找不到对应的RetryHandler代理，identity=" + methodIdentity));
+
+        Map<Method, RetryHandler> cache = new IdentityHashMap<>(retryHandlerCache);
+        cache.put(method, retryHandler);
+        this.retryHandlerCache = cache;
+        return retryHandler;
     }
 }
\ No newline at end of file
@@ -3,9 +3,12 @@ package com.github.smartretry.spring4.autoconfigure;
 import com.github.smartretry.core.RetryRegistry;
 import com.github.smartretry.core.RetryTaskMapper;
 import com.github.smartretry.spring4.BeanConstants;
+import com.github.smartretry.spring4.EnvironmentConstants;
 import com.github.smartretry.spring4.JdbcRetryTaskMapper;
 import com.github.smartretry.spring4.RetryAnnotationBeanPostProcessor;
+import com.github.smartretry.spring4.RetryTaskArchiver;
 import com.github.smartretry.spring4.registry.quartz.QuartzRetryRegistry;
+import com.github.smartretry.spring4.registry.wheel.TimingWheelRetryRegistry;
 import com.github.smartretry.spring4.support.RetryConditional;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.context.annotation.Bean;
@@ -31,11 +34,22 @@ public class RetryAutoConfiguration {
     }
 
     @Bean
-    @RetryConditional(missingBeanType = RetryRegistry.class)
+    @RetryConditional(missingBeanType = RetryRegistry.class, property = EnvironmentConstants.RETRY_REGISTRY, havingValue = "quartz", matchIfMissing = true)
     public QuartzRetryRegistry defaultRetryRegistry() {
         return new QuartzRetryRegistry();
     }
 
+    @Bean
+    @RetryConditional(missingBeanType = RetryRegistry.class, property = EnvironmentConstants.RETRY_REGISTRY, havingValue = "wheel")
+    public TimingWheelRetryRegistry timingWheelRetryRegistry() {
+        return new TimingWheelRetryRegistry();
+    }
+
+    @Bean
+    public RetryTaskArchiver retryTaskArchiver(RetryTaskMapper retryTaskMapper) {
+        return new RetryTaskArchiver(retryTaskMapper);
+    }
+
     @Bean
     public RetryAnnotationBeanPostProcessor retryAnnotationBeanPostProcessor() {
         return new RetryAnnotationBeanPostProcessor();
@@ -2,6 +2,7 @@ package com.github.smartretry.spring4.autoconfigure;
 
 import com.github.smartretry.spring4.registry.quartz.QuartzRetryRegistry;
 import com.github.smartretry.spring4.registry.quartz.web.AdminController;
+import com.github.smartretry.spring4.registry.wheel.TimingWheelRetryRegistry;
 import com.github.smartretry.spring4.support.RetryConditional;
 import org.springframework.context.annotation.Bean;
 
@@ -15,4 +16,10 @@ public class RetryWebAutoConfiguration {
     public AdminController retryAdminController() {
         return new AdminController();
     }
+
+    @Bean
+    @RetryConditional(hasBeanType = TimingWheelRetryRegistry.class)
+    public AdminController retryWheelAdminController() {
+        return new AdminController();
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.github.smartretry.spring4.registry;
 
+import com.github.smartretry.core.RetryHandler;
 import com.github.smartretry.core.RetryRegistry;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
@@ -8,6 +9,8 @@ import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.core.env.Environment;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author yuni[mn960mn@163.com]
  */
@@ -26,4 +29,18 @@ public abstract class AbstractRetryRegistry implements RetryRegistry, BeanFactor
     public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
         this.defaultListableBeanFactory = (DefaultListableBeanFactory) beanFactory;
     }
+
+    /**
+     * 定时重试的间隔，单位：毫秒。intervalMillis大于0时优先使用
+     */
+    protected static long getIntervalMillis(RetryHandler retryHandler) {
+        return retryHandler.intervalMillis() > 0 ? retryHandler.intervalMillis() : TimeUnit.SECONDS.toMillis(retryHandler.interval());
+    }
+
+    /**
+     * Job管理页面显示的重试间隔，interval单位为秒，intervalMillis加上ms
+     */
+    protected static String getJobPeriod(RetryHandler retryHandler) {
+        return retryHandler.intervalMillis() > 0 ? retryHandler.intervalMillis() + "ms" : Integer.toString(retryHandler.interval());
+    }
 }
@@ -29,9 +29,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class ElasticJobRegistry extends AbstractRetryRegistry implements InitializingBean {
 
     /**
-     * 默认不分片
+     * 默认不分片，RetryHandler/RetryFunction可以通过shardingTotalCount指定分片总数
      */
-    public static final int DEFAULT_SHARDINGTOTALCOUNT = 1;
+    public static final int DEFAULT_SHARDINGTOTALCOUNT = RetryHandler.DEFAULT_SHARDING_TOTAL_COUNT;
 
     private CoordinatorRegistryCenter registryCenter;
 
@@ -83,7 +83,8 @@ public class ElasticJobRegistry extends AbstractRetryRegistry implements Initial
     }
 
     protected JobCoreConfiguration createJobCoreConfiguration(RetryHandler retryHandler) {
-        return JobCoreConfiguration.newBuilder(retryHandler.identity(), retryHandler.cron(), DEFAULT_SHARDINGTOTALCOUNT).description(retryHandler.name()).build();
+        int shardingTotalCount = Math.max(retryHandler.shardingTotalCount(), DEFAULT_SHARDINGTOTALCOUNT);
+        return JobCoreConfiguration.newBuilder(retryHandler.identity(), retryHandler.cron(), shardingTotalCount).description(retryHandler.name()).build();
     }
 
     protected String getJobBeanName(RetryHandler retryHandler) {
@@ -16,8 +16,11 @@ public class RetryJob implements SimpleJob {
         this.retryProcessor = retryProcessor;
     }
 
+    /**
+     * 每个分片项只重试taskId % shardingTotalCount = shardingItem的任务
+     */
     @Override
     public void execute(ShardingContext shardingContext) {
-        retryProcessor.doRetry();
+        retryProcessor.doRetry(shardingContext.getShardingTotalCount(), shardingContext.getShardingItem());
     }
 }
\ No newline at end of file
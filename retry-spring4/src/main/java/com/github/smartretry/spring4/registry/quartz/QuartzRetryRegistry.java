@@ -2,11 +2,15 @@ package com.github.smartretry.spring4.registry.quartz;
 
 import com.github.smartretry.core.RetryHandler;
 import com.github.smartretry.core.RetryProcessor;
+import com.github.smartretry.core.util.VirtualThreadUtils;
 import com.github.smartretry.spring4.BeanConstants;
+import com.github.smartretry.spring4.EnvironmentConstants;
 import com.github.smartretry.spring4.registry.AbstractRetryRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.Trigger;
 import org.quartz.spi.JobFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
@@ -14,11 +18,13 @@ import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.core.OrderComparator;
 import org.springframework.scheduling.quartz.CronTriggerFactoryBean;
 import org.springframework.scheduling.quartz.JobDetailFactoryBean;
+import org.springframework.scheduling.quartz.SchedulerFactoryBean;
 import org.springframework.scheduling.quartz.SimpleTriggerFactoryBean;
 
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -26,6 +32,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 把重试任务注册到quartz中
+ * <p>
+ * 默认每个identity一个Scheduler；retry.quartz.shared=true时所有identity共用一个Scheduler，通过暂停和恢复job来启动、停止任务
  *
  * @author yuni[mn960mn@163.com]
  */
@@ -34,6 +42,16 @@ public class QuartzRetryRegistry extends AbstractRetryRegistry implements Initia
 
     public static final String RETRY_JOB_STARTUPDELAY = "retry.job.startupDelay";
 
+    /**
+     * 共享Scheduler的bean名称
+     */
+    public static final String SHARED_SCHEDULER_BEAN_NAME = "retrySharedScheduler";
+
+    /**
+     * 共享Scheduler默认的线程数量
+     */
+    public static final int DEFAULT_SHARED_THREADCOUNT = 10;
+
     private Executor taskExecutor;
 
     private List<RetryBeanDefinitionBuilderCustomizer> retryBeanDefinitionBuilderCustomizers;
@@ -47,18 +65,52 @@ public class QuartzRetryRegistry extends AbstractRetryRegistry implements Initia
      */
     private int jobStartupDelay;
 
+    /**
+     * 是否所有identity共用一个Scheduler
+     */
+    private boolean shared;
+
     @Override
     public void afterPropertiesSet() {
         this.jobStartupDelay = environment.getProperty(RETRY_JOB_STARTUPDELAY, Integer.class, 30);
+        this.shared = environment.getProperty(EnvironmentConstants.RETRY_QUARTZ_SHARED, Boolean.class, Boolean.FALSE);
 
         this.retryBeanDefinitionBuilderCustomizers = new ArrayList<>(defaultListableBeanFactory.getBeansOfType(RetryBeanDefinitionBuilderCustomizer.class).values());
         this.retryBeanDefinitionBuilderCustomizers.sort(OrderComparator.INSTANCE);
 
         if (defaultListableBeanFactory.containsBean(BeanConstants.DEFAULT_RETRY_TASKEXECUTOR)) {
             this.taskExecutor = defaultListableBeanFactory.getBean(BeanConstants.DEFAULT_RETRY_TASKEXECUTOR, Executor.class);
-        } else {
+        } else if (environment.getProperty(EnvironmentConstants.RETRY_VIRTUALTHREADS_ENABLED, Boolean.class, Boolean.FALSE) && VirtualThreadUtils.isSupported()) {
+            //每次定时重试使用一个虚拟线程执行
+            this.taskExecutor = VirtualThreadUtils.newVirtualThreadPerTaskExecutor();
+        } else if (!shared) {
             this.taskExecutor = Executors.newCachedThreadPool();
         }
+
+        if (shared) {
+            registerSharedScheduler();
+        }
+    }
+
+    /**
+     * 没有自定义线程池（或者使用虚拟线程）时，共享的Scheduler使用固定数量的线程执行所有identity的定时重试
+     */
+    private void registerSharedScheduler() {
+        BeanDefinitionBuilder beanDefinitionBuilder = BeanDefinitionBuilder.rootBeanDefinition(SchedulerFactoryBean.class);
+        beanDefinitionBuilder.addPropertyValue("startupDelay", jobStartupDelay);
+        beanDefinitionBuilder.addPropertyValue("jobFactory", jobFactory);
+        if (taskExecutor == null) {
+            int threadCount = environment.getProperty(EnvironmentConstants.RETRY_QUARTZ_THREADCOUNT, Integer.class, DEFAULT_SHARED_THREADCOUNT);
+            Properties quartzProperties = new Properties();
+            quartzProperties.setProperty("org.quartz.threadPool.threadCount", Integer.toString(threadCount));
+            quartzProperties.setProperty("org.quartz.threadPool.makeThreadsDaemons", "true");
+            beanDefinitionBuilder.addPropertyValue("quartzProperties", quartzProperties);
+            log.info("所有identity共用一个Quartz Scheduler，线程数量为{}", threadCount);
+        } else {
+            beanDefinitionBuilder.addPropertyValue("taskExecutor", taskExecutor);
+            log.info("所有identity共用一个Quartz Scheduler");
+        }
+        defaultListableBeanFactory.registerBeanDefinition(SHARED_SCHEDULER_BEAN_NAME, beanDefinitionBuilder.getBeanDefinition());
     }
 
     @Override
@@ -100,10 +152,10 @@ public class QuartzRetryRegistry extends AbstractRetryRegistry implements Initia
 
             jobTrigger = cronTriggerFactoryBean.getObject();
         } else {
-            jobPeriod = Integer.toString(retryHandler.interval());
+            jobPeriod = getJobPeriod(retryHandler);
 
             SimpleTriggerFactoryBean simpleTriggerFactoryBean = new SimpleTriggerFactoryBean();
-            simpleTriggerFactoryBean.setRepeatInterval(retryHandler.interval() * 1000L);
+            simpleTriggerFactoryBean.setRepeatInterval(getIntervalMillis(retryHandler));
             simpleTriggerFactoryBean.setName(triggerName);
             simpleTriggerFactoryBean.setGroup(group);
             simpleTriggerFactoryBean.setJobDataMap(jobDataMap);
@@ -113,6 +165,11 @@ public class QuartzRetryRegistry extends AbstractRetryRegistry implements Initia
             jobTrigger = simpleTriggerFactoryBean.getObject();
         }
 
+        if (shared) {
+            registerSharedJob(retryHandler, index, jobDetailFactoryBean.getObject(), (Trigger) jobTrigger, jobPeriod);
+            return;
+        }
+
         BeanDefinitionBuilder beanDefinitionBuilder = BeanDefinitionBuilder.rootBeanDefinition(RetrySchedulerFactoryBean.class);
         beanDefinitionBuilder.addPropertyValue("taskExecutor", taskExecutor);
         beanDefinitionBuilder.addPropertyValue("triggers", jobTrigger);
@@ -136,6 +193,26 @@ public class QuartzRetryRegistry extends AbstractRetryRegistry implements Initia
         log.info("identity={}已成功注册到Quartz", retryHandler.identity());
     }
 
+    /**
+     * job和trigger注册到共享的Scheduler上。RetryBeanDefinitionBuilderCustomizer只对RetrySchedulerFactoryBean有效，这里不执行
+     */
+    private void registerSharedJob(RetryHandler retryHandler, int index, JobDetail jobDetail, Trigger trigger, String jobPeriod) {
+        BeanDefinitionBuilder beanDefinitionBuilder = BeanDefinitionBuilder.rootBeanDefinition(SharedSchedulerRetryJob.class);
+        beanDefinitionBuilder.addPropertyReference("scheduler", SHARED_SCHEDULER_BEAN_NAME);
+        beanDefinitionBuilder.addPropertyValue("jobDetail", jobDetail);
+        beanDefinitionBuilder.addPropertyValue("trigger", trigger);
+        beanDefinitionBuilder.addPropertyValue("autoStartup", retryHandler.autoStartup());
+        beanDefinitionBuilder.addPropertyValue("jobName", retryHandler.name());
+        beanDefinitionBuilder.addPropertyValue("jobIdentity", retryHandler.identity());
+        beanDefinitionBuilder.addPropertyValue("jobPeriod", jobPeriod);
+
+        String jobBeanName = "job." + retryHandler.identity() + "." + index;
+        defaultListableBeanFactory.registerBeanDefinition(jobBeanName, beanDefinitionBuilder.getBeanDefinition());
+        //立即初始化，把job和trigger注册到Scheduler上
+        defaultListableBeanFactory.getBean(jobBeanName);
+        log.info("identity={}已成功注册到共享的Quartz Scheduler", retryHandler.identity());
+    }
+
     @Override
     public void destroy() {
         if (taskExecutor instanceof ExecutorService) {
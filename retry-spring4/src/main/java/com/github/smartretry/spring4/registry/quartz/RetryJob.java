@@ -1,12 +1,16 @@
 package com.github.smartretry.spring4.registry.quartz;
 
 import com.github.smartretry.core.RetryProcessor;
+import org.quartz.DisallowConcurrentExecution;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 
 /**
+ * 同一个identity的重试不会同时执行：上一次定时重试还没有结束时，到期的触发和立即执行都会等它结束之后再执行
+ *
  * @author yuni[mn960mn@163.com]
  */
+@DisallowConcurrentExecution
 public class RetryJob implements Job {
 
     private RetryProcessor retryProcessor;
@@ -0,0 +1,43 @@
+package com.github.smartretry.spring4.registry.quartz;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一个identity对应的定时任务，Job管理页面通过这个接口查看、启动、停止和立即执行任务
+ *
+ * @author yuni[mn960mn@163.com]
+ * @see RetrySchedulerFactoryBean
+ * @see SharedSchedulerRetryJob
+ */
+public interface RetryJobOperations {
+
+    String getJobName();
+
+    String getJobIdentity();
+
+    String getJobPeriod();
+
+    JobStatusEnum getJobStatusEnum();
+
+    /**
+     * 下次执行时间
+     *
+     * @return 没有下次执行时间返回null
+     */
+    LocalDateTime getNextTime();
+
+    /**
+     * 立即启动
+     */
+    void startNow();
+
+    /**
+     * 停止
+     */
+    void stop();
+
+    /**
+     * 立即执行
+     */
+    void runAsync();
+}
@@ -23,7 +23,7 @@ import java.util.concurrent.TimeUnit;
 @Setter
 @Getter
 @Slf4j
-public class RetrySchedulerFactoryBean extends SchedulerFactoryBean {
+public class RetrySchedulerFactoryBean extends SchedulerFactoryBean implements RetryJobOperations {
 
     protected String jobName;
 
@@ -49,9 +49,7 @@ public class RetrySchedulerFactoryBean extends SchedulerFactoryBean {
         jobStatusEnum = JobStatusEnum.STOPED;
     }
 
-    /**
-     * 立即启动
-     */
+    @Override
     public void startNow() {
         try {
             this.getObject().start();
@@ -61,9 +59,7 @@ public class RetrySchedulerFactoryBean extends SchedulerFactoryBean {
         jobStatusEnum = JobStatusEnum.RUNNING;
     }
 
-    /**
-     * 立即执行
-     */
+    @Override
     public void runAsync() {
         new Thread(() -> {
             try {
@@ -100,6 +96,7 @@ public class RetrySchedulerFactoryBean extends SchedulerFactoryBean {
         }
     }
 
+    @Override
     public LocalDateTime getNextTime() {
         GroupMatcher<TriggerKey> triggerKey = GroupMatcher.groupEndsWith(jobGroup);
 
@@ -0,0 +1,114 @@
+package com.github.smartretry.spring4.registry.quartz;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.SchedulingException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * 共享Scheduler模式下，一个identity对应的定时任务。所有identity的job和trigger都注册到同一个Scheduler上
+ * <p>
+ * 启动、停止通过暂停和恢复job实现，不会影响其他identity
+ *
+ * @author yuni[mn960mn@163.com]
+ * @see QuartzRetryRegistry
+ */
+@Setter
+@Getter
+public class SharedSchedulerRetryJob implements RetryJobOperations, InitializingBean {
+
+    private Scheduler scheduler;
+
+    private JobDetail jobDetail;
+
+    private Trigger trigger;
+
+    private boolean autoStartup = true;
+
+    private String jobName;
+
+    private String jobIdentity;
+
+    private String jobPeriod;
+
+    private JobStatusEnum jobStatusEnum = JobStatusEnum.INIT;
+
+    @Override
+    public void afterPropertiesSet() throws SchedulerException {
+        scheduler.scheduleJob(jobDetail, trigger);
+        if (!autoStartup) {
+            scheduler.pauseJob(jobDetail.getKey());
+            jobStatusEnum = JobStatusEnum.PREPARE;
+        }
+    }
+
+    /**
+     * Scheduler延迟启动，启动之前为INIT
+     */
+    @Override
+    public JobStatusEnum getJobStatusEnum() {
+        if (jobStatusEnum == JobStatusEnum.INIT && isSchedulerStarted()) {
+            return JobStatusEnum.RUNNING;
+        }
+        return jobStatusEnum;
+    }
+
+    private boolean isSchedulerStarted() {
+        try {
+            return scheduler.isStarted();
+        } catch (SchedulerException e) {
+            throw new SchedulingException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public LocalDateTime getNextTime() {
+        try {
+            Trigger current = scheduler.getTrigger(trigger.getKey());
+            Date nextFireTime = current == null ? null : current.getNextFireTime();
+            return nextFireTime == null ? null : LocalDateTime.ofInstant(nextFireTime.toInstant(), ZoneId.systemDefault());
+        } catch (SchedulerException e) {
+            throw new SchedulingException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void startNow() {
+        try {
+            scheduler.resumeJob(jobDetail.getKey());
+        } catch (SchedulerException e) {
+            throw new SchedulingException("Could not resume Quartz Job", e);
+        }
+        jobStatusEnum = JobStatusEnum.RUNNING;
+    }
+
+    @Override
+    public void stop() {
+        try {
+            scheduler.pauseJob(jobDetail.getKey());
+        } catch (SchedulerException e) {
+            throw new SchedulingException("Could not pause Quartz Job", e);
+        }
+        jobStatusEnum = JobStatusEnum.STOPED;
+    }
+
+    /**
+     * Quartz的triggerJob本身就是异步执行的，由Scheduler的线程池执行
+     */
+    @Override
+    public void runAsync() {
+        try {
+            scheduler.triggerJob(jobDetail.getKey());
+        } catch (SchedulerException e) {
+            throw new SchedulingException("Could not execute Quartz Job", e);
+        }
+    }
+}
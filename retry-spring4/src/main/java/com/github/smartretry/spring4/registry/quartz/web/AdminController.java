@@ -1,7 +1,7 @@
 package com.github.smartretry.spring4.registry.quartz.web;
 
 import com.github.smartretry.spring4.registry.quartz.JobStatusEnum;
-import com.github.smartretry.spring4.registry.quartz.RetrySchedulerFactoryBean;
+import com.github.smartretry.spring4.registry.quartz.RetryJobOperations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,7 +20,7 @@ import java.util.stream.Collectors;
  * job管理
  *
  * @author yuni[mn960mn@163.com]
- * @see RetrySchedulerFactoryBean
+ * @see RetryJobOperations
  */
 @RequestMapping("/job")
 public class AdminController {
@@ -35,10 +35,10 @@ public class AdminController {
     @ResponseBody
     @GetMapping("/getList")
     public List<JobDetail> getJobList() {
-        return applicationContext.getBeansOfType(RetrySchedulerFactoryBean.class).values().stream().map(this::getjobDetail).collect(Collectors.toList());
+        return applicationContext.getBeansOfType(RetryJobOperations.class).values().stream().map(this::getjobDetail).collect(Collectors.toList());
     }
 
-    private JobDetail getjobDetail(RetrySchedulerFactoryBean bean) {
+    private JobDetail getjobDetail(RetryJobOperations bean) {
         JobDetail jobDetail = new JobDetail();
         jobDetail.setIdentity(bean.getJobIdentity());
         jobDetail.setName(bean.getJobName() == null ? "" : bean.getJobName());
@@ -56,27 +56,27 @@ public class AdminController {
     @ResponseBody
     @PostMapping("/start")
     public String startJob(@RequestParam("identity") String identity) {
-        Optional<RetrySchedulerFactoryBean> optional = applicationContext.getBeansOfType(RetrySchedulerFactoryBean.class).values()
+        Optional<RetryJobOperations> optional = applicationContext.getBeansOfType(RetryJobOperations.class).values()
                 .stream().filter(job -> job.getJobIdentity().equals(identity)).filter(job -> job.getJobStatusEnum() != JobStatusEnum.RUNNING).findAny();
-        optional.ifPresent(RetrySchedulerFactoryBean::startNow);
+        optional.ifPresent(RetryJobOperations::startNow);
         return RESPONSE;
     }
 
     @ResponseBody
     @PostMapping("/stop")
     public String stopJob(@RequestParam("identity") String identity) {
-        Optional<RetrySchedulerFactoryBean> optional = applicationContext.getBeansOfType(RetrySchedulerFactoryBean.class).values()
+        Optional<RetryJobOperations> optional = applicationContext.getBeansOfType(RetryJobOperations.class).values()
                 .stream().filter(job -> job.getJobIdentity().equals(identity)).filter(job -> job.getJobStatusEnum() == JobStatusEnum.RUNNING).findAny();
-        optional.ifPresent(RetrySchedulerFactoryBean::stop);
+        optional.ifPresent(RetryJobOperations::stop);
         return RESPONSE;
     }
 
     @ResponseBody
     @PostMapping("/run")
     public String runJob(@RequestParam("identity") String identity) {
-        Optional<RetrySchedulerFactoryBean> optional = applicationContext.getBeansOfType(RetrySchedulerFactoryBean.class).values()
+        Optional<RetryJobOperations> optional = applicationContext.getBeansOfType(RetryJobOperations.class).values()
                 .stream().filter(job -> job.getJobIdentity().equals(identity)).filter(job -> job.getJobStatusEnum() == JobStatusEnum.RUNNING).findAny();
-        optional.ifPresent(RetrySchedulerFactoryBean::runAsync);
+        optional.ifPresent(RetryJobOperations::runAsync);
         return RESPONSE;
     }
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package com.github.smartretry.spring4.registry.wheel;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 哈希时间轮。只有一个tick线程，到期的任务交给executor执行，tick线程本身不执行任务
+ * <p>
+ * 新增的任务先放到队列里面，由tick线程在下一个tick放到对应的槽位上，所以添加任务不需要加锁。精度为tickDuration
+ *
+ * @author yuni[mn960mn@163.com]
+ * @see TimingWheelRetryRegistry
+ */
+@Slf4j
+public class HashedTimingWheel {
+
+    private final long tickNanos;
+
+    private final long mask;
+
+    private final LinkedList<Timeout>[] wheel;
+
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final Executor executor;
+
+    private final Thread tickThread;
+
+    private final long startTime;
+
+    private long tick;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param tickDuration 每个tick的时长，单位：毫秒
+     * @param wheelSize    槽位的数量，会被调整为2的幂
+     * @param executor     执行到期任务的线程池
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickDuration, int wheelSize, Executor executor) {
+        if (tickDuration <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickDuration、wheelSize必须大于0");
+        }
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        this.mask = size - 1L;
+        this.wheel = new LinkedList[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new LinkedList<>();
+        }
+        this.executor = executor;
+        this.startTime = System.nanoTime();
+        this.tickThread = new Thread(this::run, "retry-timing-wheel");
+        this.tickThread.setDaemon(true);
+        this.tickThread.start();
+    }
+
+    /**
+     * 添加一个delay之后执行的任务
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("时间轮已经停止");
+        }
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay)));
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        running = false;
+        tickThread.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            if (!waitForNextTick()) {
+                break;
+            }
+            transferPendingTimeouts();
+            expireTimeouts(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private boolean waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos <= 0) {
+                return true;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            //已经过期的任务放到当前的槽位，本次tick就执行
+            wheel[(int) (Math.max(calculated, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expireTimeouts(LinkedList<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                iterator.remove();
+                try {
+                    executor.execute(timeout.task);
+                } catch (RejectedExecutionException e) {
+                    log.error("时间轮的任务被拒绝执行：" + e.getMessage(), e);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * 时间轮中的一个任务
+     */
+    public static final class Timeout {
+
+        private final Runnable task;
+
+        private final long deadline;
+
+        private long remainingRounds;
+
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
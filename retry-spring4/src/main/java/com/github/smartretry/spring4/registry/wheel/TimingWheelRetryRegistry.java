@@ -0,0 +1,295 @@
+package com.github.smartretry.spring4.registry.wheel;
+
+import com.github.smartretry.core.RetryHandler;
+import com.github.smartretry.core.RetryProcessor;
+import com.github.smartretry.core.util.VirtualThreadUtils;
+import com.github.smartretry.spring4.BeanConstants;
+import com.github.smartretry.spring4.EnvironmentConstants;
+import com.github.smartretry.spring4.registry.AbstractRetryRegistry;
+import com.github.smartretry.spring4.registry.quartz.JobStatusEnum;
+import com.github.smartretry.spring4.registry.quartz.QuartzRetryRegistry;
+import com.github.smartretry.spring4.registry.quartz.RetryJobOperations;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不依赖Quartz的注册器。所有identity共用一个时间轮（一个tick线程）和一个固定大小的线程池，适合只需要interval或者cron触发的场景
+ * <p>
+ * 同一个identity上一次重试完成之后才会计算下一次的触发时间，所以同一个identity的重试不会同时执行。
+ * 每个identity注册一个RetryJobOperations的bean，支持Job管理页面。配置retry.registry=wheel开启
+ *
+ * @author yuni[mn960mn@163.com]
+ * @see HashedTimingWheel
+ */
+@Slf4j
+public class TimingWheelRetryRegistry extends AbstractRetryRegistry implements InitializingBean, DisposableBean {
+
+    /**
+     * 默认每个tick 100毫秒
+     */
+    public static final long DEFAULT_TICKDURATION = 100;
+
+    public static final int DEFAULT_WHEELSIZE = 512;
+
+    public static final int DEFAULT_THREADCOUNT = 4;
+
+    private HashedTimingWheel timingWheel;
+
+    private Executor taskExecutor;
+
+    /**
+     * 自己创建的线程池，销毁的时候需要关闭
+     */
+    private ExecutorService ownedExecutor;
+
+    /**
+     * 延迟多少毫秒之后，再第一次触发重试
+     */
+    private long startupDelay;
+
+    private List<TimingWheelJob> jobs = new CopyOnWriteArrayList<>();
+
+    private AtomicInteger jobNameIndex = new AtomicInteger(0);
+
+    @Override
+    public void afterPropertiesSet() {
+        this.startupDelay = TimeUnit.SECONDS.toMillis(environment.getProperty(QuartzRetryRegistry.RETRY_JOB_STARTUPDELAY, Integer.class, 30));
+        long tickDuration = environment.getProperty(EnvironmentConstants.RETRY_WHEEL_TICKDURATION, Long.class, DEFAULT_TICKDURATION);
+
+        if (defaultListableBeanFactory.containsBean(BeanConstants.DEFAULT_RETRY_TASKEXECUTOR)) {
+            this.taskExecutor = defaultListableBeanFactory.getBean(BeanConstants.DEFAULT_RETRY_TASKEXECUTOR, Executor.class);
+        } else if (environment.getProperty(EnvironmentConstants.RETRY_VIRTUALTHREADS_ENABLED, Boolean.class, Boolean.FALSE) && VirtualThreadUtils.isSupported()) {
+            this.ownedExecutor = VirtualThreadUtils.newVirtualThreadPerTaskExecutor();
+            this.taskExecutor = ownedExecutor;
+        } else {
+            int threadCount = environment.getProperty(EnvironmentConstants.RETRY_WHEEL_THREADCOUNT, Integer.class, DEFAULT_THREADCOUNT);
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.ownedExecutor = Executors.newFixedThreadPool(threadCount, r -> {
+                Thread thread = new Thread(r, "retry-wheel-worker-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.taskExecutor = ownedExecutor;
+        }
+        this.timingWheel = new HashedTimingWheel(tickDuration, DEFAULT_WHEELSIZE, taskExecutor);
+        log.info("使用时间轮注册重试任务，tickDuration={}ms", tickDuration);
+    }
+
+    @Override
+    public void register(RetryHandler retryHandler, RetryProcessor retryProcessor) {
+        TimingWheelJob job;
+        if (StringUtils.isNotBlank(retryHandler.cron())) {
+            CronSequenceGenerator cronSequenceGenerator = newCronSequenceGenerator(retryHandler);
+            job = new TimingWheelJob(retryHandler, retryHandler.cron(), retryProcessor, previous -> cronSequenceGenerator.next(new Date(Math.max(previous, System.currentTimeMillis()))).getTime());
+        } else {
+            long interval = getIntervalMillis(retryHandler);
+            if (interval <= 0) {
+                throw new IllegalArgumentException("identity=" + retryHandler.identity() + "的interval必须大于0");
+            }
+            //按照上一次计划的触发时间计算，执行时间超过interval时不补触发
+            job = new TimingWheelJob(retryHandler, getJobPeriod(retryHandler), retryProcessor, previous -> Math.max(previous + interval, System.currentTimeMillis()));
+        }
+        jobs.add(job);
+        defaultListableBeanFactory.registerSingleton("job." + retryHandler.identity() + "." + jobNameIndex.incrementAndGet(), job);
+        if (retryHandler.autoStartup()) {
+            job.schedule(System.currentTimeMillis() + startupDelay);
+            log.info("identity={}已成功注册到时间轮", retryHandler.identity());
+        } else {
+            log.info("identity={}已注册到时间轮，autoStartup为false，需要在Job管理页面启动", retryHandler.identity());
+        }
+    }
+
+    /**
+     * 注册的时候校验cron表达式。CronSequenceGenerator只支持Spring的6位cron，不支持Quartz特有的L、W、#和年份字段
+     */
+    private static CronSequenceGenerator newCronSequenceGenerator(RetryHandler retryHandler) {
+        String cron = retryHandler.cron();
+        try {
+            return new CronSequenceGenerator(cron);
+        } catch (IllegalArgumentException e) {
+            if (isQuartzCron(cron)) {
+                throw new IllegalArgumentException("identity=" + retryHandler.identity() + "的cron表达式[" + cron + "]使用了Quartz特有的L、W、#或者年份字段，retry.registry=wheel时不支持，请改成6位的cron表达式或者使用retry.registry=quartz", e);
+            }
+            throw new IllegalArgumentException("identity=" + retryHandler.identity() + "的cron表达式[" + cron + "]错误：" + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isQuartzCron(String cron) {
+        String[] fields = StringUtils.split(cron);
+        if (fields.length == 7) {
+            return true;
+        }
+        //日期字段的L、W，星期字段的L（如6L）和#（如6#3）。星期的名称里面也有W（WED），所以不能直接判断是否包含W
+        return fields.length == 6 && (StringUtils.containsAny(fields[3], 'L', 'W') || fields[5].contains("#") || fields[5].matches("(.*[0-9,])?L"));
+    }
+
+    @Override
+    public void destroy() {
+        jobs.forEach(TimingWheelJob::stop);
+        if (timingWheel != null) {
+            timingWheel.stop();
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    @FunctionalInterface
+    private interface NextFireTime {
+
+        /**
+         * @param previous 上一次计划的触发时间，单位：毫秒
+         * @return 下一次的触发时间，单位：毫秒
+         */
+        long next(long previous);
+    }
+
+    /**
+     * 一个identity对应的定时任务。停止之后取消时间轮里面的下一次触发，正在执行的重试不受影响
+     */
+    private class TimingWheelJob implements Runnable, RetryJobOperations {
+
+        private final String identity;
+
+        private final String name;
+
+        private final String period;
+
+        private final RetryProcessor retryProcessor;
+
+        private final NextFireTime nextFireTime;
+
+        /**
+         * 正在执行重试时为true。立即执行和到期的触发遇到正在执行的重试时直接跳过
+         */
+        private final AtomicBoolean executing = new AtomicBoolean();
+
+        private long fireTime;
+
+        private HashedTimingWheel.Timeout timeout;
+
+        private volatile JobStatusEnum jobStatusEnum;
+
+        TimingWheelJob(RetryHandler retryHandler, String period, RetryProcessor retryProcessor, NextFireTime nextFireTime) {
+            this.identity = retryHandler.identity();
+            this.name = retryHandler.name();
+            this.period = period;
+            this.retryProcessor = retryProcessor;
+            this.nextFireTime = nextFireTime;
+            this.jobStatusEnum = retryHandler.autoStartup() ? JobStatusEnum.INIT : JobStatusEnum.PREPARE;
+        }
+
+        synchronized void schedule(long nextFireTime) {
+            this.fireTime = nextFireTime;
+            this.timeout = timingWheel.newTimeout(this, fireTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        private synchronized boolean isScheduled() {
+            return timeout != null && !timeout.isCancelled();
+        }
+
+        @Override
+        public String getJobName() {
+            return name;
+        }
+
+        @Override
+        public String getJobIdentity() {
+            return identity;
+        }
+
+        @Override
+        public String getJobPeriod() {
+            return period;
+        }
+
+        @Override
+        public JobStatusEnum getJobStatusEnum() {
+            return jobStatusEnum;
+        }
+
+        @Override
+        public synchronized LocalDateTime getNextTime() {
+            return isScheduled() ? LocalDateTime.ofInstant(Instant.ofEpochMilli(fireTime), ZoneId.systemDefault()) : null;
+        }
+
+        /**
+         * 马上触发一次，之后按照interval或者cron继续触发
+         */
+        @Override
+        public synchronized void startNow() {
+            if (!isScheduled()) {
+                schedule(System.currentTimeMillis());
+            }
+            jobStatusEnum = JobStatusEnum.RUNNING;
+        }
+
+        @Override
+        public synchronized void stop() {
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            jobStatusEnum = JobStatusEnum.STOPED;
+        }
+
+        @Override
+        public void runAsync() {
+            taskExecutor.execute(this::execute);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                //已经触发，执行完之后再计算下一次的触发时间
+                this.timeout = null;
+                if (jobStatusEnum == JobStatusEnum.INIT) {
+                    jobStatusEnum = JobStatusEnum.RUNNING;
+                }
+            }
+            try {
+                execute();
+            } finally {
+                synchronized (this) {
+                    //执行期间被停止，或者停止之后又启动（已经有了新的触发），都不再计算下一次的触发时间
+                    if (timeout == null && jobStatusEnum != JobStatusEnum.STOPED) {
+                        try {
+                            schedule(nextFireTime.next(fireTime));
+                        } catch (IllegalStateException e) {
+                            //时间轮已经停止
+                        }
+                    }
+                }
+            }
+        }
+
+        private void execute() {
+            if (!executing.compareAndSet(false, true)) {
+                log.info("identity={}上一次重试还没有结束，跳过本次重试", identity);
+                return;
+            }
+            try {
+                retryProcessor.doRetry();
+            } catch (Throwable e) {
+                log.error("identity=" + identity + "重试失败：" + e.getMessage(), e);
+            } finally {
+                executing.set(false);
+            }
+        }
+    }
+}
@@ -9,7 +9,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * 考虑到实际使用的可能不是springboot环境，所以才有此类。类似springboot中的@ConditionalOnMissingBean、@ConditionalOnBean
+ * 考虑到实际使用的可能不是springboot环境，所以才有此类。类似springboot中的@ConditionalOnMissingBean、@ConditionalOnBean、@ConditionalOnProperty
  *
  * @author yuni[mn960mn@163.com]
  * @see RetryConfigurationCondition
@@ -23,4 +23,19 @@ public @interface RetryConditional {
     Class<?> missingBeanType() default Void.class;
 
     Class<?> hasBeanType() default Void.class;
+
+    /**
+     * 配置项的名称，类似springboot中的@ConditionalOnProperty。和missingBeanType、hasBeanType同时配置时，需要同时满足
+     */
+    String property() default "";
+
+    /**
+     * 配置项的值需要等于havingValue（忽略大小写）
+     */
+    String havingValue() default "";
+
+    /**
+     * 没有配置该配置项时是否满足条件
+     */
+    boolean matchIfMissing() default false;
 }
@@ -1,5 +1,6 @@
 package com.github.smartretry.spring4.support;
 
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.beans.factory.NoUniqueBeanDefinitionException;
@@ -23,6 +24,14 @@ public class RetryConfigurationCondition implements ConfigurationCondition {
     @Override
     public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
         Map<String, Object> map = metadata.getAnnotationAttributes(RetryConditional.class.getName());
+        String property = (String) map.get("property");
+        if (StringUtils.isNotBlank(property)) {
+            String value = context.getEnvironment().getProperty(property);
+            boolean matched = value == null ? (Boolean) map.get("matchIfMissing") : value.trim().equalsIgnoreCase((String) map.get("havingValue"));
+            if (!matched) {
+                return false;
+            }
+        }
         Class<?> missingBeanType = (Class<?>) map.get("missingBeanType");
         if (!Void.class.equals(missingBeanType)) {
             try {
@@ -41,6 +50,9 @@ public class RetryConfigurationCondition implements ConfigurationCondition {
                 return false;
             }
         }
+        if (StringUtils.isNotBlank(property)) {
+            return true;
+        }
         throw new IllegalArgumentException("至少要有一个Condition条件");
     }
 
@@ -6,6 +6,22 @@ status tinyint not null COMMENT '状态。1: 处理中，2: 成功，3: 失败',
 retry_count int not null default 0 COMMENT '重试次数',
 remark varchar(1000) COMMENT '备注',
 create_date datetime not null,
-edit_date datetime) ENGINE=InnoDB COMMENT='系统重试表';
+edit_date datetime,
+next_retry_at datetime not null COMMENT '最早可以重试的时间',
+owner varchar(64) COMMENT '抢占任务的节点',
+lease_until datetime COMMENT '抢占的过期时间') ENGINE=InnoDB COMMENT='系统重试表';
 
-create index idx_identityname_status ON sys_retry_task(identity_name asc,status asc);
\ No newline at end of file
+create index idx_identityname_status_taskid_nextretryat ON sys_retry_task(identity_name asc,status asc,task_id asc,next_retry_at asc);
+create index idx_status_taskid_editdate ON sys_retry_task(status asc,task_id asc,edit_date asc);
+
+create table sys_retry_task_archive (
+task_id bigint not null primary key,
+identity_name varchar(50) not null COMMENT '任务的唯一标识',
+params text COMMENT '参数',
+status tinyint not null COMMENT '状态。1: 处理中，2: 成功，3: 失败',
+retry_count int not null default 0 COMMENT '重试次数',
+remark varchar(1000) COMMENT '备注',
+create_date datetime not null,
+edit_date datetime,
+next_retry_at datetime,
+archive_date datetime not null COMMENT '归档时间') ENGINE=InnoDB COMMENT='系统重试归档表';
\ No newline at end of file
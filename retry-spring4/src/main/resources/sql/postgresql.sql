@@ -6,13 +6,35 @@ status smallint not null,
 retry_count int not null default 0,
 remark varchar(1000),
 create_date timestamp not null,
-edit_date timestamp);
+edit_date timestamp,
+next_retry_at timestamp not null,
+owner varchar(64),
+lease_until timestamp);
 
 comment on column sys_retry_task.identity_name is '任务的唯一标识';
 comment on column sys_retry_task.params is '参数';
 comment on column sys_retry_task.status is '状态。1: 处理中，2: 成功，3: 失败';
 comment on column sys_retry_task.retry_count is '重试次数';
 comment on column sys_retry_task.remark is '备注';
+comment on column sys_retry_task.next_retry_at is '最早可以重试的时间';
+comment on column sys_retry_task.owner is '抢占任务的节点';
+comment on column sys_retry_task.lease_until is '抢占的过期时间';
 comment on table sys_retry_task is '系统重试表';
 
-create index idx_identityname_status ON sys_retry_task(identity_name asc,status asc);
\ No newline at end of file
+create index idx_identityname_status_taskid_nextretryat ON sys_retry_task(identity_name asc,status asc,task_id asc,next_retry_at asc);
+create index idx_status_taskid_editdate ON sys_retry_task(status asc,task_id asc,edit_date asc);
+
+create table sys_retry_task_archive (
+task_id bigint not null primary key,
+identity_name varchar(50) not null,
+params text,
+status smallint not null,
+retry_count int not null default 0,
+remark varchar(1000),
+create_date timestamp not null,
+edit_date timestamp,
+next_retry_at timestamp,
+archive_date timestamp not null);
+
+comment on column sys_retry_task_archive.archive_date is '归档时间';
+comment on table sys_retry_task_archive is '系统重试归档表';
\ No newline at end of file
@@ -6,12 +6,33 @@ Status tinyint not null,
 RetryCount int not null default 0,
 Remark nvarchar(1000),
 CreateDate datetime not null,
-EditDate datetime);
+EditDate datetime,
+NextRetryDate datetime not null,
+Owner varchar(64),
+LeaseUntil datetime);
 
-create index IDX_IdentityName_Status ON SysRetryTask(IdentityName asc,Status asc);
+create index IDX_IdentityName_Status_TaskId_NextRetryDate ON SysRetryTask(IdentityName asc,Status asc,TaskId asc,NextRetryDate asc);
+create index IDX_Status_TaskId_EditDate ON SysRetryTask(Status asc,TaskId asc,EditDate asc);
 
 execute sp_addextendedproperty 'MS_Description', '任务的唯一标识','user', 'dbo', 'table', 'SysRetryTask', 'column', 'IdentityName';
 execute sp_addextendedproperty 'MS_Description', '参数','user', 'dbo', 'table', 'SysRetryTask', 'column', 'Params';
 execute sp_addextendedproperty 'MS_Description', '状态。1: 处理中，2: 成功，3: 失败','user', 'dbo', 'table', 'SysRetryTask', 'column', 'Status';
 execute sp_addextendedproperty 'MS_Description', '重试次数','user', 'dbo', 'table', 'SysRetryTask', 'column', 'RetryCount';
 execute sp_addextendedproperty 'MS_Description', '备注','user', 'dbo', 'table', 'SysRetryTask', 'column', 'Remark';
+execute sp_addextendedproperty 'MS_Description', '最早可以重试的时间','user', 'dbo', 'table', 'SysRetryTask', 'column', 'NextRetryDate';
+execute sp_addextendedproperty 'MS_Description', '抢占任务的节点','user', 'dbo', 'table', 'SysRetryTask', 'column', 'Owner';
+execute sp_addextendedproperty 'MS_Description', '抢占的过期时间','user', 'dbo', 'table', 'SysRetryTask', 'column', 'LeaseUntil';
+
+create table SysRetryTaskArchive (
+TaskId bigint not null primary key,
+IdentityName varchar(50) not null,
+Params text,
+Status tinyint not null,
+RetryCount int not null default 0,
+Remark nvarchar(1000),
+CreateDate datetime not null,
+EditDate datetime,
+NextRetryDate datetime,
+ArchiveDate datetime not null);
+
+execute sp_addextendedproperty 'MS_Description', '归档时间','user', 'dbo', 'table', 'SysRetryTaskArchive', 'column', 'ArchiveDate';
\ No newline at end of file
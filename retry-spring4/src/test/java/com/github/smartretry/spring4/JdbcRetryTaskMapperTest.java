@@ -0,0 +1,327 @@
+package com.github.smartretry.spring4;
+
+import com.github.smartretry.core.RetrySerializer;
+import com.github.smartretry.core.RetryTask;
+import com.github.smartretry.core.impl.DefaultRetryProcessor;
+import com.github.smartretry.core.support.GenericRetryHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class JdbcRetryTaskMapperTest {
+
+    private static final String IDENTITY = "user.order";
+
+    private EmbeddedDatabase database;
+
+    private JdbcRetryTaskMapper retryTaskMapper;
+
+    @Before
+    public void setup() {
+        this.database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).addScript("sql/h2.sql").build();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(EnvironmentConstants.RETRY_CLAIM_ENABLED, "true");
+        this.retryTaskMapper = newRetryTaskMapper(database, "config/h2.properties", properties);
+    }
+
+    @After
+    public void close() {
+        database.shutdown();
+    }
+
+    @Test
+    public void testClaimNeedRetryTaskList() {
+        List<RetryTask> tasks = insertRetryTasks(3);
+
+        List<RetryTask> claimed = retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 2, "node-1", 300);
+        assertThat(claimed).extracting(RetryTask::getTaskId).containsExactly(tasks.get(0).getTaskId(), tasks.get(1).getTaskId());
+        assertThat(getOwner(tasks.get(0).getTaskId())).isEqualTo("node-1");
+
+        //已经被占用的任务不会被其他节点抢占到
+        claimed = retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 2, "node-2", 300);
+        assertThat(claimed).extracting(RetryTask::getTaskId).containsExactly(tasks.get(2).getTaskId());
+        assertThat(retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 2, "node-3", 300)).isEmpty();
+    }
+
+    @Test
+    public void testConcurrentClaim() throws Exception {
+        insertRetryTasks(40);
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Long>> node1 = executorService.submit(claimAll(latch, "node-1"));
+            Future<List<Long>> node2 = executorService.submit(claimAll(latch, "node-2"));
+            latch.countDown();
+
+            List<Long> taskIds = new ArrayList<>(node1.get());
+            taskIds.addAll(node2.get());
+            //每个任务只被一个节点抢占到
+            assertThat(taskIds).hasSize(40).doesNotHaveDuplicates();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testClaimAfterLeaseExpired() {
+        RetryTask retryTask = insertRetryTasks(1).get(0);
+        assertThat(retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 10, "node-1", 300)).hasSize(1);
+        assertThat(retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 10, "node-2", 300)).isEmpty();
+
+        //node-1宕机，占用过期之后可以被其他节点抢占
+        retryTaskMapper.update("update sys_retry_task set lease_until=dateadd(second,-1,localtimestamp) where task_id=?", retryTask.getTaskId());
+        List<RetryTask> claimed = retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 10, "node-2", 300);
+        assertThat(claimed).extracting(RetryTask::getTaskId).containsExactly(retryTask.getTaskId());
+        assertThat(getOwner(retryTask.getTaskId())).isEqualTo("node-2");
+    }
+
+    @Test
+    public void testUpdateReleasesLease() {
+        insertRetryTasks(1);
+        RetryTask retryTask = retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 10, "node-1", 300).get(0);
+
+        //重试失败，不需要等占用过期就可以被再次重试
+        retryTask.setRetryCount(retryTask.getRetryCount() + 1);
+        retryTask.setRemark("mock exception");
+        retryTask.setNextRetryDate(LocalDateTime.now().minusSeconds(1));
+        retryTaskMapper.updateBatch(Collections.singletonList(retryTask));
+
+        assertThat(getOwner(retryTask.getTaskId())).isNull();
+        List<RetryTask> claimed = retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 10, "node-2", 300);
+        assertThat(claimed).extracting(RetryTask::getRetryCount).containsExactly(1);
+    }
+
+    @Test
+    public void testReleaseClaim() {
+        List<RetryTask> tasks = insertRetryTasks(2);
+        retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 10, "node-1", 300);
+
+        //只释放仍然被owner占用的任务
+        List<Long> taskIds = Arrays.asList(tasks.get(0).getTaskId(), tasks.get(1).getTaskId());
+        assertThat(retryTaskMapper.releaseClaim(taskIds, "node-2")).isEqualTo(0);
+        assertThat(retryTaskMapper.releaseClaim(taskIds, "node-1")).isEqualTo(2);
+        assertThat(getOwner(tasks.get(0).getTaskId())).isNull();
+        assertThat(retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 10, "node-2", 300)).hasSize(2);
+    }
+
+    @Test
+    public void testReleaseClaimWhenLimited() {
+        List<RetryTask> tasks = insertRetryTasks(3);
+        GenericRetryHandler retryHandler = PowerMockito.mock(GenericRetryHandler.class);
+        when(retryHandler.identity()).thenReturn(IDENTITY);
+        when(retryHandler.maxRetryCount()).thenReturn(5);
+        //每秒只能重试一个任务，后面的两个任务被限流
+        when(retryHandler.maxAttemptsPerSecond()).thenReturn(1);
+        DefaultRetryProcessor retryProcessor = new DefaultRetryProcessor(retryHandler, retryTaskMapper, PowerMockito.mock(RetrySerializer.class));
+        retryProcessor.setClaimOwner("node-1");
+        try {
+            retryProcessor.doRetry();
+        } finally {
+            retryProcessor.close();
+        }
+
+        assertThat(getStatus(tasks.get(0).getTaskId())).isEqualTo(RetryTask.STATUS_SUCCESS);
+        //被限流的任务马上释放占用，其他节点不需要等leaseSeconds过期
+        assertThat(getOwner(tasks.get(1).getTaskId())).isNull();
+        assertThat(getOwner(tasks.get(2).getTaskId())).isNull();
+        List<RetryTask> claimed = retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 10, "node-2", 300);
+        assertThat(claimed).extracting(RetryTask::getTaskId).containsExactly(tasks.get(1).getTaskId(), tasks.get(2).getTaskId());
+    }
+
+    private Callable<List<Long>> claimAll(CountDownLatch latch, String owner) {
+        return () -> {
+            latch.await();
+            List<Long> taskIds = new ArrayList<>();
+            List<RetryTask> claimed;
+            while (!(claimed = retryTaskMapper.claimNeedRetryTaskList(IDENTITY, 5, 0, 0L, 3, owner, 300)).isEmpty()) {
+                claimed.forEach(task -> taskIds.add(task.getTaskId()));
+            }
+            return taskIds;
+        };
+    }
+
+    private JdbcRetryTaskMapper newRetryTaskMapper(DataSource dataSource, String filepath, Map<String, Object> properties) {
+        properties.put(EnvironmentConstants.RETRY_SQLMAPPING_FILEPATH_KEY, filepath);
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        JdbcRetryTaskMapper jdbcRetryTaskMapper = new JdbcRetryTaskMapper(dataSource);
+        jdbcRetryTaskMapper.setEnvironment(environment);
+        jdbcRetryTaskMapper.initSqlMappingProperties();
+        return jdbcRetryTaskMapper;
+    }
+
+    @Test
+    public void testNextRetryDate() {
+        assertThat(retryTaskMapper.isNextRetryDateEnabled()).isTrue();
+        RetryTask dueTask = insertRetryTasks(1).get(0);
+        RetryTask delayedTask = newRetryTask(LocalDateTime.now().plusSeconds(300));
+        retryTaskMapper.insert(delayedTask);
+
+        List<RetryTask> tasks = retryTaskMapper.queryNeedRetryTaskList(IDENTITY, 5, 0, 0L, 10);
+        assertThat(tasks).extracting(RetryTask::getTaskId).containsExactly(dueTask.getTaskId());
+        //按照数据库的当前时间加上延迟秒数保存
+        Integer delay = retryTaskMapper.queryForObject("select datediff(second,localtimestamp,next_retry_at) from sys_retry_task where task_id=?", Integer.class, delayedTask.getTaskId());
+        assertThat(delay).isBetween(298, 300);
+    }
+
+    @Test
+    public void testLegacyTable() {
+        EmbeddedDatabase legacyDatabase = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).addScript("sql/h2-legacy.sql").build();
+        try {
+            //表中没有next_retry_at列
+            assertThat(newRetryTaskMapper(legacyDatabase, "config/h2.properties", new HashMap<>()).isNextRetryDateEnabled()).isFalse();
+
+            //旧版本的SQL映射文件，根据create_date查询
+            JdbcRetryTaskMapper legacyRetryTaskMapper = newRetryTaskMapper(legacyDatabase, "config/h2-legacy.properties", new HashMap<>());
+            assertThat(legacyRetryTaskMapper.isNextRetryDateEnabled()).isFalse();
+            RetryTask retryTask = newRetryTask(LocalDateTime.now());
+            legacyRetryTaskMapper.insert(retryTask);
+            assertThat(legacyRetryTaskMapper.queryNeedRetryTaskList(IDENTITY, 5, 300)).isEmpty();
+
+            List<RetryTask> tasks = legacyRetryTaskMapper.queryNeedRetryTaskList(IDENTITY, 5, 0, 0L, 10);
+            assertThat(tasks).hasSize(1);
+            assertThat(tasks.get(0).getNextRetryDate()).isNull();
+
+            retryTask.setRetryCount(1);
+            retryTask.setNextRetryDate(LocalDateTime.now().plusSeconds(60));
+            assertThat(legacyRetryTaskMapper.update(retryTask)).isEqualTo(1);
+            assertThat(legacyRetryTaskMapper.queryNeedRetryTaskList(IDENTITY, 5, 0)).extracting(RetryTask::getRetryCount).containsExactly(1);
+        } finally {
+            legacyDatabase.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueryPagePlan() throws IOException {
+        Properties sqlMapping = PropertiesLoaderUtils.loadAllProperties("config/h2.properties");
+        //翻页按照task_id排序，查询要走(identity_name,status,task_id,next_retry_at)索引，task_id和next_retry_at都在索引上过滤
+        String index = "IDX_IDENTITYNAME_STATUS_TASKID_NEXTRETRYAT";
+        String[] conditions = new String[]{"TASK_ID >", "IDENTITY_NAME =", "STATUS = 1", "NEXT_RETRY_AT <="};
+        assertIndexCondition(sqlMapping.getProperty("QUERY_NEEDRETRYTASK_PAGE_SQL"), index, conditions, IDENTITY, 5, 0L, 10);
+        assertIndexCondition(sqlMapping.getProperty("QUERY_NEEDRETRYTASK_SHARDING_SQL"), index, conditions, IDENTITY, 5, 2, 1, 0L, 10);
+        assertIndexCondition(sqlMapping.getProperty("CLAIM_NEEDRETRYTASK_LIST_SQL"), index, conditions, IDENTITY, 5, 0L, 10);
+    }
+
+    @Test
+    public void testArchivePlan() throws IOException {
+        Properties sqlMapping = PropertiesLoaderUtils.loadAllProperties("config/h2.properties");
+        //归档按照task_id分批，走(status,task_id,edit_date)索引，edit_date在索引上过滤
+        String index = "IDX_STATUS_TASKID_EDITDATE";
+        String[] conditions = new String[]{"STATUS =", "TASK_ID >", "EDIT_DATE <"};
+        LocalDateTime editDate = LocalDateTime.now();
+        assertIndexCondition(sqlMapping.getProperty("QUERY_ARCHIVE_TASKID_LIST_SQL"), index, conditions, RetryTask.STATUS_SUCCESS, editDate, 0L, 10);
+        assertIndexCondition(sqlMapping.getProperty("DELETE_ARCHIVE_SQL"), index, conditions, RetryTask.STATUS_SUCCESS, editDate, 0L, 10L);
+    }
+
+    @Test
+    public void testQueryCurrentTimestamp() {
+        LocalDateTime now = retryTaskMapper.queryCurrentTimestamp();
+        assertThat(now).isBetween(LocalDateTime.now().minusSeconds(5), LocalDateTime.now().plusSeconds(5));
+    }
+
+    private void assertIndexCondition(String sql, String index, String[] conditions, Object... args) {
+        String plan = retryTaskMapper.queryForObject("explain " + sql, String.class, args);
+        Matcher matcher = Pattern.compile("/\\* PUBLIC\\." + index + ": ([^*]*)\\*/").matcher(plan);
+        assertThat(matcher.find()).as(plan).isTrue();
+        assertThat(matcher.group(1)).contains(conditions);
+    }
+
+    @Test
+    public void testDeleteOnSuccess() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(EnvironmentConstants.RETRY_DELETEONSUCCESS, "true");
+        JdbcRetryTaskMapper deleteOnSuccessMapper = newRetryTaskMapper(database, "config/h2.properties", properties);
+        List<RetryTask> tasks = insertRetryTasks(3);
+
+        tasks.get(0).setStatus(RetryTask.STATUS_SUCCESS);
+        assertThat(deleteOnSuccessMapper.update(tasks.get(0))).isEqualTo(1);
+
+        //批量更新时，执行成功的任务删除，其他的任务正常更新
+        tasks.get(1).setStatus(RetryTask.STATUS_SUCCESS);
+        tasks.get(2).setStatus(RetryTask.STATUS_EXCEPTION);
+        assertThat(deleteOnSuccessMapper.updateBatch(tasks.subList(1, 3))).isEqualTo(2);
+
+        assertThat(retryTaskMapper.queryForList("select task_id from sys_retry_task", Long.class)).containsExactly(tasks.get(2).getTaskId());
+        assertThat(getStatus(tasks.get(2).getTaskId())).isEqualTo(RetryTask.STATUS_EXCEPTION);
+    }
+
+    @Test
+    public void testArchiveTasks() {
+        List<RetryTask> tasks = insertRetryTasks(5);
+        LocalDateTime editDate = LocalDateTime.now().minusDays(1);
+        completeRetryTasks(tasks.subList(0, 4), LocalDateTime.now().minusDays(2));
+
+        List<Long> taskIds = retryTaskMapper.queryArchiveTaskIdList(RetryTask.STATUS_SUCCESS, editDate, 0L, 3);
+        assertThat(taskIds).containsExactly(tasks.get(0).getTaskId(), tasks.get(1).getTaskId(), tasks.get(2).getTaskId());
+        assertThat(retryTaskMapper.queryArchiveTaskIdList(RetryTask.STATUS_SUCCESS, editDate, taskIds.get(2), 3)).containsExactly(tasks.get(3).getTaskId());
+
+        //只归档(fromTaskId, toTaskId]之间的任务
+        assertThat(retryTaskMapper.archiveTasks(RetryTask.STATUS_SUCCESS, editDate, 0L, taskIds.get(2), false)).isEqualTo(3);
+        assertThat(retryTaskMapper.queryForList("select task_id from sys_retry_task_archive order by task_id", Long.class)).isEqualTo(taskIds);
+        assertThat(retryTaskMapper.queryForList("select task_id from sys_retry_task order by task_id", Long.class))
+                .containsExactly(tasks.get(3).getTaskId(), tasks.get(4).getTaskId());
+
+        //purge直接删除，不复制到归档表
+        assertThat(retryTaskMapper.archiveTasks(RetryTask.STATUS_SUCCESS, editDate, taskIds.get(2), tasks.get(4).getTaskId(), true)).isEqualTo(1);
+        assertThat(retryTaskMapper.queryForObject("select count(*) from sys_retry_task_archive", Integer.class)).isEqualTo(3);
+        assertThat(retryTaskMapper.queryForList("select task_id from sys_retry_task", Long.class)).containsExactly(tasks.get(4).getTaskId());
+    }
+
+    private void completeRetryTasks(List<RetryTask> tasks, LocalDateTime editDate) {
+        tasks.forEach(task -> retryTaskMapper.update("update sys_retry_task set status=?,edit_date=? where task_id=?", RetryTask.STATUS_SUCCESS, editDate, task.getTaskId()));
+    }
+
+    private int getStatus(long taskId) {
+        return retryTaskMapper.queryForObject("select status from sys_retry_task where task_id=?", Integer.class, taskId);
+    }
+
+    private List<RetryTask> insertRetryTasks(int count) {
+        List<RetryTask> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(newRetryTask(LocalDateTime.now().minusSeconds(1)));
+        }
+        retryTaskMapper.insertBatch(tasks);
+        return tasks;
+    }
+
+    private RetryTask newRetryTask(LocalDateTime nextRetryDate) {
+        RetryTask retryTask = new RetryTask();
+        retryTask.setIdentity(IDENTITY);
+        retryTask.setParams("{\"orderId\":1}");
+        retryTask.setStatus(RetryTask.STATUS_INIT);
+        retryTask.setNextRetryDate(nextRetryDate);
+        return retryTask;
+    }
+
+    private String getOwner(long taskId) {
+        return retryTaskMapper.queryForObject("select owner from sys_retry_task where task_id=?", String.class, taskId);
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.smartretry.spring4;
+
+import com.github.smartretry.core.RetryFunction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetryIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testLoadWithoutIndex() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{directory.toURI().toURL()}, null)) {
+            assertThat(RetryIndex.load(classLoader)).isNull();
+        }
+    }
+
+    @Test
+    public void testGetRetryFunctionMethods() throws IOException, NoSuchMethodException {
+        Properties index = new Properties();
+        //和retry-indexer生成的格式相同：方法名(参数类型)，多个参数类型用分号分隔
+        index.setProperty(OrderService.class.getName(), "createOrder(java.util.List;int),payOrder(java.lang.Long)");
+        index.setProperty(BaseService.class.getName(), "refund(java.lang.Long),removed(java.lang.Long),malformed");
+        RetryIndex retryIndex = loadIndex(index);
+
+        assertThat(retryIndex.contains(OrderService.class)).isTrue();
+        //子类通过父类命中索引
+        assertThat(retryIndex.contains(SubOrderService.class)).isTrue();
+        assertThat(retryIndex.contains(UserService.class)).isFalse();
+
+        //索引里面找不到的方法和格式不正确的条目被跳过
+        assertThat(retryIndex.getRetryFunctionMethods(SubOrderService.class)).containsExactly(
+                OrderService.class.getMethod("createOrder", List.class, int.class),
+                OrderService.class.getMethod("payOrder", Long.class),
+                BaseService.class.getMethod("refund", Long.class));
+        assertThat(retryIndex.getRetryFunctionMethods(UserService.class)).isEmpty();
+    }
+
+    private RetryIndex loadIndex(Properties index) throws IOException {
+        File directory = temporaryFolder.newFolder();
+        File indexFile = new File(directory, RetryIndex.INDEX_LOCATION);
+        Files.createDirectories(indexFile.getParentFile().toPath());
+        try (OutputStream outputStream = Files.newOutputStream(indexFile.toPath())) {
+            index.store(outputStream, null);
+        }
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{directory.toURI().toURL()}, null)) {
+            return RetryIndex.load(classLoader);
+        }
+    }
+
+    public static class BaseService {
+
+        @RetryFunction
+        public void refund(Long orderId) {
+        }
+    }
+
+    public static class OrderService extends BaseService {
+
+        @RetryFunction
+        public void payOrder(Long orderId) {
+        }
+
+        @RetryFunction
+        public void createOrder(List<String> items, int count) {
+        }
+
+        public void cancelOrder(Long orderId) {
+        }
+    }
+
+    public static class SubOrderService extends OrderService {
+    }
+
+    public static class UserService {
+
+        @RetryFunction
+        public void register(String userId) {
+        }
+    }
+}
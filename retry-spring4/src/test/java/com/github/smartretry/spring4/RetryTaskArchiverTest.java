@@ -0,0 +1,120 @@
+package com.github.smartretry.spring4;
+
+import com.github.smartretry.core.RetryTask;
+import com.github.smartretry.core.RetryTaskMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class RetryTaskArchiverTest {
+
+    private EmbeddedDatabase database;
+
+    private JdbcRetryTaskMapper retryTaskMapper;
+
+    private RetryTaskArchiver retryTaskArchiver;
+
+    @Before
+    public void setup() {
+        this.database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).addScript("sql/h2.sql").build();
+        this.retryTaskMapper = new JdbcRetryTaskMapper(database);
+        retryTaskMapper.setEnvironment(newEnvironment(new HashMap<>()));
+        retryTaskMapper.initSqlMappingProperties();
+    }
+
+    @After
+    public void close() {
+        if (retryTaskArchiver != null) {
+            retryTaskArchiver.destroy();
+        }
+        database.shutdown();
+    }
+
+    @Test
+    public void testArchive() {
+        List<Long> oldSuccessTaskIds = insertRetryTasks(5, RetryTask.STATUS_SUCCESS, LocalDateTime.now().minusDays(8));
+        List<Long> newSuccessTaskIds = insertRetryTasks(1, RetryTask.STATUS_SUCCESS, LocalDateTime.now().minusDays(1));
+        List<Long> exceptionTaskIds = insertRetryTasks(2, RetryTask.STATUS_EXCEPTION, LocalDateTime.now().minusDays(30));
+
+        newRetryTaskArchiver(false).archive();
+
+        //每批2个任务，分3批归档完执行成功并且超过7天的任务；执行失败的任务默认不归档
+        assertThat(queryTaskIds("sys_retry_task_archive")).isEqualTo(oldSuccessTaskIds);
+        List<Long> remainingTaskIds = new ArrayList<>(newSuccessTaskIds);
+        remainingTaskIds.addAll(exceptionTaskIds);
+        assertThat(queryTaskIds("sys_retry_task")).isEqualTo(remainingTaskIds);
+    }
+
+    @Test
+    public void testPurge() {
+        insertRetryTasks(3, RetryTask.STATUS_SUCCESS, LocalDateTime.now().minusDays(8));
+        List<Long> initTaskIds = insertRetryTasks(1, RetryTask.STATUS_INIT, LocalDateTime.now().minusDays(8));
+
+        newRetryTaskArchiver(true).archive();
+
+        assertThat(queryTaskIds("sys_retry_task_archive")).isEmpty();
+        assertThat(queryTaskIds("sys_retry_task")).isEqualTo(initTaskIds);
+    }
+
+    @Test
+    public void testDisabled() {
+        RetryTaskMapper mockRetryTaskMapper = PowerMockito.mock(RetryTaskMapper.class);
+        RetryTaskArchiver disabledArchiver = new RetryTaskArchiver(mockRetryTaskMapper);
+        disabledArchiver.setEnvironment(newEnvironment(new HashMap<>()));
+        disabledArchiver.afterPropertiesSet();
+        disabledArchiver.destroy();
+
+        verifyZeroInteractions(mockRetryTaskMapper);
+    }
+
+    private RetryTaskArchiver newRetryTaskArchiver(boolean purge) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(EnvironmentConstants.RETRY_ARCHIVE_ENABLED, "true");
+        properties.put(EnvironmentConstants.RETRY_ARCHIVE_PURGE, String.valueOf(purge));
+        properties.put(EnvironmentConstants.RETRY_ARCHIVE_CHUNKSIZE, "2");
+        properties.put(EnvironmentConstants.RETRY_ARCHIVE_CHUNKINTERVAL, "0");
+        this.retryTaskArchiver = new RetryTaskArchiver(retryTaskMapper);
+        retryTaskArchiver.setEnvironment(newEnvironment(properties));
+        retryTaskArchiver.afterPropertiesSet();
+        return retryTaskArchiver;
+    }
+
+    private StandardEnvironment newEnvironment(Map<String, Object> properties) {
+        properties.put(EnvironmentConstants.RETRY_SQLMAPPING_FILEPATH_KEY, "config/h2.properties");
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        return environment;
+    }
+
+    private List<Long> insertRetryTasks(int count, int status, LocalDateTime editDate) {
+        List<Long> taskIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            RetryTask retryTask = new RetryTask();
+            retryTask.setIdentity("user.order");
+            retryTask.setStatus(status);
+            retryTaskMapper.insert(retryTask);
+            retryTaskMapper.update("update sys_retry_task set edit_date=? where task_id=?", editDate, retryTask.getTaskId());
+            taskIds.add(retryTask.getTaskId());
+        }
+        return taskIds;
+    }
+
+    private List<Long> queryTaskIds(String table) {
+        return retryTaskMapper.queryForList("select task_id from " + table + " order by task_id", Long.class);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.smartretry.spring4.aop;
+
+import com.github.smartretry.core.RetryHandler;
+import com.github.smartretry.spring4.RetryHandlerRegistration;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RetryAdvisorAutoProxyCreatorTest {
+
+    @Test
+    public void testIdentityResolvedOnce() {
+        RetryHandler retryHandlerProxy = PowerMockito.mock(RetryHandler.class);
+        when(retryHandlerProxy.identity()).thenReturn("aop.creator.order");
+        when(retryHandlerProxy.handle("order-1")).thenReturn("ok");
+        RetryHandlerRegistration.registry(retryHandlerProxy);
+
+        RetryAdvisorAutoProxyCreator retryAdvisorAutoProxyCreator = new RetryAdvisorAutoProxyCreator();
+        Advisor advisor = new DefaultPointcutAdvisor(new RetryHandlerClassPointcut(), new RetryHandlerClassInterceptor());
+        retryAdvisorAutoProxyCreator.setRetryAdvisors(Collections.singletonList(advisor));
+        retryAdvisorAutoProxyCreator.setProxyTargetClass(true);
+
+        OrderRetryHandler target = new OrderRetryHandler();
+        @SuppressWarnings("unchecked")
+        RetryHandler<String, String> proxy = (RetryHandler<String, String>) retryAdvisorAutoProxyCreator.postProcessAfterInitialization(target, "orderRetryHandler");
+        assertThat(proxy).isNotSameAs(target);
+        int identityCalls = target.identityCalls.get();
+
+        //创建代理的时候获取identity，之后的调用不再获取
+        for (int i = 0; i < 3; i++) {
+            assertThat(proxy.handle("order-1")).isEqualTo("ok");
+        }
+        verify(retryHandlerProxy, times(3)).handle("order-1");
+        assertThat(target.identityCalls.get()).isEqualTo(identityCalls);
+    }
+
+    public static class OrderRetryHandler implements RetryHandler<String, String> {
+
+        private final AtomicInteger identityCalls = new AtomicInteger();
+
+        @Override
+        public String identity() {
+            identityCalls.incrementAndGet();
+            return "aop.creator.order";
+        }
+
+        @Override
+        public String handle(String arg) {
+            throw new IllegalStateException("应该调用RetryHandler代理");
+        }
+    }
+}
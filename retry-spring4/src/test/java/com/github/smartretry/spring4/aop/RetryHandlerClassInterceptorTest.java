@@ -0,0 +1,79 @@
+package com.github.smartretry.spring4.aop;
+
+import com.github.smartretry.core.RetryHandler;
+import com.github.smartretry.spring4.RetryHandlerRegistration;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RetryHandlerClassInterceptorTest {
+
+    private RetryHandlerClassInterceptor retryHandlerClassInterceptor = new RetryHandlerClassInterceptor();
+
+    @Test
+    public void testInvoke() {
+        RetryHandler retryHandlerProxy = PowerMockito.mock(RetryHandler.class);
+        when(retryHandlerProxy.identity()).thenReturn("aop.class.order");
+        when(retryHandlerProxy.handle("order-1")).thenReturn("ok");
+        RetryHandlerRegistration.registry(retryHandlerProxy);
+
+        //同一个identity的多个RetryHandler实例都调用同一个代理
+        for (int i = 0; i < 2; i++) {
+            assertThat(retryHandlerClassInterceptor.invoke(newInvocation("aop.class.order", "order-1"))).isEqualTo("ok");
+        }
+        verify(retryHandlerProxy, times(2)).handle("order-1");
+    }
+
+    @Test
+    public void testInvokeWithoutArguments() {
+        RetryHandler retryHandlerProxy = PowerMockito.mock(RetryHandler.class);
+        when(retryHandlerProxy.identity()).thenReturn("aop.class.noargs");
+        RetryHandlerRegistration.registry(retryHandlerProxy);
+
+        retryHandlerClassInterceptor.invoke(newInvocation("aop.class.noargs"));
+        verify(retryHandlerProxy).handle(null);
+    }
+
+    @Test
+    public void testInvokeBeforeRegistered() {
+        //RetryHandler代理还没有注册的时候返回null，注册之后可以正常调用
+        assertThat(retryHandlerClassInterceptor.invoke(newInvocation("aop.class.later", "order-1"))).isNull();
+
+        RetryHandler retryHandlerProxy = PowerMockito.mock(RetryHandler.class);
+        when(retryHandlerProxy.identity()).thenReturn("aop.class.later");
+        when(retryHandlerProxy.handle(anyObject())).thenReturn("ok");
+        RetryHandlerRegistration.registry(retryHandlerProxy);
+
+        assertThat(retryHandlerClassInterceptor.invoke(newInvocation("aop.class.later", "order-1"))).isEqualTo("ok");
+    }
+
+    @Test
+    public void testInvokeWithIdentity() {
+        RetryHandler retryHandlerProxy = PowerMockito.mock(RetryHandler.class);
+        when(retryHandlerProxy.identity()).thenReturn("aop.class.fixed");
+        when(retryHandlerProxy.handle("order-1")).thenReturn("ok");
+        RetryHandlerRegistration.registry(retryHandlerProxy);
+
+        //创建代理的时候已经确定了identity，调用时不再从目标对象获取
+        RetryHandlerClassInterceptor interceptor = new RetryHandlerClassInterceptor("aop.class.fixed");
+        MethodInvocation invocation = newInvocation("aop.class.other", "order-1");
+        assertThat(interceptor.invoke(invocation)).isEqualTo("ok");
+        verify((RetryHandler) invocation.getThis(), never()).identity();
+    }
+
+    private MethodInvocation newInvocation(String identity, Object... args) {
+        RetryHandler target = PowerMockito.mock(RetryHandler.class);
+        when(target.identity()).thenReturn(identity);
+        MethodInvocation invocation = PowerMockito.mock(MethodInvocation.class);
+        when(invocation.getThis()).thenReturn(target);
+        when(invocation.getArguments()).thenReturn(args);
+        return invocation;
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.smartretry.spring4.aop;
+
+import com.github.smartretry.core.RetryFunction;
+import com.github.smartretry.core.RetryHandler;
+import com.github.smartretry.spring4.RetryHandlerRegistration;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+
+import java.lang.reflect.Method;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RetryHandlerMethodInterceptorTest {
+
+    private RetryHandlerMethodInterceptor retryHandlerMethodInterceptor = new RetryHandlerMethodInterceptor();
+
+    @Test
+    public void testInvokeWithIdentity() throws NoSuchMethodException {
+        RetryHandler retryHandlerProxy = registerProxy("aop.method.order");
+        when(retryHandlerProxy.handle("order-1")).thenReturn("ok");
+
+        Method method = OrderService.class.getMethod("createOrder", String.class);
+        for (int i = 0; i < 2; i++) {
+            assertThat(retryHandlerMethodInterceptor.invoke(newInvocation(method, "order-1"))).isEqualTo("ok");
+        }
+        verify(retryHandlerProxy, times(2)).handle("order-1");
+    }
+
+    @Test
+    public void testInvokeWithMethodIdentity() throws NoSuchMethodException {
+        //没有指定identity时，使用类名.方法名
+        RetryHandler retryHandlerProxy = registerProxy(OrderService.class.getName() + ".cancelOrder");
+
+        Method method = OrderService.class.getMethod("cancelOrder");
+        retryHandlerMethodInterceptor.invoke(newInvocation(method));
+        verify(retryHandlerProxy).handle(null);
+    }
+
+    @Test
+    public void testInvokeBeforeRegistered() throws NoSuchMethodException {
+        Method method = OrderService.class.getMethod("payOrder", String.class);
+        assertThatThrownBy(() -> retryHandlerMethodInterceptor.invoke(newInvocation(method, "order-1")))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("aop.method.pay");
+
+        //找不到的时候不缓存，注册之后可以正常调用
+        RetryHandler retryHandlerProxy = registerProxy("aop.method.pay");
+        when(retryHandlerProxy.handle("order-1")).thenReturn("ok");
+        assertThat(retryHandlerMethodInterceptor.invoke(newInvocation(method, "order-1"))).isEqualTo("ok");
+    }
+
+    private RetryHandler registerProxy(String identity) {
+        RetryHandler retryHandlerProxy = PowerMockito.mock(RetryHandler.class);
+        when(retryHandlerProxy.identity()).thenReturn(identity);
+        RetryHandlerRegistration.registry(retryHandlerProxy);
+        return retryHandlerProxy;
+    }
+
+    private MethodInvocation newInvocation(Method method, Object... args) {
+        MethodInvocation invocation = PowerMockito.mock(MethodInvocation.class);
+        when(invocation.getMethod()).thenReturn(method);
+        when(invocation.getArguments()).thenReturn(args);
+        return invocation;
+    }
+
+    public static class OrderService {
+
+        @RetryFunction(identity = "aop.method.order")
+        public void createOrder(String orderId) {
+        }
+
+        @RetryFunction
+        public void cancelOrder() {
+        }
+
+        @RetryFunction(identity = "aop.method.pay")
+        public void payOrder(String orderId) {
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.smartretry.spring4.registry.quartz;
+
+import com.github.smartretry.core.RetryHandler;
+import com.github.smartretry.core.RetryProcessor;
+import com.github.smartretry.spring4.EnvironmentConstants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+import org.quartz.Scheduler;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+public class QuartzRetryRegistryTest {
+
+    /**
+     * 每年执行一次，测试期间不会自动触发
+     */
+    private static final String YEARLY_CRON = "0 0 0 1 1 ?";
+
+    private DefaultListableBeanFactory beanFactory;
+
+    private QuartzRetryRegistry quartzRetryRegistry;
+
+    private RetryProcessor retryProcessor;
+
+    /**
+     * doRetry的执行次数，以及同时执行的最大数量
+     */
+    private Semaphore executions = new Semaphore(0);
+
+    private AtomicInteger running = new AtomicInteger();
+
+    private AtomicInteger peakRunning = new AtomicInteger();
+
+    /**
+     * 不为null时，doRetry等待它之后才返回
+     */
+    private volatile CountDownLatch blocker;
+
+    @Before
+    public void setup() {
+        this.beanFactory = new DefaultListableBeanFactory();
+        this.retryProcessor = PowerMockito.mock(RetryProcessor.class);
+        doAnswer(invocation -> {
+            peakRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                if (blocker != null) {
+                    blocker.await(10, TimeUnit.SECONDS);
+                }
+            } finally {
+                running.decrementAndGet();
+                executions.release();
+            }
+            return null;
+        }).when(retryProcessor).doRetry();
+    }
+
+    @After
+    public void close() {
+        beanFactory.destroySingletons();
+        quartzRetryRegistry.destroy();
+    }
+
+    @Test
+    public void testSharedJobOperations() throws Exception {
+        RetryJobOperations job = register(true, false);
+        assertThat(job).isInstanceOf(SharedSchedulerRetryJob.class);
+        assertThat(job.getJobIdentity()).isEqualTo("user.order");
+        assertThat(job.getJobPeriod()).isEqualTo(YEARLY_CRON);
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.PREPARE);
+
+        beanFactory.getBean(QuartzRetryRegistry.SHARED_SCHEDULER_BEAN_NAME, Scheduler.class).start();
+        //autoStartup=false，Scheduler启动之后仍然是暂停的
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.PREPARE);
+
+        job.startNow();
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.RUNNING);
+        assertThat(job.getNextTime()).isNotNull();
+
+        job.runAsync();
+        assertThat(executions.tryAcquire(10, TimeUnit.SECONDS)).isTrue();
+
+        job.stop();
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.STOPED);
+    }
+
+    @Test
+    public void testSharedJobDisallowConcurrentExecution() throws Exception {
+        RetryJobOperations job = register(true, true);
+        beanFactory.getBean(QuartzRetryRegistry.SHARED_SCHEDULER_BEAN_NAME, Scheduler.class).start();
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.RUNNING);
+        assertConcurrentExecutionDisallowed(job);
+    }
+
+    @Test
+    public void testSchedulerFactoryBeanOperations() throws Exception {
+        RetryJobOperations job = register(false, false);
+        assertThat(job).isInstanceOf(RetrySchedulerFactoryBean.class);
+        assertThat(job.getJobIdentity()).isEqualTo("user.order");
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.PREPARE);
+        assertThat(job.getNextTime()).isNotNull();
+
+        job.startNow();
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.RUNNING);
+        assertConcurrentExecutionDisallowed(job);
+
+        job.stop();
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.STOPED);
+    }
+
+    /**
+     * 上一次重试还没有结束时立即执行，等它结束之后才会执行
+     */
+    private void assertConcurrentExecutionDisallowed(RetryJobOperations job) throws InterruptedException {
+        this.blocker = new CountDownLatch(1);
+        job.runAsync();
+        job.runAsync();
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertThat(running.get()).isEqualTo(1);
+
+        blocker.countDown();
+        assertThat(executions.tryAcquire(2, 10, TimeUnit.SECONDS)).isTrue();
+        assertThat(peakRunning.get()).isEqualTo(1);
+    }
+
+    private RetryJobOperations register(boolean shared, boolean autoStartup) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(QuartzRetryRegistry.RETRY_JOB_STARTUPDELAY, "0");
+        properties.put(EnvironmentConstants.RETRY_QUARTZ_SHARED, String.valueOf(shared));
+        properties.put(EnvironmentConstants.RETRY_QUARTZ_THREADCOUNT, "2");
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+
+        this.quartzRetryRegistry = new QuartzRetryRegistry();
+        quartzRetryRegistry.setBeanFactory(beanFactory);
+        quartzRetryRegistry.setEnvironment(environment);
+        quartzRetryRegistry.afterPropertiesSet();
+
+        RetryHandler retryHandler = PowerMockito.mock(RetryHandler.class);
+        when(retryHandler.identity()).thenReturn("user.order");
+        when(retryHandler.name()).thenReturn("订单");
+        when(retryHandler.cron()).thenReturn(YEARLY_CRON);
+        when(retryHandler.autoStartup()).thenReturn(autoStartup);
+        quartzRetryRegistry.register(retryHandler, retryProcessor);
+
+        Collection<RetryJobOperations> jobs = beanFactory.getBeansOfType(RetryJobOperations.class).values();
+        assertThat(jobs).hasSize(1);
+        return jobs.iterator().next();
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.smartretry.spring4.registry.wheel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HashedTimingWheelTest {
+
+    /**
+     * 每个tick 10毫秒，槽位数量调整为4，转一圈40毫秒
+     */
+    private HashedTimingWheel timingWheel;
+
+    @Before
+    public void setup() {
+        this.timingWheel = new HashedTimingWheel(10, 3, Runnable::run);
+    }
+
+    @After
+    public void close() {
+        timingWheel.stop();
+    }
+
+    @Test
+    public void testTick() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timingWheel.newTimeout(latch::countDown, 30, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        //不会提前触发
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(30);
+    }
+
+    @Test
+    public void testOverflow() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        //超过一圈，需要等待多圈之后才触发
+        timingWheel.newTimeout(latch::countDown, 150, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(150);
+    }
+
+    @Test
+    public void testOrder() throws InterruptedException {
+        List<Integer> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        for (int delay : new int[]{120, 20, 60}) {
+            timingWheel.newTimeout(() -> {
+                fired.add(delay);
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly(20, 60, 120);
+    }
+
+    @Test
+    public void testExpired() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        timingWheel.newTimeout(latch::countDown, -1, TimeUnit.MILLISECONDS);
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        HashedTimingWheel.Timeout timeout = timingWheel.newTimeout(cancelled::countDown, 50, TimeUnit.MILLISECONDS);
+        timingWheel.newTimeout(latch::countDown, 100, TimeUnit.MILLISECONDS);
+        timeout.cancel();
+
+        assertThat(timeout.isCancelled()).isTrue();
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(cancelled.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testStop() {
+        timingWheel.stop();
+        assertThatThrownBy(() -> timingWheel.newTimeout(() -> {
+        }, 10, TimeUnit.MILLISECONDS)).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.smartretry.spring4.registry.wheel;
+
+import com.github.smartretry.core.RetryHandler;
+import com.github.smartretry.core.RetryProcessor;
+import com.github.smartretry.spring4.EnvironmentConstants;
+import com.github.smartretry.spring4.registry.quartz.JobStatusEnum;
+import com.github.smartretry.spring4.registry.quartz.QuartzRetryRegistry;
+import com.github.smartretry.spring4.registry.quartz.RetryJobOperations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+public class TimingWheelRetryRegistryTest {
+
+    private DefaultListableBeanFactory beanFactory;
+
+    private TimingWheelRetryRegistry timingWheelRetryRegistry;
+
+    private RetryProcessor retryProcessor;
+
+    /**
+     * doRetry的执行次数
+     */
+    private Semaphore executions = new Semaphore(0);
+
+    /**
+     * 不为null时，doRetry等待它之后才返回
+     */
+    private volatile CountDownLatch blocker;
+
+    @Before
+    public void setup() {
+        this.beanFactory = new DefaultListableBeanFactory();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(QuartzRetryRegistry.RETRY_JOB_STARTUPDELAY, "0");
+        properties.put(EnvironmentConstants.RETRY_WHEEL_TICKDURATION, "10");
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+
+        this.timingWheelRetryRegistry = new TimingWheelRetryRegistry();
+        timingWheelRetryRegistry.setBeanFactory(beanFactory);
+        timingWheelRetryRegistry.setEnvironment(environment);
+        timingWheelRetryRegistry.afterPropertiesSet();
+
+        this.retryProcessor = PowerMockito.mock(RetryProcessor.class);
+        doAnswer(invocation -> {
+            try {
+                if (blocker != null) {
+                    blocker.await(10, TimeUnit.SECONDS);
+                }
+            } finally {
+                executions.release();
+            }
+            return null;
+        }).when(retryProcessor).doRetry();
+    }
+
+    @After
+    public void close() {
+        timingWheelRetryRegistry.destroy();
+    }
+
+    @Test
+    public void testAutoStartup() throws InterruptedException {
+        RetryJobOperations job = register(true);
+        assertThat(job.getJobIdentity()).isEqualTo("user.order");
+        assertThat(job.getJobName()).isEqualTo("订单");
+        assertThat(job.getJobPeriod()).isEqualTo("3600");
+
+        assertThat(executions.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.RUNNING);
+        //下一次按照interval触发
+        waitForNextTime(job);
+        assertThat(job.getNextTime()).isAfter(LocalDateTime.now().plusMinutes(59));
+    }
+
+    @Test
+    public void testStartAndStop() throws InterruptedException {
+        RetryJobOperations job = register(false);
+        //autoStartup=false时注册为未启动，不会触发
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.PREPARE);
+        assertThat(job.getNextTime()).isNull();
+        assertThat(executions.tryAcquire(200, TimeUnit.MILLISECONDS)).isFalse();
+
+        job.startNow();
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.RUNNING);
+        assertThat(executions.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        waitForNextTime(job);
+
+        job.stop();
+        assertThat(job.getJobStatusEnum()).isEqualTo(JobStatusEnum.STOPED);
+        assertThat(job.getNextTime()).isNull();
+
+        //停止之后仍然可以立即执行
+        job.runAsync();
+        assertThat(executions.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(job.getNextTime()).isNull();
+    }
+
+    @Test
+    public void testStopWhileExecuting() throws InterruptedException {
+        this.blocker = new CountDownLatch(1);
+        RetryJobOperations job = register(false);
+        job.startNow();
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        //正在执行的时候停止，执行完之后不再计算下一次的触发时间
+        job.stop();
+        blocker.countDown();
+        assertThat(executions.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertThat(job.getNextTime()).isNull();
+    }
+
+    @Test
+    public void testRunAsyncWhileExecuting() throws InterruptedException {
+        this.blocker = new CountDownLatch(1);
+        RetryJobOperations job = register(false);
+        job.runAsync();
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        //上一次重试还没有结束，直接跳过
+        job.runAsync();
+        assertThat(executions.tryAcquire(200, TimeUnit.MILLISECONDS)).isFalse();
+        blocker.countDown();
+        assertThat(executions.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executions.tryAcquire(200, TimeUnit.MILLISECONDS)).isFalse();
+    }
+
+    @Test
+    public void testIntervalMillis() throws InterruptedException {
+        RetryHandler retryHandler = newRetryHandler(true);
+        when(retryHandler.intervalMillis()).thenReturn(50L);
+        timingWheelRetryRegistry.register(retryHandler, retryProcessor);
+        RetryJobOperations job = beanFactory.getBeansOfType(RetryJobOperations.class).values().iterator().next();
+        assertThat(job.getJobPeriod()).isEqualTo("50ms");
+
+        //intervalMillis代替interval，1秒之内触发多次
+        assertThat(executions.tryAcquire(5, 2, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testQuartzCron() {
+        for (String cron : new String[]{"0 0 12 L * ?", "0 0 12 15W * ?", "0 0 12 ? * 6L", "0 0 12 ? * 6#3", "0 0 12 * * ? 2030"}) {
+            RetryHandler retryHandler = newRetryHandler(true);
+            when(retryHandler.cron()).thenReturn(cron);
+            assertThatThrownBy(() -> timingWheelRetryRegistry.register(retryHandler, retryProcessor))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Quartz特有的L、W、#或者年份字段");
+        }
+        //6位的cron表达式，星期的名称里面有W也可以正常注册
+        RetryHandler retryHandler = newRetryHandler(true);
+        when(retryHandler.cron()).thenReturn("0 0 12 ? * WED");
+        timingWheelRetryRegistry.register(retryHandler, retryProcessor);
+        assertThat(beanFactory.getBeansOfType(RetryJobOperations.class)).hasSize(1);
+    }
+
+    /**
+     * 重试完成之后才会计算下一次的触发时间
+     */
+    private void waitForNextTime(RetryJobOperations job) throws InterruptedException {
+        for (int i = 0; i < 100 && job.getNextTime() == null; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(job.getNextTime()).isNotNull();
+    }
+
+    private RetryJobOperations register(boolean autoStartup) {
+        timingWheelRetryRegistry.register(newRetryHandler(autoStartup), retryProcessor);
+
+        Collection<RetryJobOperations> jobs = beanFactory.getBeansOfType(RetryJobOperations.class).values();
+        assertThat(jobs).hasSize(1);
+        return jobs.iterator().next();
+    }
+
+    private RetryHandler newRetryHandler(boolean autoStartup) {
+        RetryHandler retryHandler = PowerMockito.mock(RetryHandler.class);
+        when(retryHandler.identity()).thenReturn("user.order");
+        when(retryHandler.name()).thenReturn("订单");
+        when(retryHandler.interval()).thenReturn(3600);
+        when(retryHandler.autoStartup()).thenReturn(autoStartup);
+        return retryHandler;
+    }
+}
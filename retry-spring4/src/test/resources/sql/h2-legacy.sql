@@ -0,0 +1,9 @@
+create table sys_retry_task (
+task_id bigint not null primary key auto_increment,
+identity_name varchar(50) not null,
+params varchar(4000),
+status tinyint not null,
+retry_count int not null default 0,
+remark varchar(1000),
+create_date timestamp not null,
+edit_date timestamp);
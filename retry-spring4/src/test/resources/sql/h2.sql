@@ -0,0 +1,27 @@
+create table sys_retry_task (
+task_id bigint not null primary key auto_increment,
+identity_name varchar(50) not null,
+params varchar(4000),
+status tinyint not null,
+retry_count int not null default 0,
+remark varchar(1000),
+create_date timestamp not null,
+edit_date timestamp,
+next_retry_at timestamp not null,
+owner varchar(64),
+lease_until timestamp);
+
+create index idx_identityname_status_taskid_nextretryat ON sys_retry_task(identity_name asc,status asc,task_id asc,next_retry_at asc);
+create index idx_status_taskid_editdate ON sys_retry_task(status asc,task_id asc,edit_date asc);
+
+create table sys_retry_task_archive (
+task_id bigint not null primary key,
+identity_name varchar(50) not null,
+params varchar(4000),
+status tinyint not null,
+retry_count int not null default 0,
+remark varchar(1000),
+create_date timestamp not null,
+edit_date timestamp,
+next_retry_at timestamp,
+archive_date timestamp not null);